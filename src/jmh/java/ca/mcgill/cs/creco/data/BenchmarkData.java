@@ -0,0 +1,90 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.data;
+
+import java.io.File;
+import java.io.IOException;
+
+import ca.mcgill.cs.creco.data.json.JsonLoadingService;
+import ca.mcgill.cs.creco.data.json.SyntheticDataGenerator;
+
+/**
+ * Builds the synthetic data used by the benchmarks, without Spring
+ * and without the real data files.
+ */
+public final class BenchmarkData
+{
+	private BenchmarkData()
+	{}
+
+	/**
+	 * Writes a synthetic data set to a new temporary directory.
+	 * @param pGenerator The generator of the data.
+	 * @return The directory, to delete with delete().
+	 * @throws IOException If the data cannot be written.
+	 */
+	public static File generate(SyntheticDataGenerator pGenerator) throws IOException
+	{
+		File directory = File.createTempFile("creco", "benchmark");
+		directory.delete();
+		directory.mkdir();
+		pGenerator.generate(directory);
+		return directory;
+	}
+
+	/**
+	 * Deletes a directory created by generate().
+	 * @param pDirectory The directory.
+	 */
+	public static void delete(File pDirectory)
+	{
+		for(File file : pDirectory.listFiles())
+		{
+			file.delete();
+		}
+		pDirectory.delete();
+	}
+
+	/**
+	 * @param pDirectory A directory created by generate().
+	 * @return A new JsonLoadingService for the files of the directory.
+	 */
+	public static JsonLoadingService loadingService(File pDirectory)
+	{
+		return new JsonLoadingService(pDirectory.getPath() + File.separator, SyntheticDataGenerator.CATEGORY_FILE_NAME,
+				SyntheticDataGenerator.getProductFileNames(), SyntheticDataGenerator.DEAD_LINKS_FILE_NAME);
+	}
+
+	/**
+	 * Loads and processes the data of a directory as CRData does.
+	 * @param pDirectory A directory created by generate().
+	 * @return The data.
+	 * @throws IOException If the data cannot be read.
+	 */
+	public static DataVersion load(File pDirectory) throws IOException
+	{
+		IDataLoadingService loadingService = loadingService(pDirectory);
+		CategoryTree tree = new CategoryTree();
+		loadingService.loadCategories(tree);
+		tree.indexRootCategories();
+		tree.eliminateAllSingletons();
+		loadingService.loadProducts(tree);
+		tree.associateProducts();
+		tree.refresh();
+		tree.findEquivalenceClasses();
+		return new DataVersion(1, tree.getProducts(), tree.getCategories());
+	}
+}
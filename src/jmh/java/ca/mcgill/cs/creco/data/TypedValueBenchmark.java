@@ -0,0 +1,103 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Builds typed values from raw values in the proportions and forms found
+ * in the Consumer Reports data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class TypedValueBenchmark
+{
+	private static final int CORPUS_SIZE = 10000;
+	private static final int MAX_INTEGER = 1000;
+	private static final String[] FIXED_VALUES =
+		{
+			"Yes", "No", "yes", "no", "N/A", "NA", "n/a", "Stainless steel", "Black", "Touch controls", ""
+		};
+	private static final String[] FORMATS =
+		{
+			"%d", "%d.%d", "%d\"", "%d hours", "%d days", "%d-%d", "%d-%dLbs", "Limited to %d-%d"
+		};
+
+	private final List<Object> aCorpus = new ArrayList<Object>();
+
+	/**
+	 * Builds the corpus: half strings of a fixed set, a third formatted numbers,
+	 * and the rest numbers and booleans.
+	 */
+	@Setup
+	public void setup()
+	{
+		Random random = new Random(1);
+		for(int i = 0; i < CORPUS_SIZE; i++)
+		{
+			switch(i % 6)
+			{
+			case 0: case 1: case 2:
+				aCorpus.add(FIXED_VALUES[random.nextInt(FIXED_VALUES.length)]);
+				break;
+			case 3: case 4:
+				String format = FORMATS[random.nextInt(FORMATS.length)];
+				aCorpus.add(String.format(format, random.nextInt(MAX_INTEGER), random.nextInt(MAX_INTEGER)));
+				break;
+			default:
+				if(random.nextBoolean())
+				{
+					aCorpus.add(random.nextDouble() * MAX_INTEGER);
+				}
+				else
+				{
+					aCorpus.add(random.nextBoolean());
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param pBlackhole Consumes the typed values.
+	 */
+	@Benchmark
+	public void buildTypedValues(Blackhole pBlackhole)
+	{
+		for(Object value : aCorpus)
+		{
+			pBlackhole.consume(new TypedValue(value));
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.data.json;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ca.mcgill.cs.creco.data.BenchmarkData;
+import ca.mcgill.cs.creco.data.CategoryNode;
+import ca.mcgill.cs.creco.data.IDataCollector;
+import ca.mcgill.cs.creco.data.Product;
+
+/**
+ * Parses the product files of a synthetic data set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class JsonLoadingBenchmark
+{
+	private static final int NUMBER_OF_FRANCHISES = 8;
+	private static final int CATEGORIES_PER_FRANCHISE = 4;
+
+	@Param({ "100", "1000" })
+	private int aProductsPerCategory;
+
+	private File aDirectory;
+
+	/**
+	 * Writes the data set.
+	 * @throws IOException If the data cannot be written.
+	 */
+	@Setup
+	public void setup() throws IOException
+	{
+		SyntheticDataGenerator generator = new SyntheticDataGenerator(1);
+		generator.setNumberOfFranchises(NUMBER_OF_FRANCHISES);
+		generator.setCategoryFanout(CATEGORIES_PER_FRANCHISE);
+		generator.setProductsPerCategory(aProductsPerCategory);
+		aDirectory = BenchmarkData.generate(generator);
+	}
+
+	/**
+	 * Deletes the data set.
+	 */
+	@TearDown
+	public void tearDown()
+	{
+		BenchmarkData.delete(aDirectory);
+	}
+
+	/**
+	 * @param pBlackhole Consumes the products.
+	 * @throws IOException If the data cannot be read.
+	 */
+	@Benchmark
+	public void loadProducts(final Blackhole pBlackhole) throws IOException
+	{
+		BenchmarkData.loadingService(aDirectory).loadProducts(new IDataCollector()
+		{
+			@Override
+			public void addCategory(CategoryNode pCategory)
+			{
+				pBlackhole.consume(pCategory);
+			}
+
+			@Override
+			public void addProduct(Product pProduct)
+			{
+				pBlackhole.consume(pProduct);
+			}
+		});
+	}
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.logic;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ca.mcgill.cs.creco.data.BenchmarkData;
+import ca.mcgill.cs.creco.data.json.SyntheticDataGenerator;
+import ca.mcgill.cs.creco.logic.metrics.Metrics;
+
+/**
+ * Completes the text typed in the search box, including the JSON response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class CompletionsBenchmark
+{
+	private static final int NUMBER_OF_FRANCHISES = 16;
+	private static final int CATEGORIES_PER_FRANCHISE = 8;
+	private static final int PRODUCTS_PER_CATEGORY = 100;
+	private static final String[] INPUTS =
+		{
+			"ref", "Smart Tel", "acm", "Portable Dryers 1", "wir", "xyz"
+		};
+
+	private ConcreteServiceFacade aServiceFacade;
+
+	/**
+	 * Builds the services for the data set.
+	 * @throws IOException If the data cannot be written, read or indexed.
+	 */
+	@Setup
+	public void setup() throws IOException
+	{
+		SyntheticDataGenerator generator = new SyntheticDataGenerator(1);
+		generator.setNumberOfFranchises(NUMBER_OF_FRANCHISES);
+		generator.setCategoryFanout(CATEGORIES_PER_FRANCHISE);
+		generator.setProductsPerCategory(PRODUCTS_PER_CATEGORY);
+		File directory = BenchmarkData.generate(generator);
+		try
+		{
+			Metrics metrics = new Metrics();
+			aServiceFacade = new ConcreteServiceFacade(new FixedDataStore(BenchmarkData.load(directory)), new ProductRanker(metrics), metrics);
+			aServiceFacade.init();
+		}
+		finally
+		{
+			BenchmarkData.delete(directory);
+		}
+	}
+
+	/**
+	 * @param pBlackhole Consumes the responses.
+	 */
+	@Benchmark
+	public void getCompletions(Blackhole pBlackhole)
+	{
+		for(String input : INPUTS)
+		{
+			pBlackhole.consume(aServiceFacade.getCompletions(input));
+		}
+	}
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.logic;
+
+import java.util.Collection;
+
+import ca.mcgill.cs.creco.data.Category;
+import ca.mcgill.cs.creco.data.DataVersion;
+import ca.mcgill.cs.creco.data.IDataStoreListener;
+import ca.mcgill.cs.creco.data.IReloadableDataStore;
+import ca.mcgill.cs.creco.data.Product;
+import ca.mcgill.cs.creco.data.ProductDelta;
+
+/**
+ * A data store that always holds the same version, for the benchmarks of the
+ * facade. The data of a benchmark never changes: reloading it and applying a
+ * delta do nothing and return that version, so no listener is ever notified.
+ */
+final class FixedDataStore implements IReloadableDataStore
+{
+	private final DataVersion aVersion;
+
+	FixedDataStore(DataVersion pVersion)
+	{
+		aVersion = pVersion;
+	}
+
+	@Override
+	public Category getCategory(String pId)
+	{
+		return aVersion.getCategory(pId);
+	}
+
+	@Override
+	public Product getProduct(String pId)
+	{
+		return aVersion.getProduct(pId);
+	}
+
+	@Override
+	public Collection<Category> getCategories()
+	{
+		return aVersion.getCategories();
+	}
+
+	@Override
+	public Collection<Product> getProducts()
+	{
+		return aVersion.getProducts();
+	}
+
+	@Override
+	public DataVersion getCurrentVersion()
+	{
+		return aVersion;
+	}
+
+	@Override
+	public DataVersion reload()
+	{
+		return aVersion;
+	}
+
+	@Override
+	public DataVersion applyDelta(ProductDelta pDelta)
+	{
+		return aVersion;
+	}
+
+	@Override
+	public void addListener(IDataStoreListener pListener)
+	{}
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.logic;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.mcgill.cs.creco.data.BenchmarkData;
+import ca.mcgill.cs.creco.data.Category;
+import ca.mcgill.cs.creco.data.DataVersion;
+import ca.mcgill.cs.creco.data.json.SyntheticDataGenerator;
+
+/**
+ * Ranks the products of a category for a number of features scored by the user.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class ProductRankerBenchmark
+{
+	private static final int SPECIFICATIONS_PER_CATEGORY = 20;
+	private static final int PAGE_SIZE = 20;
+	private static final double MAX_USER_SCORE = 100;
+
+	@Param({ "100", "1000", "10000" })
+	private int aProductsPerCategory;
+
+	@Param({ "1", "3", "10" })
+	private int aNumberOfFeatures;
+
+	private final ProductRanker aProductRanker = new ProductRanker();
+	private Category aCategory;
+	private List<UserScoredAttribute> aUserScoredAttributes = new ArrayList<UserScoredAttribute>();
+	private List<UserScoredAttribute> aMovedUserScoredAttributes = new ArrayList<UserScoredAttribute>();
+	private final RankingState aRankingState = new RankingState();
+	private boolean aMoved;
+
+	/**
+	 * Loads a data set with a single franchise, and scores the attributes
+	 * of one of its categories that are most correlated with the overall score.
+	 * @throws IOException If the data cannot be written or read.
+	 */
+	@Setup
+	public void setup() throws IOException
+	{
+		SyntheticDataGenerator generator = new SyntheticDataGenerator(1);
+		generator.setNumberOfFranchises(1);
+		generator.setProductsPerCategory(aProductsPerCategory);
+		generator.setSpecificationsPerCategory(SPECIFICATIONS_PER_CATEGORY);
+		File directory = BenchmarkData.generate(generator);
+		DataVersion version;
+		try
+		{
+			version = BenchmarkData.load(directory);
+		}
+		finally
+		{
+			BenchmarkData.delete(directory);
+		}
+
+		for(Category category : version.getCategories())
+		{
+			if(aCategory == null || category.getNumberOfProducts() > aCategory.getNumberOfProducts())
+			{
+				aCategory = category;
+			}
+		}
+		List<ScoredAttribute> scoredAttributes = new AttributeExtractor(version).getAttributesForCategory(aCategory.getId());
+		for(int i = 0; i < aNumberOfFeatures && i < scoredAttributes.size(); i++)
+		{
+			aUserScoredAttributes.add(new UserScoredAttribute(scoredAttributes.get(i), MAX_USER_SCORE - i));
+		}
+		Collections.sort(aUserScoredAttributes, UserScoredAttribute.SORT_BY_USER_SCORE);
+		
+		// The same features with the slider of the last one moved
+		aMovedUserScoredAttributes.addAll(aUserScoredAttributes);
+		int last = aMovedUserScoredAttributes.size() - 1;
+		aMovedUserScoredAttributes.set(last, new UserScoredAttribute(aMovedUserScoredAttributes.get(last).getScoredAttribute(), 
+				aMovedUserScoredAttributes.get(last).getUserScore() / 2));
+	}
+
+	/**
+	 * @return The ranking of all the products.
+	 */
+	@Benchmark
+	public List<RankExplanation> rankAll()
+	{
+		return aProductRanker.rankProducts(aUserScoredAttributes, aCategory);
+	}
+
+	/**
+	 * @return The first page of the ranking, as requested by the products page.
+	 */
+	@Benchmark
+	public List<RankExplanation> rankFirstPage()
+	{
+		return aProductRanker.rankProducts(aUserScoredAttributes, aCategory, PAGE_SIZE, 0);
+	}
+
+	/**
+	 * @return The first page of the ranking after the user moved one slider, 
+	 * as ranked incrementally from the previous ranking.
+	 */
+	@Benchmark
+	public List<RankExplanation> rankFirstPageAfterSliderMove()
+	{
+		aMoved = !aMoved;
+		if(aMoved)
+		{
+			return aProductRanker.rankProducts(aMovedUserScoredAttributes, aCategory, PAGE_SIZE, 0, aRankingState);
+		}
+		return aProductRanker.rankProducts(aUserScoredAttributes, aCategory, PAGE_SIZE, 0, aRankingState);
+	}
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.logic.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ca.mcgill.cs.creco.data.BenchmarkData;
+import ca.mcgill.cs.creco.data.json.SyntheticDataGenerator;
+
+/**
+ * Searches the categories of a synthetic data set with typical queries.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class CategorySearchBenchmark
+{
+	private static final int NUMBER_OF_FRANCHISES = 16;
+	private static final int CATEGORIES_PER_FRANCHISE = 8;
+	private static final String[] QUERIES =
+		{
+			"refrigerator", "Smart Televisions", "portable", "drill", "acme", "wireless headphones", "vacum", "nothing"
+		};
+
+	private CategorySearch aCategorySearch;
+
+	/**
+	 * Indexes the data set.
+	 * @throws IOException If the data cannot be written, read or indexed.
+	 */
+	@Setup
+	public void setup() throws IOException
+	{
+		SyntheticDataGenerator generator = new SyntheticDataGenerator(1);
+		generator.setNumberOfFranchises(NUMBER_OF_FRANCHISES);
+		generator.setCategoryFanout(CATEGORIES_PER_FRANCHISE);
+		File directory = BenchmarkData.generate(generator);
+		try
+		{
+			aCategorySearch = new CategorySearch(BenchmarkData.load(directory));
+		}
+		finally
+		{
+			BenchmarkData.delete(directory);
+		}
+	}
+
+	/**
+	 * @param pBlackhole Consumes the results.
+	 */
+	@Benchmark
+	public void queryCategories(Blackhole pBlackhole)
+	{
+		for(String query : QUERIES)
+		{
+			pBlackhole.consume(aCategorySearch.queryCategories(query));
+		}
+	}
+}
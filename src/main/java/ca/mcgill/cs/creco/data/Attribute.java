@@ -16,40 +16,61 @@
 package ca.mcgill.cs.creco.data;
 
 /**
- * Represents an immutable attribute of a product.
+ * Represents an immutable attribute of a product: a typed value along with
+ * a descriptor of the attribute. Attributes loaded through an AttributeInterner
+ * share their descriptors, and products with the same value for an attribute 
+ * share the same Attribute object.
  */
 public final class Attribute 
 {
 	/**
 	 * Obtained from the original data.
 	 */
-	private enum AttributeType 
+	enum AttributeType 
 	{ RATING, SPECIFICATION, PRICE }
 	
-	private final String aDisplayName;
-	private final String aDescription;
-	private final String aAttributeId;
+	private final AttributeDescriptor aDescriptor;
 	private final TypedValue aTypedValue;
 	
-	private AttributeType aAttributeType;
-	
 	/**
 	 * Creates a new Attribute.  You must use one of the factory methods below (buildSpecification,
 	 * buildRating, buildPrice), as applicable.
 	 * 
+	 * @param pDescriptor The id, display name, description and type of the attribute.
+	 * @param pValue The typed value for the attribute.
+	 */
+	private Attribute(AttributeDescriptor pDescriptor, TypedValue pValue)
+	{
+		aDescriptor = pDescriptor;
+		aTypedValue = pValue;
+	}
+	
+	/**
+	 * Creates an attribute from a value whose type was already inferred, 
+	 * for instance when reading it back from a snapshot.
+	 * 
 	 * @param pId The id of the attribute.
 	 * @param pName The display name.
 	 * @param pDescription The description.
-	 * @param pValue The value for the attribute.
-	 * @param AttributeType the type of attribute (RATING, SPECIFICATION, or PRICE)
+	 * @param pValue The typed value for the attribute.
+	 * @param pAttributeType the type of attribute (RATING, SPECIFICATION, or PRICE)
+	 * @return The newly created attribute.
+	 */
+	static Attribute build(String pId, String pName, String pDescription, TypedValue pValue, AttributeType pAttributeType)
+	{
+		return new Attribute(new AttributeDescriptor(pId, pName, pDescription, pAttributeType), pValue);
+	}
+	
+	/**
+	 * Creates an attribute that shares its descriptor with other attributes.
+	 * 
+	 * @param pDescriptor The id, display name, description and type of the attribute.
+	 * @param pValue The typed value for the attribute.
+	 * @return The newly created attribute.
 	 */
-	private Attribute( String pId, String pName, String pDescription, Object pValue, AttributeType pAttributeType)
+	static Attribute build(AttributeDescriptor pDescriptor, TypedValue pValue)
 	{
-		aAttributeId = pId;
-		aDescription = pDescription;
-		aDisplayName = pName;
-		aTypedValue = new TypedValue(pValue);
-		aAttributeType = pAttributeType;
+		return new Attribute(pDescriptor, pValue);
 	}
 
 	/**
@@ -63,7 +84,7 @@ public final class Attribute
 	 */
 	public static Attribute buildSpecification(String pId, String pName, String pDescription, Object pValue )
 	{
-		return new Attribute(pId, pName, pDescription, pValue, Attribute.AttributeType.SPECIFICATION);
+		return build(pId, pName, pDescription, new TypedValue(pValue), AttributeType.SPECIFICATION);
 	}
 
 	/**
@@ -77,7 +98,7 @@ public final class Attribute
 	 */
 	public static Attribute buildRating(String pId, String pName, String pDescription, Object pValue )
 	{
-		return new Attribute(pId, pName, pDescription, pValue, Attribute.AttributeType.RATING);
+		return build(pId, pName, pDescription, new TypedValue(pValue), AttributeType.RATING);
 	}
 
 	/**
@@ -91,7 +112,7 @@ public final class Attribute
 	 */
 	public static Attribute buildPrice(String pId, String pName, String pDescription, Object pValue )
 	{
-		return new Attribute(pId, pName, pDescription, pValue, Attribute.AttributeType.PRICE);
+		return build(pId, pName, pDescription, new TypedValue(pValue), AttributeType.PRICE);
 	}
 
 	/**
@@ -99,7 +120,7 @@ public final class Attribute
 	 */
 	public boolean isRating()
 	{
-		return aAttributeType == AttributeType.RATING;	
+		return aDescriptor.getAttributeType() == AttributeType.RATING;	
 	}
 
 	/**
@@ -107,7 +128,7 @@ public final class Attribute
 	 */
 	public boolean isSpecification()
 	{
-		return aAttributeType == AttributeType.SPECIFICATION;	
+		return aDescriptor.getAttributeType() == AttributeType.SPECIFICATION;	
 	}
 
 	/**
@@ -115,26 +136,42 @@ public final class Attribute
 	 */
 	public boolean isPrice()
 	{
-		return aAttributeType == AttributeType.PRICE;	
+		return aDescriptor.getAttributeType() == AttributeType.PRICE;	
+	}
+	
+	/**
+	 * @return The type of attribute (RATING, SPECIFICATION, or PRICE).
+	 */
+	AttributeType getAttributeType()
+	{
+		return aDescriptor.getAttributeType();
+	}
+	
+	/**
+	 * @return The id, display name, description and type of the attribute.
+	 */
+	AttributeDescriptor getDescriptor()
+	{
+		return aDescriptor;
 	}
 	
 	/**
 	 * @return The display name of the attribute.
 	 */
 	public String getName() 
-	{ return aDisplayName; }
+	{ return aDescriptor.getName(); }
 
 	/**
 	 * @return The description of the attribute.
 	 */
 	public String getDescription() 
-	{ return aDescription; }
+	{ return aDescriptor.getDescription(); }
 
 	/**
 	 * @return The id of this attribute.
 	 */
 	public String getId() 
-	{ return aAttributeId; }
+	{ return aDescriptor.getId(); }
 
 	/**
 	 * @return The typed value.
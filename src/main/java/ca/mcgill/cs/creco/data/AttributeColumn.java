@@ -0,0 +1,309 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The values of one attribute for all the products of a category, stored
+ * column-wise and indexed by the ordinal of the product in its CategoryColumns.
+ *
+ * Numeric values are kept in a double array along with a presence bitset. String
+ * and boolean values are dictionary-encoded: each product holds the integer code
+ * of its label, and the dictionary maps codes back to label names. Boolean labels
+ * are named "true" and "false", the same way String.valueOf names them.
+ *
+ * A product can have the attribute with a value that is neither numeric nor nominal
+ * (NA or null). Such products are present, but not available.
+ */
+public final class AttributeColumn
+{
+	/** Label code of a product that has no string or boolean value for this attribute. */
+	public static final int NO_LABEL = -1;
+
+	private final String aAttributeId;
+	private final int aSize;
+	private final BitSet aPresent;
+	private final BitSet aNumeric;
+	private final BitSet aBoolean;
+	private final double[] aNumericValues;
+	private final int[] aLabels;
+	private final String[] aDictionary;
+	private final HashMap<String, Integer> aCodes;
+
+	private final int aPresentCount;
+	private final int aNumericCount;
+	private final int aBooleanCount;
+	private final int aStringCount;
+
+	private AttributeColumn(Builder pBuilder)
+	{
+		aAttributeId = pBuilder.aAttributeId;
+		aSize = pBuilder.aSize;
+		aPresent = pBuilder.aPresent;
+		aNumeric = pBuilder.aNumeric;
+		aBoolean = pBuilder.aBoolean;
+		aNumericValues = pBuilder.aNumericValues;
+		aLabels = pBuilder.aLabels;
+		aDictionary = pBuilder.aDictionary.toArray(new String[pBuilder.aDictionary.size()]);
+		aCodes = pBuilder.aCodes;
+		aPresentCount = aPresent.cardinality();
+		aNumericCount = aNumeric.cardinality();
+		aBooleanCount = aBoolean.cardinality();
+		aStringCount = pBuilder.aLabelCount - aBooleanCount;
+	}
+
+	/**
+	 * @return The id of the attribute stored in this column.
+	 */
+	public String getAttributeId()
+	{
+		return aAttributeId;
+	}
+
+	/**
+	 * @return The number of products in the column, whether they have the attribute or not.
+	 */
+	public int size()
+	{
+		return aSize;
+	}
+
+	/**
+	 * @param pOrdinal The ordinal of a product.
+	 * @return True if the product has this attribute, whatever its value.
+	 */
+	public boolean isPresent(int pOrdinal)
+	{
+		return aPresent.get(pOrdinal);
+	}
+
+	/**
+	 * @param pOrdinal The ordinal of a product.
+	 * @return True if the product has a numeric, string or boolean value for this attribute.
+	 * False if the attribute is absent, NA or null.
+	 */
+	public boolean isAvailable(int pOrdinal)
+	{
+		return aNumeric.get(pOrdinal) || getLabel(pOrdinal) != NO_LABEL;
+	}
+
+	/**
+	 * @param pOrdinal The ordinal of a product.
+	 * @return True if the product has a numeric value for this attribute.
+	 */
+	public boolean isNumeric(int pOrdinal)
+	{
+		return aNumeric.get(pOrdinal);
+	}
+
+	/**
+	 * @param pOrdinal The ordinal of a product.
+	 * @return True if the product has a boolean value for this attribute.
+	 */
+	public boolean isBoolean(int pOrdinal)
+	{
+		return aBoolean.get(pOrdinal);
+	}
+
+	/**
+	 * @param pOrdinal The ordinal of a product.
+	 * @return True if the product has a string value for this attribute.
+	 */
+	public boolean isString(int pOrdinal)
+	{
+		return !aBoolean.get(pOrdinal) && getLabel(pOrdinal) != NO_LABEL;
+	}
+
+	/**
+	 * @param pOrdinal The ordinal of a product.
+	 * @return The numeric value of the attribute for this product.
+	 * @throws TypedValueException If the product does not have a numeric value.
+	 */
+	public double getNumeric(int pOrdinal)
+	{
+		if(!aNumeric.get(pOrdinal))
+		{
+			throw new TypedValueException("Attempting to obtain a numeric value from a non-numeric type");
+		}
+		return aNumericValues[pOrdinal];
+	}
+
+	/**
+	 * @param pOrdinal The ordinal of a product.
+	 * @return The boolean value of the attribute for this product.
+	 * @throws TypedValueException If the product does not have a boolean value.
+	 */
+	public boolean getBoolean(int pOrdinal)
+	{
+		if(!aBoolean.get(pOrdinal))
+		{
+			throw new TypedValueException("Attempting to obtain a boolean value from a non-boolean type");
+		}
+		return Boolean.parseBoolean(aDictionary[aLabels[pOrdinal]]);
+	}
+
+	/**
+	 * @param pOrdinal The ordinal of a product.
+	 * @return The code of the string or boolean label of the attribute for this product,
+	 * or NO_LABEL if the value is not nominal.
+	 */
+	public int getLabel(int pOrdinal)
+	{
+		if(aLabels == null)
+		{
+			return NO_LABEL;
+		}
+		return aLabels[pOrdinal];
+	}
+
+	/**
+	 * @param pLabel A label code obtained from getLabel.
+	 * @return The name of the label.
+	 */
+	public String getLabelName(int pLabel)
+	{
+		return aDictionary[pLabel];
+	}
+
+	/**
+	 * @param pLabelName The name of a label.
+	 * @return The code of the label, or NO_LABEL if no product has this label.
+	 */
+	public int getCode(String pLabelName)
+	{
+		Integer code = aCodes.get(pLabelName);
+		if(code == null)
+		{
+			return NO_LABEL;
+		}
+		return code;
+	}
+
+	/**
+	 * @return The number of distinct labels in the dictionary of this column.
+	 */
+	public int getNumberOfLabels()
+	{
+		return aDictionary.length;
+	}
+
+	/**
+	 * @return The number of products that have this attribute, whatever its value.
+	 */
+	public int getPresentCount()
+	{
+		return aPresentCount;
+	}
+
+	/**
+	 * @return The number of products with a numeric value.
+	 */
+	public int getNumericCount()
+	{
+		return aNumericCount;
+	}
+
+	/**
+	 * @return The number of products with a boolean value.
+	 */
+	public int getBooleanCount()
+	{
+		return aBooleanCount;
+	}
+
+	/**
+	 * @return The number of products with a string value.
+	 */
+	public int getStringCount()
+	{
+		return aStringCount;
+	}
+
+	/**
+	 * Accumulates the values of a column one product at a time. The
+	 * arrays are only allocated once a value of the corresponding kind is seen.
+	 */
+	static final class Builder
+	{
+		private final String aAttributeId;
+		private final int aSize;
+		private final BitSet aPresent = new BitSet();
+		private final BitSet aNumeric = new BitSet();
+		private final BitSet aBoolean = new BitSet();
+		private double[] aNumericValues;
+		private int[] aLabels;
+		private final List<String> aDictionary = new ArrayList<String>();
+		private final HashMap<String, Integer> aCodes = new HashMap<String, Integer>();
+		private int aLabelCount = 0;
+
+		Builder(String pAttributeId, int pSize)
+		{
+			aAttributeId = pAttributeId;
+			aSize = pSize;
+		}
+
+		void set(int pOrdinal, TypedValue pValue)
+		{
+			aPresent.set(pOrdinal);
+			if(pValue.isNumeric())
+			{
+				if(aNumericValues == null)
+				{
+					aNumericValues = new double[aSize];
+				}
+				aNumeric.set(pOrdinal);
+				aNumericValues[pOrdinal] = pValue.getNumeric();
+			}
+			else if(pValue.isString())
+			{
+				setLabel(pOrdinal, pValue.getString());
+			}
+			else if(pValue.isBoolean())
+			{
+				aBoolean.set(pOrdinal);
+				setLabel(pOrdinal, String.valueOf(pValue.getBoolean()));
+			}
+		}
+
+		private void setLabel(int pOrdinal, String pLabel)
+		{
+			if(aLabels == null)
+			{
+				aLabels = new int[aSize];
+				Arrays.fill(aLabels, NO_LABEL);
+			}
+			Integer code = aCodes.get(pLabel);
+			if(code == null)
+			{
+				code = aDictionary.size();
+				aCodes.put(pLabel, code);
+				aDictionary.add(pLabel);
+			}
+			aLabels[pOrdinal] = code;
+			aLabelCount++;
+		}
+
+		AttributeColumn build()
+		{
+			return new AttributeColumn(this);
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.data;
+
+/**
+ * The part of an attribute that does not depend on the product: its id, display name,
+ * description and type. An AttributeInterner shares one descriptor between all the
+ * attributes with the same metadata. Immutable.
+ */
+final class AttributeDescriptor
+{
+	private static final int HASH_MULTIPLIER = 31;
+
+	private final String aAttributeId;
+	private final String aDisplayName;
+	private final String aDescription;
+	private final Attribute.AttributeType aAttributeType;
+
+	AttributeDescriptor(String pId, String pName, String pDescription, Attribute.AttributeType pAttributeType)
+	{
+		aAttributeId = pId;
+		aDisplayName = pName;
+		aDescription = pDescription;
+		aAttributeType = pAttributeType;
+	}
+
+	String getId()
+	{
+		return aAttributeId;
+	}
+
+	String getName()
+	{
+		return aDisplayName;
+	}
+
+	String getDescription()
+	{
+		return aDescription;
+	}
+
+	Attribute.AttributeType getAttributeType()
+	{
+		return aAttributeType;
+	}
+
+	@Override
+	public boolean equals(Object pObject)
+	{
+		if(pObject == this)
+		{
+			return true;
+		}
+		if(!(pObject instanceof AttributeDescriptor))
+		{
+			return false;
+		}
+		AttributeDescriptor descriptor = (AttributeDescriptor) pObject;
+		return aAttributeType == descriptor.aAttributeType && equalStrings(aAttributeId, descriptor.aAttributeId)
+				&& equalStrings(aDisplayName, descriptor.aDisplayName) && equalStrings(aDescription, descriptor.aDescription);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		int hash = aAttributeType.hashCode();
+		hash = hash * HASH_MULTIPLIER + hashString(aAttributeId);
+		hash = hash * HASH_MULTIPLIER + hashString(aDisplayName);
+		return hash * HASH_MULTIPLIER + hashString(aDescription);
+	}
+
+	private static boolean equalStrings(String pString1, String pString2)
+	{
+		if(pString1 == null)
+		{
+			return pString2 == null;
+		}
+		return pString1.equals(pString2);
+	}
+
+	private static int hashString(String pString)
+	{
+		if(pString == null)
+		{
+			return 0;
+		}
+		return pString.hashCode();
+	}
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.data;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds attributes while loading the data, sharing everything that products
+ * have in common. Thousands of products repeat the same attribute names,
+ * descriptions and values ("Yes", "N/A", small numbers), so the interner keeps:
+ * <ul>
+ * <li>one AttributeDescriptor for each distinct id, name, description and type;</li>
+ * <li>one TypedValue for each distinct value, so the type of a raw value is only inferred once;</li>
+ * <li>one Attribute for each distinct descriptor and value, shared by all the products that have it.</li>
+ * </ul>
+ * Attributes are immutable, so sharing them is invisible to their users.
+ *
+ * An interner should be discarded once the data is loaded. Not thread-safe.
+ */
+public final class AttributeInterner
+{
+	private final Map<AttributeDescriptor, AttributeDescriptor> aDescriptors = new HashMap<AttributeDescriptor, AttributeDescriptor>();
+	private final Map<AttributeDescriptor, Map<Object, Attribute>> aAttributes = new HashMap<AttributeDescriptor, Map<Object, Attribute>>();
+	private final Map<Object, TypedValue> aRawValues = new HashMap<Object, TypedValue>();
+	private final Map<Object, TypedValue> aValues = new HashMap<Object, TypedValue>();
+	private final Map<String, String> aStrings = new HashMap<String, String>();
+	private int aNumberOfBuiltAttributes;
+
+	/**
+	 * Same as Attribute.buildSpecification, but shares the result with equal attributes.
+	 * @param pId The id of the attribute.
+	 * @param pName The display name.
+	 * @param pDescription The description.
+	 * @param pValue The raw value of the attribute.
+	 * @return A specification attribute.
+	 */
+	public Attribute buildSpecification(String pId, String pName, String pDescription, Object pValue)
+	{
+		return build(Attribute.AttributeType.SPECIFICATION, pId, pName, pDescription, internValue(pValue));
+	}
+
+	/**
+	 * Same as Attribute.buildRating, but shares the result with equal attributes.
+	 * @param pId The id of the attribute.
+	 * @param pName The display name.
+	 * @param pDescription The description.
+	 * @param pValue The raw value of the attribute.
+	 * @return A rating attribute.
+	 */
+	public Attribute buildRating(String pId, String pName, String pDescription, Object pValue)
+	{
+		return build(Attribute.AttributeType.RATING, pId, pName, pDescription, internValue(pValue));
+	}
+
+	/**
+	 * Same as Attribute.buildPrice, but shares the result with equal attributes.
+	 * @param pId The id of the attribute.
+	 * @param pName The display name.
+	 * @param pDescription The description.
+	 * @param pValue The raw value of the attribute.
+	 * @return A price attribute.
+	 */
+	public Attribute buildPrice(String pId, String pName, String pDescription, Object pValue)
+	{
+		return build(Attribute.AttributeType.PRICE, pId, pName, pDescription, internValue(pValue));
+	}
+
+	/**
+	 * Returns a canonical instance of a string that repeats across products,
+	 * like a brand name or a category id.
+	 * @param pString A string, possibly null.
+	 * @return An equal string, the same instance for all the equal strings interned.
+	 */
+	public String intern(String pString)
+	{
+		if(pString == null)
+		{
+			return null;
+		}
+		String canonical = aStrings.get(pString);
+		if(canonical == null)
+		{
+			aStrings.put(pString, pString);
+			canonical = pString;
+		}
+		return canonical;
+	}
+
+	/**
+	 * @return The number of attributes built by this interner.
+	 */
+	public int getNumberOfBuiltAttributes()
+	{
+		return aNumberOfBuiltAttributes;
+	}
+
+	/**
+	 * @return The number of distinct attributes among the ones built by this interner.
+	 */
+	public int getNumberOfDistinctAttributes()
+	{
+		int count = 0;
+		for(Map<Object, Attribute> attributes : aAttributes.values())
+		{
+			count += attributes.size();
+		}
+		return count;
+	}
+
+	/**
+	 * @return The number of distinct attribute descriptors.
+	 */
+	public int getNumberOfDescriptors()
+	{
+		return aDescriptors.size();
+	}
+
+	/**
+	 * Builds an attribute from a value whose type was already inferred.
+	 * @param pAttributeType The type of attribute.
+	 * @param pId The id of the attribute.
+	 * @param pName The display name.
+	 * @param pDescription The description.
+	 * @param pValue The typed value of the attribute.
+	 * @return An attribute, shared with all the equal attributes built by this interner.
+	 */
+	Attribute build(Attribute.AttributeType pAttributeType, String pId, String pName, String pDescription, TypedValue pValue)
+	{
+		aNumberOfBuiltAttributes++;
+		AttributeDescriptor descriptor = new AttributeDescriptor(pId, pName, pDescription, pAttributeType);
+		Map<Object, Attribute> attributes = aAttributes.get(descriptor);
+		if(attributes == null)
+		{
+			aDescriptors.put(descriptor, descriptor);
+			attributes = new HashMap<Object, Attribute>();
+			aAttributes.put(descriptor, attributes);
+		}
+		else
+		{
+			descriptor = aDescriptors.get(descriptor);
+		}
+
+		Object key = pValue.getKey();
+		Attribute attribute = attributes.get(key);
+		if(attribute == null)
+		{
+			attribute = Attribute.build(descriptor, canonicalValue(key, pValue));
+			attributes.put(key, attribute);
+		}
+		return attribute;
+	}
+
+	/*
+	 * Infers the type of a raw value once for all equal raw values. Only the
+	 * types found in the data are cached: the others are left to TypedValue.
+	 */
+	private TypedValue internValue(Object pValue)
+	{
+		if(pValue != null && !(pValue instanceof String) && !(pValue instanceof Double)
+				&& !(pValue instanceof Integer) && !(pValue instanceof Boolean))
+		{
+			return new TypedValue(pValue);
+		}
+		TypedValue value = aRawValues.get(pValue);
+		if(value == null)
+		{
+			value = new TypedValue(pValue);
+			aRawValues.put(pValue, value);
+		}
+		return value;
+	}
+
+	/*
+	 * Raw values of different types can have the same typed value, like "12" and 12.
+	 */
+	private TypedValue canonicalValue(Object pKey, TypedValue pValue)
+	{
+		TypedValue value = aValues.get(pKey);
+		if(value == null)
+		{
+			aValues.put(pKey, pValue);
+			value = pValue;
+		}
+		return value;
+	}
+}
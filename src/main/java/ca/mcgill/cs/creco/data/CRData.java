@@ -15,11 +15,19 @@
  */
 package ca.mcgill.cs.creco.data;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import ca.mcgill.cs.creco.data.json.JsonLoadingService;
@@ -29,12 +37,31 @@ import ca.mcgill.cs.creco.data.json.JsonLoadingService;
  * All of the data is accessible through a singleton CRData object. Just 
  * create a new CRData object to get started. Normally in production this
  * will be built when the server starts up.
+ * 
+ * The first time the data is loaded from the JSON files, the processed 
+ * category tree and products are saved to a binary snapshot in the data
+ * directory. Later startups read the snapshot instead, as long as the 
+ * JSON files have not changed.
+ * 
+ * The data is held in immutable versions. Reloading builds a new version
+ * while the current one is still in use, and then publishes it at once.
+ * When the RELOAD_INTERVAL_PROPERTY system property is set, the data files 
+ * are checked periodically in the background and reloaded when they change.
+ * Small changes can also be applied as deltas, without reloading the files.
  */
 @Component
-public final class CRData implements IDataStore
+public final class CRData implements IReloadableDataStore
 {
 	private static final String DEFAULT_CATEGORY_FILENAME = "category.json";
 	private static final String DEFAULT_DEAD_LINKS_FILENAME = "dead_links.json";
+	private static final String DEFAULT_SNAPSHOT_FILENAME = "crdata.snapshot";
+	
+	/** System property holding the name of the snapshot file, in the data directory. */
+	public static final String SNAPSHOT_PROPERTY = "creco.data.snapshot";
+	/** System property holding the number of seconds between checks for changed data files. Not set disables the checks. */
+	public static final String RELOAD_INTERVAL_PROPERTY = "creco.data.reloadInterval";
+	
+	private static final Logger LOG = LoggerFactory.getLogger(CRData.class);
 	
 	private static final String[] DEFAULT_PRODUCT_FILENAMES = 
 		{
@@ -43,8 +70,19 @@ public final class CRData implements IDataStore
 			"food.json", "babiesKids.json", "money.json"
 		};
 	
-	private HashMap<String, Product> aProducts = new HashMap<String, Product>();
-	private HashMap<String, Category> aCategoryIndex = new HashMap<String, Category>();
+	private final String[] aProductFileNames;
+	private final String aCategoryFileName;
+	private final String aDeadLinksFileName;
+	private final List<IDataStoreListener> aListeners = new CopyOnWriteArrayList<IDataStoreListener>();
+	private volatile DataVersion aVersion;
+	
+	// The fingerprint of the data files that the current version was loaded from
+	private long aFingerprint;
+	
+	// The category tree of the current version, kept to apply deltas. A tree read from
+	// the snapshot is only processed if a delta is applied to it.
+	private CategoryTree aTree;
+	private boolean aTreeIsProcessed;
 	
 	private CRData() throws IOException
 	{
@@ -58,9 +96,55 @@ public final class CRData implements IDataStore
 	
 	private CRData(String[] pProductFileNames, String pCategoryFileName, String pDeadlinksFilename) throws IOException
 	{
+		aProductFileNames = pProductFileNames;
+		aCategoryFileName = pCategoryFileName;
+		aDeadLinksFileName = pDeadlinksFilename;
+		aVersion = load(1);
 		
-		IDataLoadingService loadingService = new JsonLoadingService(DataPath.get(), 
-				pCategoryFileName, pProductFileNames, pDeadlinksFilename);
+		Integer interval = Integer.getInteger(RELOAD_INTERVAL_PROPERTY);
+		if(interval != null && interval > 0)
+		{
+			watch(interval);
+		}
+	}
+	
+	private String[] getSourceFileNames()
+	{
+		String[] sourceFileNames = new String[aProductFileNames.length + 2];
+		sourceFileNames[0] = aCategoryFileName;
+		sourceFileNames[1] = aDeadLinksFileName;
+		System.arraycopy(aProductFileNames, 0, sourceFileNames, 2, aProductFileNames.length);
+		return sourceFileNames;
+	}
+	
+	/*
+	 * Loads a new version of the data, from the snapshot if it is up to date.
+	 */
+	private DataVersion load(int pNumber) throws IOException
+	{
+		String path = DataPath.get();
+		long fingerprint = SnapshotLoadingService.fingerprint(path, getSourceFileNames());
+		File snapshotFile = new File(path + System.getProperty(SNAPSHOT_PROPERTY, DEFAULT_SNAPSHOT_FILENAME));
+		
+		if(snapshotFile.exists())
+		{
+			try
+			{
+				CategoryTree tree = new CategoryTree();
+				DataVersion version = loadSnapshot(pNumber, tree, new SnapshotLoadingService(snapshotFile, fingerprint));
+				aFingerprint = fingerprint;
+				aTree = tree;
+				aTreeIsProcessed = false;
+				return version;
+			}
+			catch(IOException e)
+			{
+				LOG.info("Reloading the JSON data: " + e.getMessage());
+			}
+		}
+		
+		IDataLoadingService loadingService = new JsonLoadingService(path, 
+				aCategoryFileName, aProductFileNames, aDeadLinksFileName);
 		CategoryTree lCatTree = new CategoryTree();
 		
 		loadingService.loadCategories(lCatTree);
@@ -70,6 +154,8 @@ public final class CRData implements IDataStore
 		lCatTree.eliminateAllSingletons();
 		
 		loadingService.loadProducts(lCatTree);
+		LOG.info("Attribute values by type inference rule: " + TypedValueParser.getCounts() 
+				+ ", cached: " + TypedValueParser.getCacheHits());
 		
 		// Put links from products to categories and vice-versa
 		lCatTree.associateProducts();
@@ -78,24 +164,122 @@ public final class CRData implements IDataStore
 		lCatTree.refresh();
 		lCatTree.findEquivalenceClasses();
 		
-
-		// Copy the Products and Categories to CRData
-		for(Product prod : lCatTree.getProducts()) 
+		DataVersion version = new DataVersion(pNumber, lCatTree.getProducts(), lCatTree.getCategories());
+		aFingerprint = fingerprint;
+		aTree = lCatTree;
+		aTreeIsProcessed = true;
+		
+		// Save the processed tree so that the next startup can skip all of the above
+		try
 		{
-			aProducts.put(prod.getId(), prod);
+			SnapshotWriter.write(snapshotFile, fingerprint, lCatTree);
 		}
-		for(CategoryNode catNode : lCatTree.getCategories()) 
+		catch(IOException e)
 		{
-			Category newCategory = new Category(catNode.getId(), catNode.getName(), catNode.getRootCategoryName(), catNode.getProducts());
-			aCategoryIndex.put(newCategory.getId(), newCategory);
-
-			// Associate products to the equivalence class that contains them
-			for(Product prod : newCategory.getProducts())
+			LOG.warn("Could not write the data snapshot " + snapshotFile, e);
+		}
+		return version;
+	}
+	
+	/*
+	 * The snapshot holds the category tree after it was processed, so 
+	 * its equivalence classes are used as they are.
+	 */
+	private static DataVersion loadSnapshot(int pNumber, CategoryTree pTree, SnapshotLoadingService pLoadingService) throws IOException
+	{
+		pLoadingService.loadCategories(pTree);
+		pLoadingService.loadProducts(pTree);
+		return new DataVersion(pNumber, pTree.getProducts(), pLoadingService.getEquivalenceClasses());
+	}
+	
+	/*
+	 * Checks the data files for changes every pInterval seconds, on a daemon thread.
+	 */
+	private void watch(int pInterval)
+	{
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+		{
+			@Override
+			public Thread newThread(Runnable pRunnable)
+			{
+				Thread thread = new Thread(pRunnable, "creco-data-reload");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.scheduleWithFixedDelay(new Runnable()
+		{
+			@Override
+			public void run()
 			{
-				prod.setCategory(newCategory);
+				try
+				{
+					reloadIfChanged();
+				}
+				catch(IOException e)
+				{
+					LOG.error("Could not reload the data, keeping version " + aVersion.getNumber(), e);
+				}
+				catch(RuntimeException e)
+				{
+					// Keep checking: an exception would cancel the next checks 
+					LOG.error("Could not reload the data, keeping version " + aVersion.getNumber(), e);
+				}
 			}
+		}, pInterval, pInterval, TimeUnit.SECONDS);
+	}
+	
+	private synchronized void reloadIfChanged() throws IOException
+	{
+		if(SnapshotLoadingService.fingerprint(DataPath.get(), getSourceFileNames()) != aFingerprint)
+		{
+			reload();
 		}
-		
+	}
+	
+	@Override
+	public synchronized DataVersion reload() throws IOException
+	{
+		long start = System.currentTimeMillis();
+		publish(load(aVersion.getNumber() + 1), start);
+		return aVersion;
+	}
+	
+	@Override
+	public synchronized DataVersion applyDelta(ProductDelta pDelta)
+	{
+		long start = System.currentTimeMillis();
+		if(!aTreeIsProcessed)
+		{
+			aTree.reprocess();
+			aTreeIsProcessed = true;
+		}
+		Set<CategoryNode> changedClasses = aTree.applyDelta(pDelta);
+		publish(new DataVersion(aVersion.getNumber() + 1, aVersion, aTree.getProducts(), aTree.getCategories(), changedClasses), start);
+		return aVersion;
+	}
+	
+	private void publish(DataVersion pVersion, long pStart)
+	{
+		aVersion = pVersion;
+		LOG.info("Published data version " + pVersion.getNumber() + " in " + (System.currentTimeMillis() - pStart) + " ms, " 
+				+ pVersion.getChangedCategories().size() + " categories changed, " + pVersion.getRemovedCategories().size() + " removed");
+		for(IDataStoreListener listener : aListeners)
+		{
+			listener.dataReloaded(pVersion);
+		}
+	}
+	
+	@Override
+	public DataVersion getCurrentVersion()
+	{
+		return aVersion;
+	}
+	
+	@Override
+	public void addListener(IDataStoreListener pListener)
+	{
+		aListeners.add(pListener);
 	}
 	
 	/**
@@ -104,20 +288,20 @@ public final class CRData implements IDataStore
 	 */
 	public Category getCategory(String pIndex)
 	{
-		return aCategoryIndex.get(pIndex);
+		return aVersion.getCategory(pIndex);
 	}
 	
 
 	@Override
 	public Product getProduct(String pId)
 	{
-		return aProducts.get(pId);
+		return aVersion.getProduct(pId);
 	}
 	
 	@Override
 	public Collection<Category> getCategories()
 	{
-		return Collections.unmodifiableCollection(aCategoryIndex.values());
+		return aVersion.getCategories();
 	}
 	
 	/**
@@ -126,7 +310,7 @@ public final class CRData implements IDataStore
 	@Override
 	public Collection<Product> getProducts() 
 	{
-		return Collections.unmodifiableCollection(aProducts.values());
+		return aVersion.getProducts();
 	}
 	
 
@@ -29,6 +29,7 @@ public class Category
 	private String aSingularName;
 	private String aRootCategoryName; 
 	private ArrayList<Product> aProducts = new ArrayList<Product>();	
+	private final CategoryColumns aColumns;
 	
 	/**
 	 * TODO Make package-private.
@@ -43,6 +44,7 @@ public class Category
 		aSingularName = pSingularName;
 		aRootCategoryName = pRootCategory;
 		aProducts.addAll(pProducts);
+		aColumns = new CategoryColumns(aProducts);
 	}
 	
 	/**
@@ -70,6 +72,14 @@ public class Category
 		return Collections.unmodifiableCollection(aProducts);
 	}
 	
+	/**
+	 * @return The columnar view of the products of this category.
+	 */
+	public CategoryColumns getColumns()
+	{
+		return aColumns;
+	}
+	
 	/**
 	 * @return The id of this category.
 	 */
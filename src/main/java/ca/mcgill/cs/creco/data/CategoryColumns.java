@@ -0,0 +1,116 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.data;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Columnar view of the products of a category. Each product is given a dense
+ * ordinal, in the order of Category.getProducts(), and the values of every
+ * attribute are stored in an AttributeColumn indexed by that ordinal.
+ *
+ * Code that scans all the products of a category for a few attributes should
+ * go through this view rather than looking up attributes product by product.
+ * Immutable.
+ */
+public final class CategoryColumns
+{
+	private final Product[] aProducts;
+	private final HashMap<String, Integer> aOrdinals = new HashMap<String, Integer>();
+	private final HashMap<String, AttributeColumn> aColumns = new HashMap<String, AttributeColumn>();
+
+	/**
+	 * Builds the columns in a single pass over the products and their attributes.
+	 * @param pProducts The products of the category, in ordinal order.
+	 */
+	CategoryColumns(Collection<Product> pProducts)
+	{
+		aProducts = pProducts.toArray(new Product[pProducts.size()]);
+
+		HashMap<String, AttributeColumn.Builder> builders = new HashMap<String, AttributeColumn.Builder>();
+		for(int ordinal = 0; ordinal < aProducts.length; ordinal++)
+		{
+			aOrdinals.put(aProducts[ordinal].getId(), ordinal);
+			for(Attribute attribute : aProducts[ordinal].getAttributes())
+			{
+				AttributeColumn.Builder builder = builders.get(attribute.getId());
+				if(builder == null)
+				{
+					builder = new AttributeColumn.Builder(attribute.getId(), aProducts.length);
+					builders.put(attribute.getId(), builder);
+				}
+				builder.set(ordinal, attribute.getTypedValue());
+			}
+		}
+		for(Map.Entry<String, AttributeColumn.Builder> entry : builders.entrySet())
+		{
+			aColumns.put(entry.getKey(), entry.getValue().build());
+		}
+	}
+
+	/**
+	 * @return The number of products in the category.
+	 */
+	public int size()
+	{
+		return aProducts.length;
+	}
+
+	/**
+	 * @param pOrdinal The ordinal of a product.
+	 * @return The product with this ordinal.
+	 */
+	public Product getProduct(int pOrdinal)
+	{
+		return aProducts[pOrdinal];
+	}
+
+	/**
+	 * @param pProduct A product.
+	 * @return The ordinal of the product in this view, or -1 if the product is not
+	 * in the category.
+	 */
+	public int getOrdinal(Product pProduct)
+	{
+		Integer ordinal = aOrdinals.get(pProduct.getId());
+		if(ordinal == null || aProducts[ordinal] != pProduct)
+		{
+			return -1;
+		}
+		return ordinal;
+	}
+
+	/**
+	 * @param pAttributeId The id of an attribute.
+	 * @return The column of values for this attribute, or null if no product of the
+	 * category has the attribute.
+	 */
+	public AttributeColumn getColumn(String pAttributeId)
+	{
+		return aColumns.get(pAttributeId);
+	}
+
+	/**
+	 * @return The ids of all the attributes found in at least one product of the category.
+	 */
+	public Collection<String> getAttributeIds()
+	{
+		return Collections.unmodifiableCollection(aColumns.keySet());
+	}
+}
@@ -16,10 +16,10 @@
 package ca.mcgill.cs.creco.data;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.List;
 
 /**
  * Represents a category in the product database.
@@ -38,9 +38,11 @@ public class CategoryNode
 	// Derived fields set by associateProducts()
 	private Double aJaccardIndex;
 	private ArrayList<CategoryNode> aChildren = new ArrayList<CategoryNode>();
-	private ArrayList<Product> aProducts = new ArrayList<Product>();	
-	private HashSet<String> aAttributeUnion = new HashSet<String>();
-	private HashSet<String> aAttributeIntersection = new HashSet<String>();
+	private List<Product> aProducts = new ArrayList<Product>();	
+	
+	// Attributes by ordinal, see CategoryTree.getAttributeIds()
+	private BitSet aAttributeUnion = new BitSet();
+	private BitSet aAttributeIntersection = new BitSet();
 	
 	/**
 	 * Creates a new Category initialized only with the parameter fields.
@@ -122,14 +124,9 @@ public class CategoryNode
 		description += " - count: " + getCount() + "\n";
 		description += " - ratedCount: " + aRatedCount + "\n";
 		description += " - testedCount: " + aTestedCount + "\n";
-		description += " - number of attributes: " + aAttributeUnion.size() + "\n";
+		description += " - number of attributes: " + aAttributeUnion.cardinality() + "\n";
 		description += " - Jaccard: " + aJaccardIndex + "\n";
-		description += "\n - Attributes:\n";
-
-		for(String attributeId : aAttributeUnion)
-		{
-			description += "\t- " + attributeId;
-		}
+		description += "\n - Attribute ordinals: " + aAttributeUnion + "\n";
 
 		return description;
 	}
@@ -156,9 +153,10 @@ public class CategoryNode
 	
 	void calculateJaccard()
 	{		
-		if(aAttributeUnion.size() > 0)
+		int unionSize = aAttributeUnion.cardinality();
+		if(unionSize > 0)
 		{
-			aJaccardIndex = ((double) aAttributeIntersection.size()) / ((double) aAttributeUnion.size());
+			aJaccardIndex = ((double) aAttributeIntersection.cardinality()) / ((double) unionSize);
 		}
 		else
 		{
@@ -166,12 +164,29 @@ public class CategoryNode
 		}
 	}
 	
-	void putProducts(Iterable<Product> pProducts)
+	/**
+	 * Forgets the products, attributes, counts and Jaccard index of this
+	 * category, so that they can be computed again. The children are kept.
+	 */
+	void clear()
 	{
-		for(Product prod : pProducts)
-		{
-			addProduct(prod);
-		}
+		aProducts = new ArrayList<Product>();
+		aAttributeUnion.clear();
+		aAttributeIntersection.clear();
+		aRatedCount = 0;
+		aTestedCount = 0;
+		aJaccardIndex = null;
+	}
+	
+	/**
+	 * Replaces the products of this category with a view of the products 
+	 * of its franchise. Products can no longer be added to the category until
+	 * it is cleared.
+	 * @param pProducts The products of the category and its subcategories.
+	 */
+	void setProducts(List<Product> pProducts)
+	{
+		aProducts = pProducts;
 	}
 						
 	void addProduct(Product pProduct)
@@ -179,32 +194,30 @@ public class CategoryNode
 		aProducts.add(pProduct);
 	}
 		
-	void addAttribute(String pAttributeId)
+	void addAttribute(int pAttributeOrdinal)
 	{
-		aAttributeUnion.add(pAttributeId);
-		aAttributeIntersection.add(pAttributeId);
+		aAttributeUnion.set(pAttributeOrdinal);
+		aAttributeIntersection.set(pAttributeOrdinal);
 	}
 	
-	void mergeAttributes(Set<String> pAttributeIds) 
+	void addAttributes(BitSet pAttributeOrdinals)
 	{
-		for(String attributeId : pAttributeIds)
-		{
-			aAttributeUnion.add(attributeId);
-		}
-		HashSet<String> newAttributeIntersection = new HashSet<String>();
-		for(String attributeId : aAttributeIntersection)
-		{
-			if(pAttributeIds.contains(attributeId))
-			{
-				newAttributeIntersection.add(attributeId);
-			}
-		}
-		aAttributeIntersection = newAttributeIntersection;
+		aAttributeUnion.or(pAttributeOrdinals);
+		aAttributeIntersection.or(pAttributeOrdinals);
+	}
+	
+	void mergeAttributes(BitSet pAttributeOrdinals) 
+	{
+		aAttributeUnion.or(pAttributeOrdinals);
+		aAttributeIntersection.and(pAttributeOrdinals);
 	}
 	
-	Set<String> getAttributeIds()
+	/**
+	 * @return The ordinals of the attributes of this category. Must not be modified.
+	 */
+	BitSet getAttributeOrdinals()
 	{
-		return Collections.unmodifiableSet(aAttributeUnion);
+		return aAttributeUnion;
 	}
 	
 	int getRatedCount()
@@ -1,10 +1,17 @@
 package ca.mcgill.cs.creco.data;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 //TODO: remove getCategoryNode
@@ -20,6 +27,16 @@ import java.util.Set;
  * <li>Calling the indexing and processing methods</li>
  * <li>Obtaining the list of categories</li>
  * </ol>
+ * 
+ * Once processed, the tree can be updated with applyDelta(), which only
+ * processes again the categories that contain the changed products.
+ * 
+ * To keep processing cheap on large trees, attribute ids are numbered in the 
+ * order they are found, and categories roll up their attributes as bit sets 
+ * of these ordinals. The products of a franchise are laid out in a single array,
+ * with the products of each category followed by the products of its subcategories,
+ * so that every category refers to a range of that array instead of holding
+ * a copy of the products of its subcategories.
  */
 class CategoryTree implements IDataCollector
 {
@@ -31,6 +48,13 @@ class CategoryTree implements IDataCollector
 	private ArrayList<CategoryNode> aEquivalenceClasses = new ArrayList<CategoryNode>();
 	private ArrayList<CategoryNode> aSubEquivalenceClasses = new ArrayList<CategoryNode>();
 	
+	// The products associated with each category by id, not counting the products of its children
+	private HashMap<String, List<Product>> aDirectProducts = new HashMap<String, List<Product>>();
+	
+	// Dense ordinals of the attribute ids, used by the categories' attribute bit sets
+	private HashMap<String, Integer> aAttributeOrdinals = new HashMap<String, Integer>();
+	private ArrayList<String> aAttributeIds = new ArrayList<String>();
+	
 	private boolean aHasFoundEquivalenceClasses = false;
 	
 	CategoryTree() 
@@ -58,6 +82,14 @@ class CategoryTree implements IDataCollector
 		return lCategories;
 	}
 	
+	/**
+	 * @return The top-level categories, in the order they were added.
+	 */
+	Collection<CategoryNode> getRootCategories()
+	{
+		return Collections.unmodifiableCollection(aRootCategories);
+	}
+	
 	/**
 	 * Adds the root categories (categoryBuilders) to the index.  Recursively adds child
 	 * categoryBuilders.
@@ -108,6 +140,21 @@ class CategoryTree implements IDataCollector
 		return Collections.unmodifiableCollection(aProducts.values());
 	}
 	
+	/**
+	 * @param pCategory A category of this tree.
+	 * @return The ids of the attributes of the products in the category.
+	 */
+	Set<String> getAttributeIds(CategoryNode pCategory)
+	{
+		BitSet ordinals = pCategory.getAttributeOrdinals();
+		Set<String> attributeIds = new HashSet<String>();
+		for(int ordinal = ordinals.nextSetBit(0); ordinal >= 0; ordinal = ordinals.nextSetBit(ordinal + 1))
+		{
+			attributeIds.add(aAttributeIds.get(ordinal));
+		}
+		return attributeIds;
+	}
+	
 	/**
 	 * Searches the CategoryTree to find "meaningful categories".  See the description for
 	 * recurseFindEquivalenceClasses for details.
@@ -233,6 +280,7 @@ class CategoryTree implements IDataCollector
 		for(CategoryNode franchise : aRootCategories)
 		{
 			recursiveRefresh(franchise, 0);
+			layOutProducts(franchise);
 		}
 	}
 	
@@ -255,7 +303,15 @@ class CategoryTree implements IDataCollector
 		{
 			recursiveRefresh(child, pDepth + 1);
 		}
-		
+		rollUp(pCategory);
+	}
+	
+	/*
+	 * Rolls up the counts and collections of the children of a category, 
+	 * whose own products are already associated with it.
+	 */
+	private static void rollUp(CategoryNode pCategory)
+	{
 		// We will be "rolling up" counts and various collections from the leaves up to the
 		// roots (franchises).  Make sure, for all non-leaves, that these are cleared out to start
 		if(pCategory.getNumberOfChildren() > 0)
@@ -264,27 +320,22 @@ class CategoryTree implements IDataCollector
 			pCategory.setTestedCount(0);
 		}
 	
-		// Roll up counts and collections
+		// Roll up counts and collections. The products are rolled up by layOutProducts()
 		boolean first = true;
 		for(CategoryNode child : pCategory.getChildren())
 		{
 			// aggregate children's collections
-			Set<String> attributeIds = child.getAttributeIds();
 			if(first)
 			{
-				for(String attributeId : attributeIds)
-				{
-					pCategory.addAttribute(attributeId);
-				}
+				pCategory.addAttributes(child.getAttributeOrdinals());
 				first = false;
 			}
 			else
 			{
-				pCategory.mergeAttributes(attributeIds);
+				pCategory.mergeAttributes(child.getAttributeOrdinals());
 			}
 		    
 			// aggregate children's counts
-			pCategory.putProducts(child.getProducts());
 			pCategory.incrementRatedCount(child.getRatedCount());
 			pCategory.incrementTestedCount(child.getTestedCount());
 		}
@@ -299,26 +350,267 @@ class CategoryTree implements IDataCollector
 		for(Product lProduct : aProducts.values()) 
 		{
 			CategoryNode category = aCategoryIndex.get(lProduct.getCategoryId());
-			
-			// Create a link from category to product
-			category.addProduct(lProduct);
-			
-			// Aggregate some product info in the category
-			for(Attribute attribute : lProduct.getAttributes())
+			associate(category, lProduct);
+			getDirectProducts(lProduct.getCategoryId()).add(lProduct);
+		}
+	}
+	
+	private void associate(CategoryNode pCategory, Product pProduct)
+	{
+		// Create a link from category to product
+		pCategory.addProduct(pProduct);
+		
+		// Aggregate some product info in the category
+		for(Attribute attribute : pProduct.getAttributes())
+		{
+			pCategory.addAttribute(getAttributeOrdinal(attribute.getId()));
+		}
+		
+		// Increment the counts in this category
+		if(pProduct.isTested())
+		{
+			pCategory.incrementTestedCount(1);
+		}
+		if(pProduct.isRated())
+		{
+			pCategory.incrementRatedCount(1);
+		}
+	}
+	
+	private int getAttributeOrdinal(String pAttributeId)
+	{
+		Integer ordinal = aAttributeOrdinals.get(pAttributeId);
+		if(ordinal == null)
+		{
+			ordinal = aAttributeIds.size();
+			aAttributeOrdinals.put(pAttributeId, ordinal);
+			aAttributeIds.add(pAttributeId);
+		}
+		return ordinal;
+	}
+	
+	/*
+	 * Copies the products of a franchise to an array, in the order of a depth-first
+	 * traversal, and makes each category of the franchise refer to its range in the 
+	 * array. This is the order in which the products used to be rolled up.
+	 */
+	private void layOutProducts(CategoryNode pFranchise)
+	{
+		Product[] products = new Product[countProducts(pFranchise)];
+		layOutProducts(pFranchise, Arrays.asList(products), 0);
+	}
+	
+	private int countProducts(CategoryNode pCategory)
+	{
+		List<Product> directProducts = aDirectProducts.get(pCategory.getId());
+		int count = 0;
+		if(directProducts != null)
+		{
+			count = directProducts.size();
+		}
+		for(CategoryNode child : pCategory.getChildren())
+		{
+			count += countProducts(child);
+		}
+		return count;
+	}
+	
+	/*
+	 * Lays out the products of a category from pStart, and returns the end of its range.
+	 */
+	private int layOutProducts(CategoryNode pCategory, List<Product> pProducts, int pStart)
+	{
+		int end = pStart;
+		List<Product> directProducts = aDirectProducts.get(pCategory.getId());
+		if(directProducts != null)
+		{
+			for(Product product : directProducts)
 			{
-				category.addAttribute(attribute.getId());
+				pProducts.set(end, product);
+				end++;
 			}
-			
-			// Increment the counts in this category
-			if(lProduct.isTested())
+		}
+		for(CategoryNode child : pCategory.getChildren())
+		{
+			end = layOutProducts(child, pProducts, end);
+		}
+		pCategory.setProducts(pProducts.subList(pStart, end));
+		return end;
+	}
+	
+	private List<Product> getDirectProducts(String pCategoryId)
+	{
+		List<Product> products = aDirectProducts.get(pCategoryId);
+		if(products == null)
+		{
+			products = new ArrayList<Product>();
+			aDirectProducts.put(pCategoryId, products);
+		}
+		return products;
+	}
+	
+	/**
+	 * Processes the tree again from its products and categories, as associateProducts(),
+	 * refresh() and findEquivalenceClasses() would. This is for trees that were not processed 
+	 * by these methods, like the trees read back from a snapshot, before applying deltas.
+	 * Products whose category is not in the tree are ignored.
+	 */
+	void reprocess()
+	{
+		aCategoryIndex.clear();
+		indexRootCategories();
+		aDirectProducts.clear();
+		for(Product lProduct : aProducts.values())
+		{
+			if(aCategoryIndex.containsKey(lProduct.getCategoryId()))
 			{
-				category.incrementTestedCount(1);
+				getDirectProducts(lProduct.getCategoryId()).add(lProduct);
 			}
-			if(lProduct.isRated())
+		}
+		recompute(aCategoryIndex.values());
+		aEquivalenceClasses.clear();
+		aSubEquivalenceClasses.clear();
+		findEquivalenceClasses();
+	}
+	
+	/**
+	 * Applies a batch of product changes to a processed tree. Only the categories of the 
+	 * changed products and their ancestors, up to their franchise, are processed again: 
+	 * their products, attributes, counts and Jaccard index are recomputed in the same way
+	 * as the whole tree is. The equivalence classes are then found again from the updated 
+	 * Jaccard indices. Replaced products keep their position in their category, and 
+	 * added products come after the existing ones.
+	 * @param pDelta The changes to apply.
+	 * @return The equivalence classes whose products changed, and the categories that
+	 * became equivalence classes, in the order of getCategories().
+	 * @throws IllegalArgumentException If a product to add is in a category that is not in
+	 * the tree. The tree is not changed in this case.
+	 */
+	Set<CategoryNode> applyDelta(ProductDelta pDelta)
+	{
+		for(Product product : pDelta.getPutProducts())
+		{
+			if(!aCategoryIndex.containsKey(product.getCategoryId()))
+			{
+				throw new IllegalArgumentException("Product " + product.getId() + " is in unknown category " + product.getCategoryId());
+			}
+		}
+		
+		Set<CategoryNode> changedCategories = new HashSet<CategoryNode>();
+		for(String productId : pDelta.getRemovedProductIds())
+		{
+			Product removed = aProducts.remove(productId);
+			if(removed != null)
+			{
+				removeDirectProduct(removed);
+				changedCategories.add(aCategoryIndex.get(removed.getCategoryId()));
+			}
+		}
+		for(Product product : pDelta.getPutProducts())
+		{
+			Product replaced = aProducts.put(product.getId(), product);
+			List<Product> directProducts = getDirectProducts(product.getCategoryId());
+			if(replaced != null && replaced.getCategoryId().equals(product.getCategoryId()))
+			{
+				directProducts.set(directProducts.indexOf(replaced), product);
+			}
+			else
+			{
+				if(replaced != null)
+				{
+					removeDirectProduct(replaced);
+					changedCategories.add(aCategoryIndex.get(replaced.getCategoryId()));
+				}
+				directProducts.add(product);
+			}
+			changedCategories.add(aCategoryIndex.get(product.getCategoryId()));
+		}
+		changedCategories.remove(null);
+		
+		Set<CategoryNode> recomputed = recompute(changedCategories);
+		Set<CategoryNode> previousClasses = new HashSet<CategoryNode>(aEquivalenceClasses);
+		aEquivalenceClasses.clear();
+		aSubEquivalenceClasses.clear();
+		findEquivalenceClasses();
+		
+		Set<CategoryNode> changedClasses = new LinkedHashSet<CategoryNode>();
+		for(CategoryNode equivalenceClass : aEquivalenceClasses)
+		{
+			if(recomputed.contains(equivalenceClass) || !previousClasses.contains(equivalenceClass))
+			{
+				changedClasses.add(equivalenceClass);
+			}
+		}
+		return changedClasses;
+	}
+	
+	private void removeDirectProduct(Product pProduct)
+	{
+		List<Product> directProducts = aDirectProducts.get(pProduct.getCategoryId());
+		if(directProducts != null)
+		{
+			directProducts.remove(pProduct);
+		}
+	}
+	
+	/*
+	 * Computes again the categories and all their ancestors from the direct products 
+	 * of each category, children before parents, and lays out the products of their
+	 * franchises again. Returns the categories that were computed.
+	 */
+	private Set<CategoryNode> recompute(Collection<CategoryNode> pCategories)
+	{
+		Set<CategoryNode> categories = new HashSet<CategoryNode>();
+		for(CategoryNode category : pCategories)
+		{
+			CategoryNode node = category;
+			while(node != null && categories.add(node))
+			{
+				node = node.getParent();
+			}
+		}
+		
+		final Map<CategoryNode, Integer> depths = new HashMap<CategoryNode, Integer>();
+		for(CategoryNode category : categories)
+		{
+			int depth = 0;
+			for(CategoryNode node = category.getParent(); node != null; node = node.getParent())
+			{
+				depth++;
+			}
+			depths.put(category, depth);
+		}
+		List<CategoryNode> deepestFirst = new ArrayList<CategoryNode>(categories);
+		Collections.sort(deepestFirst, new Comparator<CategoryNode>()
+		{
+			@Override
+			public int compare(CategoryNode pCategory1, CategoryNode pCategory2)
+			{
+				return depths.get(pCategory2) - depths.get(pCategory1);
+			}
+		});
+		
+		for(CategoryNode category : deepestFirst)
+		{
+			category.clear();
+			List<Product> directProducts = aDirectProducts.get(category.getId());
+			if(directProducts != null)
+			{
+				for(Product product : directProducts)
+				{
+					associate(category, product);
+				}
+			}
+			rollUp(category);
+		}
+		for(CategoryNode category : deepestFirst)
+		{
+			if(category.getParent() == null)
 			{
-				category.incrementRatedCount(1);
+				layOutProducts(category);
 			}
 		}
+		return categories;
 	}
 	
 	/**
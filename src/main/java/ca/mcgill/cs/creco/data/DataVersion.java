@@ -0,0 +1,149 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.data;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The products and categories loaded from one set of data files. A version
+ * never changes once it is built: reloading the data builds a new version,
+ * with its own product and category objects, so anything computed from a
+ * version stays valid for as long as it is used with that version.
+ * 
+ * A version built by applying a delta to the previous version shares the 
+ * products and categories that did not change with it. Products always
+ * refer to their category in the latest version that contains them.
+ */
+public final class DataVersion implements IDataStore
+{
+	private final int aNumber;
+	private final HashMap<String, Product> aProducts = new HashMap<String, Product>();
+	private final HashMap<String, Category> aCategoryIndex = new HashMap<String, Category>();
+	private final Set<String> aChangedCategories = new LinkedHashSet<String>();
+	private final Set<String> aRemovedCategories = new LinkedHashSet<String>();
+
+	/*
+	 * Builds a category for each equivalence class, and associates the products
+	 * with the class that contains them.
+	 */
+	DataVersion(int pNumber, Collection<Product> pProducts, Collection<CategoryNode> pEquivalenceClasses)
+	{
+		this(pNumber, null, pProducts, pEquivalenceClasses, null);
+	}
+
+	/*
+	 * Builds a version from a previous one, reusing the categories of the previous 
+	 * version for the equivalence classes that are not in pChangedClasses.
+	 */
+	DataVersion(int pNumber, DataVersion pPrevious, Collection<Product> pProducts, Collection<CategoryNode> pEquivalenceClasses, 
+			Set<CategoryNode> pChangedClasses)
+	{
+		aNumber = pNumber;
+		for(Product prod : pProducts)
+		{
+			aProducts.put(prod.getId(), prod);
+		}
+		for(CategoryNode catNode : pEquivalenceClasses)
+		{
+			Category previousCategory = null;
+			if(pPrevious != null && !pChangedClasses.contains(catNode))
+			{
+				previousCategory = pPrevious.getCategory(catNode.getId());
+			}
+			if(previousCategory != null)
+			{
+				aCategoryIndex.put(previousCategory.getId(), previousCategory);
+				continue;
+			}
+			
+			Category newCategory = new Category(catNode.getId(), catNode.getName(), catNode.getRootCategoryName(), catNode.getProducts());
+			aCategoryIndex.put(newCategory.getId(), newCategory);
+			aChangedCategories.add(newCategory.getId());
+
+			// Associate products to the equivalence class that contains them
+			for(Product prod : newCategory.getProducts())
+			{
+				prod.setCategory(newCategory);
+			}
+		}
+		if(pPrevious != null)
+		{
+			for(String categoryId : pPrevious.aCategoryIndex.keySet())
+			{
+				if(!aCategoryIndex.containsKey(categoryId))
+				{
+					aRemovedCategories.add(categoryId);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The number of the version. Versions loaded later have larger numbers.
+	 */
+	public int getNumber()
+	{
+		return aNumber;
+	}
+
+	/**
+	 * @return The ids of the categories that are new in this version, or whose products
+	 * changed since the previous version. For a version loaded from the data files,
+	 * this is all the categories. Other categories are the same objects as in the 
+	 * previous version, so anything computed from them is still valid.
+	 */
+	public Set<String> getChangedCategories()
+	{
+		return Collections.unmodifiableSet(aChangedCategories);
+	}
+
+	/**
+	 * @return The ids of the categories of the previous version that are not in this version.
+	 * Empty for a version loaded from the data files.
+	 */
+	public Set<String> getRemovedCategories()
+	{
+		return Collections.unmodifiableSet(aRemovedCategories);
+	}
+
+	@Override
+	public Category getCategory(String pId)
+	{
+		return aCategoryIndex.get(pId);
+	}
+
+	@Override
+	public Product getProduct(String pId)
+	{
+		return aProducts.get(pId);
+	}
+
+	@Override
+	public Collection<Category> getCategories()
+	{
+		return Collections.unmodifiableCollection(aCategoryIndex.values());
+	}
+
+	@Override
+	public Collection<Product> getProducts()
+	{
+		return Collections.unmodifiableCollection(aProducts.values());
+	}
+}
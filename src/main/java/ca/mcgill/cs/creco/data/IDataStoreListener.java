@@ -0,0 +1,29 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.data;
+
+/**
+ * Gets notified when a new version of the data is published.
+ */
+public interface IDataStoreListener
+{
+	/**
+	 * Called on the thread that reloaded the data, right after the new
+	 * version was published. Requests may still be using older versions.
+	 * @param pVersion The new version of the data.
+	 */
+	void dataReloaded(DataVersion pVersion);
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.data;
+
+import java.io.IOException;
+
+/**
+ * A database whose data can be reloaded while it is in use. The methods
+ * of IDataStore always access the current version of the data, so code
+ * that needs consistent answers across several calls should get the
+ * current version once and use it instead.
+ */
+public interface IReloadableDataStore extends IDataStore
+{
+	/**
+	 * @return The version of the data that was published last.
+	 */
+	DataVersion getCurrentVersion();
+
+	/**
+	 * Loads the data again and publishes it as a new version. The current
+	 * version remains available until the new one is ready.
+	 * @return The new version.
+	 * @throws IOException If the data could not be loaded. The current version is kept.
+	 */
+	DataVersion reload() throws IOException;
+
+	/**
+	 * Applies changes to the products of the current version, and publishes the result as
+	 * a new version. Only the categories that contain changed products are processed again. 
+	 * The changes are not saved: they are lost when the data is loaded again from the files.
+	 * @param pDelta The changes to apply.
+	 * @return The new version, which reports the categories that changed.
+	 * @throws IllegalArgumentException If a product is in a category that does not exist.
+	 */
+	DataVersion applyDelta(ProductDelta pDelta);
+
+	/**
+	 * @param pListener A listener to notify whenever a new version is published.
+	 */
+	void addListener(IDataStoreListener pListener);
+}
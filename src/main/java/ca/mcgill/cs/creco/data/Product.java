@@ -214,5 +214,31 @@ public class Product
 	{
 		return aOverallScore;
 	}
-	
+
+	//--- Package-private stuff ---
+
+	/**
+	 * @return The display name exactly as it was loaded.
+	 */
+	String getRawDisplayName()
+	{
+		return aDisplayName;
+	}
+
+	/**
+	 * @return The brand name exactly as it was loaded, possibly null.
+	 */
+	String getRawBrandName()
+	{
+		return aBrandName;
+	}
+
+	/**
+	 * @return The thumbnail url exactly as it was loaded.
+	 */
+	String getRawImageThumbnail()
+	{
+		return aImageThumbnail;
+	}
+
 }
\ No newline at end of file
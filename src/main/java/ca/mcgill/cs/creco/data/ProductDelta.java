@@ -0,0 +1,72 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.data;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A batch of changes to the products of the database: products to add or
+ * replace, and products to remove. When the same product id is changed
+ * several times, only the last change is kept.
+ */
+public final class ProductDelta
+{
+	private final Map<String, Product> aPutProducts = new LinkedHashMap<String, Product>();
+	private final Set<String> aRemovedProductIds = new LinkedHashSet<String>();
+
+	/**
+	 * Adds a product, or replaces the product with the same id.
+	 * @param pProduct The new product.
+	 */
+	public void putProduct(Product pProduct)
+	{
+		aRemovedProductIds.remove(pProduct.getId());
+		aPutProducts.put(pProduct.getId(), pProduct);
+	}
+
+	/**
+	 * Removes a product. Removing a product that does not exist has no effect.
+	 * @param pId The id of the product to remove.
+	 */
+	public void removeProduct(String pId)
+	{
+		aPutProducts.remove(pId);
+		aRemovedProductIds.add(pId);
+	}
+
+	/**
+	 * @return True if the delta does not change anything.
+	 */
+	public boolean isEmpty()
+	{
+		return aPutProducts.isEmpty() && aRemovedProductIds.isEmpty();
+	}
+
+	Collection<Product> getPutProducts()
+	{
+		return Collections.unmodifiableCollection(aPutProducts.values());
+	}
+
+	Set<String> getRemovedProductIds()
+	{
+		return Collections.unmodifiableSet(aRemovedProductIds);
+	}
+}
@@ -0,0 +1,346 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A service to load the Consumer Reports data from a binary snapshot written
+ * by SnapshotWriter. The snapshot holds the category tree after singleton elimination,
+ * the equivalence classes found in it, and the products with the typed values of their
+ * attributes, so reading it back parses no JSON, infers no types and does not process
+ * the category tree again.
+ *
+ * The file is memory-mapped. All strings are stored once in a dictionary and decoded the
+ * first time they are referenced, and products are only decoded as they are handed to the
+ * collector. The layout of a snapshot, with all numbers big-endian, is:
+ * <pre>
+ * header:     magic, version, fingerprint of the source files, offsets of the last three sections
+ * strings:    count, end offset of each string, UTF-8 bytes of all strings
+ * categories: count, then the id, name and parent index of each node, in pre-order
+ * classes:    count, then the node index and product ordinals of each equivalence class
+ * products:   count, then one record per product
+ * </pre>
+ * Strings are referenced by their index in the dictionary, or NO_STRING for null.
+ */
+public class SnapshotLoadingService implements IDataLoadingService
+{
+	static final int MAGIC = 0x43525344;
+	static final int VERSION = 1;
+	static final int NO_STRING = -1;
+	static final int NO_PARENT = -1;
+	static final Charset CHARSET = Charset.forName("UTF-8");
+
+	// Encoding of nullable booleans
+	static final byte FALSE = 0;
+	static final byte TRUE = 1;
+	static final byte NULL = 2;
+
+	// Encoding of typed values
+	static final byte VALUE_NULL = 0;
+	static final byte VALUE_NA = 1;
+	static final byte VALUE_BOOLEAN = 2;
+	static final byte VALUE_NUMERIC = 3;
+	static final byte VALUE_STRING = 4;
+
+	private static final long FINGERPRINT_MULTIPLIER = 31;
+	private static final int INT_SIZE = 4;
+
+	private final ByteBuffer aBuffer;
+	private final ByteBuffer aStringBytes;
+	private final int aStringsPosition;
+	private final String[] aStrings;
+	private final int aClassesPosition;
+	private final int aProductsPosition;
+	private final int aCategoriesPosition;
+
+	private CategoryNode[] aNodes;
+	private List<CategoryNode> aEquivalenceClasses;
+
+	/**
+	 * Maps a snapshot and checks that it was written from the expected sources.
+	 * @param pFile The snapshot file.
+	 * @param pFingerprint The fingerprint of the sources the snapshot must have been written from.
+	 * See fingerprint().
+	 * @throws IOException If the file cannot be mapped, was written by a different version of this
+	 * class, or was written from different sources.
+	 */
+	public SnapshotLoadingService(File pFile, long pFingerprint) throws IOException
+	{
+		RandomAccessFile file = new RandomAccessFile(pFile, "r");
+		try
+		{
+			FileChannel channel = file.getChannel();
+			aBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}
+		finally
+		{
+			file.close();
+		}
+
+		try
+		{
+			if(aBuffer.getInt() != MAGIC)
+			{
+				throw new IOException(pFile + " is not a snapshot");
+			}
+			int version = aBuffer.getInt();
+			if(version != VERSION)
+			{
+				throw new IOException(pFile + " has version " + version + ", expected " + VERSION);
+			}
+			if(aBuffer.getLong() != pFingerprint)
+			{
+				throw new IOException(pFile + " was not written from the current data files");
+			}
+			aCategoriesPosition = aBuffer.getInt();
+			aClassesPosition = aBuffer.getInt();
+			aProductsPosition = aBuffer.getInt();
+			aStringsPosition = aBuffer.position();
+			aStrings = new String[aBuffer.getInt(aStringsPosition)];
+			aStringBytes = aBuffer.duplicate();
+		}
+		catch(BufferUnderflowException e)
+		{
+			throw new IOException(pFile + " is truncated", e);
+		}
+	}
+
+	/**
+	 * Computes a fingerprint of the source data files, from their names, sizes and
+	 * modification times. A snapshot is only read back if the fingerprint it was
+	 * written with is the current one.
+	 * @param pPath The directory of the data files.
+	 * @param pFileNames The names of the data files.
+	 * @return The fingerprint.
+	 */
+	public static long fingerprint(String pPath, String... pFileNames)
+	{
+		long fingerprint = VERSION;
+		for(String fileName : pFileNames)
+		{
+			File file = new File(pPath + fileName);
+			fingerprint = fingerprint * FINGERPRINT_MULTIPLIER + fileName.hashCode();
+			fingerprint = fingerprint * FINGERPRINT_MULTIPLIER + file.length();
+			fingerprint = fingerprint * FINGERPRINT_MULTIPLIER + file.lastModified();
+		}
+		return fingerprint;
+	}
+
+	@Override
+	public void loadCategories(IDataCollector pCollector) throws IOException
+	{
+		for(CategoryNode node : getNodes())
+		{
+			if(node.getParent() == null)
+			{
+				pCollector.addCategory(node);
+			}
+		}
+	}
+
+	@Override
+	public void loadProducts(IDataCollector pCollector) throws IOException
+	{
+		CategoryNode[] nodes = getNodes();
+		try
+		{
+			ByteBuffer buffer = aBuffer.duplicate();
+			buffer.position(aProductsPosition);
+			Product[] products = new Product[buffer.getInt()];
+			AttributeInterner interner = new AttributeInterner();
+			for(int ordinal = 0; ordinal < products.length; ordinal++)
+			{
+				products[ordinal] = readProduct(buffer, interner);
+				pCollector.addProduct(products[ordinal]);
+			}
+
+			buffer.position(aClassesPosition);
+			List<CategoryNode> equivalenceClasses = new ArrayList<CategoryNode>();
+			int numberOfClasses = buffer.getInt();
+			for(int i = 0; i < numberOfClasses; i++)
+			{
+				CategoryNode node = nodes[buffer.getInt()];
+				int numberOfProducts = buffer.getInt();
+				for(int j = 0; j < numberOfProducts; j++)
+				{
+					node.addProduct(products[buffer.getInt()]);
+				}
+				equivalenceClasses.add(node);
+			}
+			aEquivalenceClasses = equivalenceClasses;
+		}
+		catch(BufferUnderflowException e)
+		{
+			throw new IOException("Snapshot is truncated", e);
+		}
+	}
+
+	/**
+	 * Returns the equivalence classes found in the category tree when the snapshot
+	 * was written, in the order of CategoryTree.getCategories(). The products of each
+	 * class are in the order they had when the snapshot was written.
+	 * Must be called after loadProducts().
+	 * @return The equivalence classes, or null if the products have not been loaded.
+	 */
+	Collection<CategoryNode> getEquivalenceClasses()
+	{
+		if(aEquivalenceClasses == null)
+		{
+			return null;
+		}
+		return Collections.unmodifiableCollection(aEquivalenceClasses);
+	}
+
+	/*
+	 * Decodes the category tree the first time it is needed. Parents always
+	 * precede their children.
+	 */
+	private CategoryNode[] getNodes() throws IOException
+	{
+		if(aNodes != null)
+		{
+			return aNodes;
+		}
+		try
+		{
+			ByteBuffer buffer = aBuffer.duplicate();
+			buffer.position(aCategoriesPosition);
+			CategoryNode[] nodes = new CategoryNode[buffer.getInt()];
+			for(int i = 0; i < nodes.length; i++)
+			{
+				String id = getString(buffer.getInt());
+				String name = getString(buffer.getInt());
+				int parent = buffer.getInt();
+				if(parent == NO_PARENT)
+				{
+					nodes[i] = new CategoryNode(id, name, null);
+				}
+				else
+				{
+					nodes[i] = new CategoryNode(id, name, nodes[parent]);
+					nodes[parent].addSubcategory(nodes[i]);
+				}
+			}
+			aNodes = nodes;
+			return nodes;
+		}
+		catch(BufferUnderflowException e)
+		{
+			throw new IOException("Snapshot is truncated", e);
+		}
+	}
+
+	private Product readProduct(ByteBuffer pBuffer, AttributeInterner pInterner)
+	{
+		String id = getString(pBuffer.getInt());
+		String displayName = getString(pBuffer.getInt());
+		Boolean isTested = readBoolean(pBuffer.get());
+		String categoryId = getString(pBuffer.getInt());
+		String brandName = getString(pBuffer.getInt());
+		String url = getString(pBuffer.getInt());
+		String imageThumbnail = getString(pBuffer.getInt());
+		Double overallScore = null;
+		if(pBuffer.get() == TRUE)
+		{
+			overallScore = pBuffer.getDouble();
+		}
+
+		int numberOfAttributes = pBuffer.getInt();
+		List<Attribute> attributes = new ArrayList<Attribute>(numberOfAttributes);
+		for(int i = 0; i < numberOfAttributes; i++)
+		{
+			Attribute.AttributeType type = Attribute.AttributeType.values()[pBuffer.get()];
+			String attributeId = getString(pBuffer.getInt());
+			String attributeName = getString(pBuffer.getInt());
+			String description = getString(pBuffer.getInt());
+			attributes.add(pInterner.build(type, attributeId, attributeName, description, readValue(pBuffer)));
+		}
+		return new Product(id, displayName, isTested, categoryId, brandName, url, attributes, imageThumbnail, overallScore);
+	}
+
+	private TypedValue readValue(ByteBuffer pBuffer)
+	{
+		byte tag = pBuffer.get();
+		if(tag == VALUE_NUMERIC)
+		{
+			return new TypedValue(pBuffer.getDouble());
+		}
+		else if(tag == VALUE_STRING)
+		{
+			return TypedValue.stringValue(getString(pBuffer.getInt()));
+		}
+		else if(tag == VALUE_BOOLEAN)
+		{
+			return new TypedValue(readBoolean(pBuffer.get()));
+		}
+		else if(tag == VALUE_NA)
+		{
+			return TypedValue.naValue();
+		}
+		else
+		{
+			return new TypedValue((Object) null);
+		}
+	}
+
+	private static Boolean readBoolean(byte pValue)
+	{
+		if(pValue == NULL)
+		{
+			return null;
+		}
+		return pValue == TRUE;
+	}
+
+	/*
+	 * Decodes a string from the dictionary the first time it is referenced, so
+	 * that every reference to it shares the same instance.
+	 */
+	private String getString(int pIndex)
+	{
+		if(pIndex == NO_STRING)
+		{
+			return null;
+		}
+		if(aStrings[pIndex] == null)
+		{
+			int endsPosition = aStringsPosition + INT_SIZE;
+			int bytesPosition = endsPosition + aStrings.length * INT_SIZE;
+			int start = 0;
+			if(pIndex > 0)
+			{
+				start = aBuffer.getInt(endsPosition + (pIndex - 1) * INT_SIZE);
+			}
+			int end = aBuffer.getInt(endsPosition + pIndex * INT_SIZE);
+			byte[] bytes = new byte[end - start];
+			aStringBytes.position(bytesPosition + start);
+			aStringBytes.get(bytes);
+			aStrings[pIndex] = new String(bytes, CHARSET);
+		}
+		return aStrings[pIndex];
+	}
+}
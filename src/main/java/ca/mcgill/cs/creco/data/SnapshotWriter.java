@@ -0,0 +1,279 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.data;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Writes a processed CategoryTree to a binary snapshot that SnapshotLoadingService
+ * can read back. See SnapshotLoadingService for the layout of the file.
+ */
+final class SnapshotWriter
+{
+	private static final int HEADER_SIZE = 28;
+	private static final int INT_SIZE = 4;
+
+	private final HashMap<String, Integer> aStringIndex = new HashMap<String, Integer>();
+	private final List<byte[]> aStrings = new ArrayList<byte[]>();
+	private final IdentityHashMap<CategoryNode, Integer> aNodeIndex = new IdentityHashMap<CategoryNode, Integer>();
+	private final HashMap<String, Integer> aProductOrdinals = new HashMap<String, Integer>();
+
+	private SnapshotWriter()
+	{}
+
+	/**
+	 * Writes a snapshot of a category tree. The snapshot is first written to a temporary
+	 * file and then moved in place, so a reader never sees a partially written snapshot.
+	 * @param pFile The snapshot file.
+	 * @param pFingerprint The fingerprint of the source files the tree was loaded from.
+	 * @param pTree A category tree on which findEquivalenceClasses() has been called.
+	 * @throws IOException If the snapshot cannot be written.
+	 */
+	static void write(File pFile, long pFingerprint, CategoryTree pTree) throws IOException
+	{
+		SnapshotWriter writer = new SnapshotWriter();
+		byte[] categories = writer.encodeCategories(pTree.getRootCategories());
+		byte[] products = writer.encodeProducts(pTree.getProducts());
+		byte[] classes = writer.encodeClasses(pTree.getCategories());
+		byte[] strings = writer.encodeStrings();
+
+		int categoriesPosition = HEADER_SIZE + strings.length;
+		int classesPosition = categoriesPosition + categories.length;
+		int productsPosition = classesPosition + classes.length;
+
+		File temporary = new File(pFile.getPath() + ".tmp");
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+		try
+		{
+			out.writeInt(SnapshotLoadingService.MAGIC);
+			out.writeInt(SnapshotLoadingService.VERSION);
+			out.writeLong(pFingerprint);
+			out.writeInt(categoriesPosition);
+			out.writeInt(classesPosition);
+			out.writeInt(productsPosition);
+			out.write(strings);
+			out.write(categories);
+			out.write(classes);
+			out.write(products);
+		}
+		finally
+		{
+			out.close();
+		}
+		Files.move(temporary.toPath(), pFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	/*
+	 * Nodes are written in pre-order so that a parent is always read before its children.
+	 */
+	private byte[] encodeCategories(Collection<CategoryNode> pRoots) throws IOException
+	{
+		List<CategoryNode> nodes = new ArrayList<CategoryNode>();
+		for(CategoryNode root : pRoots)
+		{
+			collect(root, nodes);
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(nodes.size());
+		for(CategoryNode node : nodes)
+		{
+			out.writeInt(string(node.getId()));
+			out.writeInt(string(node.getName()));
+			if(node.getParent() == null)
+			{
+				out.writeInt(SnapshotLoadingService.NO_PARENT);
+			}
+			else
+			{
+				out.writeInt(aNodeIndex.get(node.getParent()));
+			}
+		}
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private void collect(CategoryNode pNode, List<CategoryNode> pNodes)
+	{
+		aNodeIndex.put(pNode, pNodes.size());
+		pNodes.add(pNode);
+		for(CategoryNode child : pNode.getChildren())
+		{
+			collect(child, pNodes);
+		}
+	}
+
+	private byte[] encodeClasses(Collection<CategoryNode> pEquivalenceClasses) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(pEquivalenceClasses.size());
+		for(CategoryNode node : pEquivalenceClasses)
+		{
+			out.writeInt(aNodeIndex.get(node));
+			out.writeInt(node.getCount());
+			for(Product product : node.getProducts())
+			{
+				out.writeInt(aProductOrdinals.get(product.getId()));
+			}
+		}
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private byte[] encodeProducts(Collection<Product> pProducts) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(pProducts.size());
+		for(Product product : pProducts)
+		{
+			aProductOrdinals.put(product.getId(), aProductOrdinals.size());
+			out.writeInt(string(product.getId()));
+			out.writeInt(string(product.getRawDisplayName()));
+			out.writeByte(encodeBoolean(product.isTested()));
+			out.writeInt(string(product.getCategoryId()));
+			out.writeInt(string(product.getRawBrandName()));
+			out.writeInt(string(product.getUrl()));
+			out.writeInt(string(product.getRawImageThumbnail()));
+			if(product.getOverallScore() == null)
+			{
+				out.writeByte(SnapshotLoadingService.FALSE);
+			}
+			else
+			{
+				out.writeByte(SnapshotLoadingService.TRUE);
+				out.writeDouble(product.getOverallScore());
+			}
+
+			List<Attribute> attributes = new ArrayList<Attribute>();
+			for(Attribute attribute : product.getAttributes())
+			{
+				attributes.add(attribute);
+			}
+			out.writeInt(attributes.size());
+			for(Attribute attribute : attributes)
+			{
+				out.writeByte(attribute.getAttributeType().ordinal());
+				out.writeInt(string(attribute.getId()));
+				out.writeInt(string(attribute.getName()));
+				out.writeInt(string(attribute.getDescription()));
+				encodeValue(attribute.getTypedValue(), out);
+			}
+		}
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private void encodeValue(TypedValue pValue, DataOutputStream pOut) throws IOException
+	{
+		if(pValue.isNumeric())
+		{
+			pOut.writeByte(SnapshotLoadingService.VALUE_NUMERIC);
+			pOut.writeDouble(pValue.getNumeric());
+		}
+		else if(pValue.isString())
+		{
+			pOut.writeByte(SnapshotLoadingService.VALUE_STRING);
+			pOut.writeInt(string(pValue.getString()));
+		}
+		else if(pValue.isBoolean())
+		{
+			pOut.writeByte(SnapshotLoadingService.VALUE_BOOLEAN);
+			pOut.writeByte(encodeBoolean(pValue.getBoolean()));
+		}
+		else if(pValue.isNA())
+		{
+			pOut.writeByte(SnapshotLoadingService.VALUE_NA);
+		}
+		else
+		{
+			pOut.writeByte(SnapshotLoadingService.VALUE_NULL);
+		}
+	}
+
+	private static byte encodeBoolean(Boolean pValue)
+	{
+		if(pValue == null)
+		{
+			return SnapshotLoadingService.NULL;
+		}
+		else if(pValue)
+		{
+			return SnapshotLoadingService.TRUE;
+		}
+		else
+		{
+			return SnapshotLoadingService.FALSE;
+		}
+	}
+
+	/*
+	 * Returns the index of a string in the dictionary, adding it if needed.
+	 */
+	private int string(String pString)
+	{
+		if(pString == null)
+		{
+			return SnapshotLoadingService.NO_STRING;
+		}
+		Integer index = aStringIndex.get(pString);
+		if(index == null)
+		{
+			index = aStrings.size();
+			aStringIndex.put(pString, index);
+			aStrings.add(pString.getBytes(SnapshotLoadingService.CHARSET));
+		}
+		return index;
+	}
+
+	private byte[] encodeStrings() throws IOException
+	{
+		int length = 0;
+		for(byte[] string : aStrings)
+		{
+			length += string.length;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(INT_SIZE * (aStrings.size() + 1) + length);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(aStrings.size());
+		int end = 0;
+		for(byte[] string : aStrings)
+		{
+			end += string.length;
+			out.writeInt(end);
+		}
+		for(byte[] string : aStrings)
+		{
+			out.write(string);
+		}
+		out.close();
+		return bytes.toByteArray();
+	}
+}
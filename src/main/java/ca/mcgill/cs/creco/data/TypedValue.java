@@ -15,10 +15,6 @@
  */
 package ca.mcgill.cs.creco.data;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-
 /**
  * Represents an immutable value object from which a type has been inferred.
  * The value is inferred to be of one of the following types is inferred:
@@ -38,6 +34,8 @@ import java.util.regex.Pattern;
  * For this reason, calls to obtain a value should always be preceded by calls to get... methods.
  * 
  * Note that the NULL and NA types do not have a corresponding value.
+ * 
+ * The rules used to infer the type of strings are described in TypedValueParser.
  */
 public class TypedValue 
 {
@@ -66,6 +64,54 @@ public class TypedValue
 		this("NA");
 	}
 	
+	private TypedValue(Type pType)
+	{
+		aType = pType;
+	}
+	
+	/**
+	 * Creates a string value without inferring its type. Used to restore
+	 * values whose type was inferred when they were first loaded.
+	 * @param pValue The string value.
+	 * @return A value of type STRING.
+	 */
+	static TypedValue stringValue(String pValue)
+	{
+		TypedValue value = new TypedValue(Type.STRING);
+		value.aStringValue = pValue;
+		return value;
+	}
+	
+	/**
+	 * @return A value of type NA, created without inferring its type.
+	 */
+	static TypedValue naValue()
+	{
+		return new TypedValue(Type.NA);
+	}
+	
+	/**
+	 * @param pValue The numeric value.
+	 * @return A value of type NUMERIC, created without inferring its type.
+	 */
+	static TypedValue numericValue(double pValue)
+	{
+		TypedValue value = new TypedValue(Type.NUMERIC);
+		value.aNumericValue = pValue;
+		return value;
+	}
+	
+	/**
+	 * @param pValue The boolean value.
+	 * @return A value of type BOOLEAN, created without inferring its type.
+	 */
+	static TypedValue booleanValue(boolean pValue)
+	{
+		TypedValue value = new TypedValue(Type.BOOLEAN);
+		value.aBooleanValue = pValue;
+		return value;
+	}
+	
 	/**
 	 * Creates a new value object an infers its type.
 	 * @param pValue The value.
@@ -98,91 +144,11 @@ public class TypedValue
 		}
 		else if(pValue instanceof String)
 		{
-			String theString = (String) pValue; 
-			// match int with optional '-'.
-			if(theString.matches("-?\\d+"))
-			{
-				aType = Type.NUMERIC;
-				aNumericValue = Double.parseDouble(theString);
-
-			}
-			else if(theString.matches("^(n|N)/?(a|A)$"))
-			{
-				// Matches an not available indicator
-				aType = Type.NA;
-			}
-			//match a number with optional '-' and decimal.
-			else if(theString.matches("-?\\d+(\\.\\d+)?"))  
-			{
-				aType = Type.NUMERIC;
-				aNumericValue = Double.parseDouble(theString);
-			}
-			else if(theString.matches("(y|Y)es"))
-			{
-				aType = Type.BOOLEAN;
-				aBooleanValue = true;
-			}
-			else if(theString.matches("(n|N)o"))
-			{
-				aType = Type.BOOLEAN;
-				aBooleanValue = false;
-			}
-			else if(theString.matches("(\\d+)( ?\")"))
-            {
-            	//matches Strings of the form 23" denoting 23 inches
-				aType = Type.NUMERIC;
-            	Pattern pattern = Pattern.compile("(\\d+)( ?\")");
-                Matcher matcher = pattern.matcher(theString);
-            	if(matcher.find())
-            	{
-            		aNumericValue = Double.parseDouble(matcher.group(1).trim());
-
-            	}
-            }
-			else if(theString.matches("(\\d+)( ?hours)?( ?days)?"))
-            {
-				//matches Strings of the form 23 hours or 23 days
-				aType = Type.NUMERIC;
-            	Pattern pattern = Pattern.compile("(\\d+)( ?hours)?( ?days)?");
-                Matcher matcher = pattern.matcher(theString);
-            	if(matcher.find())
-            	{
-            		aNumericValue = Double.parseDouble(matcher.group(1).trim());
-
-            	}
-            }
-			else if(theString.matches("(\\d+)(-)(\\d+)(.*)"))
-            {
-            	aType = Type.NUMERIC;
-            	Pattern pattern = Pattern.compile("(\\d+)(-)(\\d+)(Lbs)?(\")?");
-                Matcher matcher = pattern.matcher(theString);
-            	if(matcher.find())
-            	{
-            		Double leftNumber = Double.parseDouble(matcher.group(1));
-            		Double rightNumber = Double.parseDouble(matcher.group(3));
-                	aNumericValue = (leftNumber + rightNumber) / 2;
-
-            	}
-            }
-			
-            else if(theString.matches("(Limited to )(.*)"))
-            {
-                aType = Type.NUMERIC;
-                Pattern pattern = Pattern.compile("(Limited to )(\\d+)(-)(\\d+)(Lbs)?(\")?");
-                Matcher matcher = pattern.matcher(theString);
-                if(matcher.find())
-                {
-                	Double leftNumber = Double.parseDouble(matcher.group(2));
-                	Double rightNumber = Double.parseDouble(matcher.group(4));
-                	aNumericValue = (leftNumber + rightNumber)/2;
-                }
-               
-            }
-			else
-			{
-				aType = Type.STRING;
-				aStringValue = theString;
-			}
+			TypedValue parsed = TypedValueParser.parse((String) pValue);
+			aType = parsed.aType;
+			aNumericValue = parsed.aNumericValue;
+			aBooleanValue = parsed.aBooleanValue;
+			aStringValue = parsed.aStringValue;
 		}
 		else
 		{
@@ -190,6 +156,28 @@ public class TypedValue
 		}
 	}	
 	
+	/**
+	 * @return An object that is equal to the key of another value if and only 
+	 * if both values have the same type and exactly the same content. Unlike 
+	 * equals, numeric values are not compared with a tolerance.
+	 */
+	Object getKey()
+	{
+		if( aType == Type.NUMERIC )
+		{
+			return Double.valueOf(aNumericValue);
+		}
+		else if( aType == Type.BOOLEAN )
+		{
+			return Boolean.valueOf(aBooleanValue);
+		}
+		else if( aType == Type.STRING )
+		{
+			return aStringValue;
+		}
+		return aType;
+	}
+	
 	/**
 	 * @return True if and only if this object represents
 	 * a non-available value.
@@ -0,0 +1,295 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.data;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Infers the type of the string values found in the data, for TypedValue.
+ * Each string is matched against the rules below, and the first rule that
+ * matches decides the type and value:
+ * <ul>
+ * <li>INTEGER: an integer with an optional '-', like "-28".</li>
+ * <li>NOT_AVAILABLE: "NA" or "N/A", in any case.</li>
+ * <li>DECIMAL: a number with an optional '-' and decimal part, like "28.123".</li>
+ * <li>YES and NO: "Yes", "yes", "No" and "no".</li>
+ * <li>INCHES: an integer followed by '"', like "23"", worth the integer.</li>
+ * <li>DURATION: an integer followed by "hours" or "days", worth the integer.</li>
+ * <li>RANGE: two integers separated by '-', like "5-35Lbs", worth their average.</li>
+ * <li>LIMITED_RANGE: "Limited to " followed by a range, worth its average.</li>
+ * <li>STRING: any other string.</li>
+ * </ul>
+ * Only the rules that can match the first character of a string are tried.
+ * Plain numbers are recognized without regular expressions, and the other
+ * patterns are compiled once.
+ *
+ * Short strings repeat a lot ("Yes", "No", "N/A", small numbers), so their
+ * values are cached. The most frequent ones are always in the cache, and the 
+ * others are added as they are parsed. The cache is emptied when it is full,
+ * so that it is not held by the first strings parsed. The number of strings 
+ * matched by each rule is counted. Thread-safe.
+ */
+public final class TypedValueParser
+{
+	/**
+	 * The rules that infer the type of a string, in the order they are applied.
+	 */
+	public enum Rule
+	{ INTEGER, NOT_AVAILABLE, DECIMAL, YES, NO, INCHES, DURATION, RANGE, LIMITED_RANGE, STRING }
+
+	private static final Pattern INCHES = Pattern.compile("(\\d+)( ?\")");
+	private static final Pattern DURATION = Pattern.compile("(\\d+)( ?hours)?( ?days)?");
+	private static final Pattern RANGE = Pattern.compile("(\\d+)(-)(\\d+)(.*)");
+	private static final Pattern RANGE_VALUE = Pattern.compile("(\\d+)(-)(\\d+)(Lbs)?(\")?");
+	private static final Pattern LIMITED_RANGE = Pattern.compile("(Limited to )(.*)");
+	private static final Pattern LIMITED_RANGE_VALUE = Pattern.compile("(Limited to )(\\d+)(-)(\\d+)(Lbs)?(\")?");
+
+	// Groups of the range patterns holding the bounds of the range
+	private static final int RANGE_LOW = 1;
+	private static final int RANGE_HIGH = 3;
+	private static final int LIMITED_RANGE_LOW = 2;
+	private static final int LIMITED_RANGE_HIGH = 4;
+	private static final double HALF = 0.5;
+
+	private static final int MAX_CACHED_LENGTH = 16;
+	static final int MAX_CACHE_SIZE = 4096;
+
+	// The most frequent strings of the data, cached once and for all
+	private static final String[] SEEDED_VALUES = { "Yes", "No", "yes", "no", "N/A", "NA" };
+
+	private static final Map<String, Result> SEEDED_CACHE = new HashMap<String, Result>();
+	private static final ConcurrentHashMap<String, Result> CACHE = new ConcurrentHashMap<String, Result>();
+	private static final AtomicLongArray COUNTS = new AtomicLongArray(Rule.values().length);
+	private static final AtomicLong CACHE_HITS = new AtomicLong();
+
+	static
+	{
+		for(String value : SEEDED_VALUES)
+		{
+			SEEDED_CACHE.put(value, infer(value));
+		}
+	}
+
+	private TypedValueParser()
+	{}
+
+	/**
+	 * Infers the type of a string.
+	 * @param pValue The string.
+	 * @return The typed value of the string. The same instance may be returned for equal strings.
+	 */
+	public static TypedValue parse(String pValue)
+	{
+		Result result = SEEDED_CACHE.get(pValue);
+		if(result == null)
+		{
+			result = CACHE.get(pValue);
+		}
+		if(result != null)
+		{
+			CACHE_HITS.incrementAndGet();
+		}
+		else
+		{
+			result = infer(pValue);
+			if(pValue.length() <= MAX_CACHED_LENGTH)
+			{
+				if(CACHE.size() >= MAX_CACHE_SIZE)
+				{
+					CACHE.clear();
+				}
+				CACHE.putIfAbsent(pValue, result);
+			}
+		}
+		COUNTS.incrementAndGet(result.aRule.ordinal());
+		return result.aValue;
+	}
+
+	/**
+	 * @return The number of strings matched by each rule so far, including the cached ones.
+	 */
+	public static Map<Rule, Long> getCounts()
+	{
+		Map<Rule, Long> counts = new EnumMap<Rule, Long>(Rule.class);
+		for(Rule rule : Rule.values())
+		{
+			counts.put(rule, COUNTS.get(rule.ordinal()));
+		}
+		return counts;
+	}
+
+	/**
+	 * @return The number of strings whose value was found in the cache so far.
+	 */
+	public static long getCacheHits()
+	{
+		return CACHE_HITS.get();
+	}
+
+	private static Result infer(String pValue)
+	{
+		if(pValue.length() == 0)
+		{
+			return new Result(Rule.STRING, TypedValue.stringValue(pValue));
+		}
+		char first = pValue.charAt(0);
+		if(isDigit(first) || first == '-')
+		{
+			return inferNumber(pValue);
+		}
+		else if(first == 'n' || first == 'N')
+		{
+			if(isNotAvailable(pValue))
+			{
+				return new Result(Rule.NOT_AVAILABLE, TypedValue.naValue());
+			}
+			else if(pValue.equals("no") || pValue.equals("No"))
+			{
+				return new Result(Rule.NO, TypedValue.booleanValue(false));
+			}
+		}
+		else if(pValue.equals("yes") || pValue.equals("Yes"))
+		{
+			return new Result(Rule.YES, TypedValue.booleanValue(true));
+		}
+		else if(first == 'L' && LIMITED_RANGE.matcher(pValue).matches())
+		{
+			double value = 0;
+			Matcher matcher = LIMITED_RANGE_VALUE.matcher(pValue);
+			if(matcher.find())
+			{
+				value = average(matcher.group(LIMITED_RANGE_LOW), matcher.group(LIMITED_RANGE_HIGH));
+			}
+			return new Result(Rule.LIMITED_RANGE, TypedValue.numericValue(value));
+		}
+		return new Result(Rule.STRING, TypedValue.stringValue(pValue));
+	}
+
+	/*
+	 * The rules for strings that start with a digit or '-'.
+	 */
+	private static Result inferNumber(String pValue)
+	{
+		int start = 0;
+		if(pValue.charAt(0) == '-')
+		{
+			start = 1;
+		}
+		int integerEnd = skipDigits(pValue, start);
+		if(integerEnd > start)
+		{
+			if(integerEnd == pValue.length())
+			{
+				return new Result(Rule.INTEGER, TypedValue.numericValue(Double.parseDouble(pValue)));
+			}
+			if(pValue.charAt(integerEnd) == '.' && integerEnd + 1 < pValue.length()
+					&& skipDigits(pValue, integerEnd + 1) == pValue.length())
+			{
+				return new Result(Rule.DECIMAL, TypedValue.numericValue(Double.parseDouble(pValue)));
+			}
+		}
+		if(start == 0)
+		{
+			if(INCHES.matcher(pValue).matches())
+			{
+				return new Result(Rule.INCHES, TypedValue.numericValue(leadingInteger(INCHES, pValue)));
+			}
+			else if(DURATION.matcher(pValue).matches())
+			{
+				return new Result(Rule.DURATION, TypedValue.numericValue(leadingInteger(DURATION, pValue)));
+			}
+			else if(RANGE.matcher(pValue).matches())
+			{
+				double value = 0;
+				Matcher matcher = RANGE_VALUE.matcher(pValue);
+				if(matcher.find())
+				{
+					value = average(matcher.group(RANGE_LOW), matcher.group(RANGE_HIGH));
+				}
+				return new Result(Rule.RANGE, TypedValue.numericValue(value));
+			}
+		}
+		return new Result(Rule.STRING, TypedValue.stringValue(pValue));
+	}
+
+	private static boolean isNotAvailable(String pValue)
+	{
+		int length = pValue.length();
+		char last = pValue.charAt(length - 1);
+		if(last != 'a' && last != 'A')
+		{
+			return false;
+		}
+		return length == 2 || length == 3 && pValue.charAt(1) == '/';
+	}
+
+	private static double leadingInteger(Pattern pPattern, String pValue)
+	{
+		double value = 0;
+		Matcher matcher = pPattern.matcher(pValue);
+		if(matcher.find())
+		{
+			value = Double.parseDouble(matcher.group(1).trim());
+		}
+		return value;
+	}
+
+	private static double average(String pLow, String pHigh)
+	{
+		return (Double.parseDouble(pLow) + Double.parseDouble(pHigh)) * HALF;
+	}
+
+	/*
+	 * The index of the first character at or after pStart that is not an ASCII digit,
+	 * the characters matched by \d.
+	 */
+	private static int skipDigits(String pValue, int pStart)
+	{
+		int index = pStart;
+		while(index < pValue.length() && isDigit(pValue.charAt(index)))
+		{
+			index++;
+		}
+		return index;
+	}
+
+	private static boolean isDigit(char pCharacter)
+	{
+		return pCharacter >= '0' && pCharacter <= '9';
+	}
+
+	/*
+	 * A typed value and the rule that inferred it.
+	 */
+	private static final class Result
+	{
+		private final Rule aRule;
+		private final TypedValue aValue;
+
+		Result(Rule pRule, TypedValue pValue)
+		{
+			aRule = pRule;
+			aValue = pValue;
+		}
+	}
+}
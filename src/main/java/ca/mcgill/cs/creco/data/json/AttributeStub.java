@@ -15,6 +15,8 @@
  */
 package ca.mcgill.cs.creco.data.json;
 
+import com.google.gson.annotations.Expose;
+
 /**
  * This class is designed to capture data from the CR database for attributes (ratings and specs) which are 
  * properties of products.  It is a superclass for RatingStub and SpecStub.
@@ -26,13 +28,17 @@ package ca.mcgill.cs.creco.data.json;
  */
 class AttributeStub 
 {
+	@Expose
 	public String displayName;
+	@Expose
 	public String description;
+	@Expose
 	public String attributeId;
 	public String filterWidget;
 	public String dataPresentationFormat;
 	public String attributeGroup;
 	public String unitName;
+	@Expose
 	public Object value;
 	public Integer sortOrder;
 	public Boolean isForDisplayOnCRO;
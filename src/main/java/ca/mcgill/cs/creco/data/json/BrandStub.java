@@ -15,12 +15,15 @@
  */
 package ca.mcgill.cs.creco.data.json;
 
+import com.google.gson.annotations.Expose;
+
 /**
  * Reflectively loaded by the GSON library, do not change the field names.
  */
 class BrandStub 
 {
 	public String url;
+	@Expose
 	public String displayName;
 	public String id;
 	public String name;
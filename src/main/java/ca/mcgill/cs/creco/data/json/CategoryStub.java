@@ -15,8 +15,12 @@
  */
 package ca.mcgill.cs.creco.data.json;
 
+import com.google.gson.annotations.Expose;
+
 /**
  * Reflectively loaded by the GSON library, do not change the field names.
+ * All the fields are read from the category file, but only the id is 
+ * read from the category of a product.
  */
 class CategoryStub 
 {
@@ -25,6 +29,7 @@ class CategoryStub
 	public String productGroupId; 
 	public String url;
 	public String name;
+	@Expose
 	public String id;
 	public String imageCanonical;
 	public String singularName;
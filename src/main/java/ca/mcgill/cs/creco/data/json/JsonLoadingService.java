@@ -21,23 +21,65 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import ca.mcgill.cs.creco.data.Attribute;
+import ca.mcgill.cs.creco.data.AttributeInterner;
 import ca.mcgill.cs.creco.data.CategoryNode;
 import ca.mcgill.cs.creco.data.IDataCollector;
 import ca.mcgill.cs.creco.data.IDataLoadingService;
 import ca.mcgill.cs.creco.data.Product;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
 import com.google.gson.stream.JsonReader;
 
 /**
  * A service to load the Consumer Reports data from JSON files.
+ * 
+ * The product files are parsed in parallel, each on its own worker. Workers
+ * hand their products over in batches through a small queue per file, and block
+ * when their queue is full. The caller's thread drains the files one after the
+ * other, in the order they were given, and adds the products to the collector, 
+ * so the collector is only ever called from that thread, and the products are
+ * always added in the same order.
+ * 
+ * The files are submitted to the workers in the same order, so the file being
+ * drained has always started, even if there are fewer workers than files.
  */
 public class JsonLoadingService implements IDataLoadingService 
 {
+	private static final Logger LOG = LoggerFactory.getLogger(JsonLoadingService.class);
+	
+	/** System property holding the maximum number of product files parsed at the same time. */
+	public static final String PARALLELISM_PROPERTY = "creco.loader.parallelism";
+	
+	static final int PRODUCTS_PER_BATCH = 256;
+	static final int BATCHES_PER_QUEUE = 8;
+	private static final long POLL_TIMEOUT_MS = 10;
+	
+	// Marks the end of a product file in its queue
+	private static final List<Product> END_OF_FILE = new ArrayList<Product>();
+	
+	// Thread-safe, and only reads the fields of the stubs that are used to build products
+	private static final TypeAdapter<ProductStub> PRODUCT_ADAPTER = 
+			new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create().getAdapter(ProductStub.class);
+	
 	private String aPath;
 	private String aCategoryFileName;
 	private String aDeadLinksFileName;
@@ -107,27 +149,157 @@ public class JsonLoadingService implements IDataLoadingService
 	public void loadProducts(IDataCollector pCollector) throws IOException 
 	{
 		readDeadLinks();
-		for(String fileName : aProductFileNames)
+		ExecutorService executor = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(aProductFileNames.length, Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors()))));
+		try
 		{
-			readFile(aPath + fileName, pCollector);
+			List<ProductFileReader> readers = new ArrayList<ProductFileReader>();
+			for(String fileName : aProductFileNames)
+			{
+				ProductFileReader reader = new ProductFileReader(aPath + fileName);
+				reader.aFuture = executor.submit(reader);
+				readers.add(reader);
+			}
+			collectProducts(readers, pCollector);
+			
+			int built = 0;
+			int distinct = 0;
+			for(ProductFileReader reader : readers)
+			{
+				built += reader.aInterner.getNumberOfBuiltAttributes();
+				distinct += reader.aInterner.getNumberOfDistinctAttributes();
+			}
+			LOG.info("Loaded " + aProductFileNames.length + " product files: " + built + " attributes, " + distinct + " distinct");
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while loading the products");
+		}
+		finally
+		{
+			// Stops the workers that are still running if a file could not be read
+			executor.shutdownNow();
 		}
 	}
 	
-	private static void readFile(String filePath, IDataCollector pCollector) throws IOException
+	/*
+	 * Takes all the batches of each file before moving to the next one. Waiting for a
+	 * file that was submitted later could wait forever: it may not have started, while 
+	 * the workers that hold the threads are blocked on their full queues.
+	 */
+	private static void collectProducts(List<ProductFileReader> pReaders, IDataCollector pCollector) throws IOException, InterruptedException
 	{
-		InputStream in = new FileInputStream(filePath);
-		JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
-				
-		reader.beginArray();
-		while(reader.hasNext()) 
+		for(ProductFileReader reader : pReaders)
 		{
-			ProductStub prodStub = new Gson().fromJson(reader, ProductStub.class);
-			pCollector.addProduct(buildProduct(prodStub));
-			
+			List<Product> batch = reader.takeBatch();
+			while(batch != null)
+			{
+				for(Product product : batch)
+				{
+					pCollector.addProduct(product);
+				}
+				batch = reader.takeBatch();
+			}
+			reader.checkCompleted();
+		}
+	}
+	
+	/*
+	 * Parses a product file on a worker. Each file has its own interner, 
+	 * as interners are not thread-safe.
+	 */
+	private static final class ProductFileReader implements Callable<Void>
+	{
+		private final String aFilePath;
+		private final BlockingQueue<List<Product>> aQueue = new ArrayBlockingQueue<List<Product>>(BATCHES_PER_QUEUE);
+		private final AttributeInterner aInterner = new AttributeInterner();
+		private Future<Void> aFuture;
+		
+		ProductFileReader(String pFilePath)
+		{
+			aFilePath = pFilePath;
+		}
+		
+		@Override
+		public Void call() throws IOException, InterruptedException
+		{
+			InputStream in = new FileInputStream(aFilePath);
+			try
+			{
+				JsonReader reader = new JsonReader(new InputStreamReader(in, "UTF-8"));
+				reader.beginArray();
+				List<Product> batch = new ArrayList<Product>(PRODUCTS_PER_BATCH);
+				while(reader.hasNext()) 
+				{
+					batch.add(buildProduct(PRODUCT_ADAPTER.read(reader), aInterner));
+					if(batch.size() == PRODUCTS_PER_BATCH)
+					{
+						aQueue.put(batch);
+						batch = new ArrayList<Product>(PRODUCTS_PER_BATCH);
+					}
+				}
+				reader.endArray();
+				if(!batch.isEmpty())
+				{
+					aQueue.put(batch);
+				}
+				aQueue.put(END_OF_FILE);
+			}
+			finally
+			{
+				in.close();
+			}
+			return null;
+		}
+		
+		/*
+		 * @return The next batch of products, or null if there are no more. 
+		 * A worker that fails does not mark the end of its file, so its 
+		 * future is checked whenever the queue stays empty for a while.
+		 */
+		List<Product> takeBatch() throws InterruptedException
+		{
+			while(true)
+			{
+				List<Product> batch = aQueue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+				if(batch == END_OF_FILE)
+				{
+					return null;
+				}
+				else if(batch != null)
+				{
+					return batch;
+				}
+				else if(aFuture.isDone() && aQueue.isEmpty())
+				{
+					return null;
+				}
+			}
+		}
+		
+		/*
+		 * Rethrows the exception that stopped the worker, if any.
+		 */
+		void checkCompleted() throws IOException, InterruptedException
+		{
+			try
+			{
+				aFuture.get();
+			}
+			catch(ExecutionException e)
+			{
+				if(e.getCause() instanceof IOException)
+				{
+					throw (IOException) e.getCause();
+				}
+				else if(e.getCause() instanceof RuntimeException)
+				{
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IOException("Could not read " + aFilePath, e.getCause());
+			}
 		}
-		reader.endArray();
-		reader.close();
-		in.close();
 	}
 	
 	private void readDeadLinks() throws FileNotFoundException, IOException
@@ -152,9 +324,10 @@ public class JsonLoadingService implements IDataLoadingService
 		reader.beginArray();
 		
 		// Iterate over each entry in the deadlinks file, putting a records in a HashTable
+		Gson gson = new Gson();
 		while(reader.hasNext()) 
 		{
-			LinkResponseStub responseStub = new Gson().fromJson(reader, LinkResponseStub.class);
+			LinkResponseStub responseStub = gson.fromJson(reader, LinkResponseStub.class);
 			aDeadLinks.put(responseStub.product_id, responseStub.state);
 		}
 
@@ -163,7 +336,7 @@ public class JsonLoadingService implements IDataLoadingService
 		in.close();
 	}
 
-	private static Product buildProduct(ProductStub pProductStub)
+	private static Product buildProduct(ProductStub pProductStub, AttributeInterner pInterner)
 	{
 		// Collect all of the attributes for this product.  Starting with specifications.
 		ArrayList<Attribute> atts = new ArrayList<Attribute>();
@@ -171,7 +344,7 @@ public class JsonLoadingService implements IDataLoadingService
 		{
 			for(SpecStub spec : pProductStub.specs)
 			{
-				atts.add(Attribute.buildSpecification(spec.attributeId, spec.displayName, spec.description, spec.value));
+				atts.add(pInterner.buildSpecification(spec.attributeId, spec.displayName, spec.description, spec.value));
 			}
 		}
 		
@@ -180,7 +353,7 @@ public class JsonLoadingService implements IDataLoadingService
 		{
 			for(RatingStub rating : pProductStub.ratings)
 			{
-				atts.add(Attribute.buildRating(rating.attributeId, rating.displayName, rating.description, rating.value));
+				atts.add(pInterner.buildRating(rating.attributeId, rating.displayName, rating.description, rating.value));
 			}
 		}
 		
@@ -188,14 +361,14 @@ public class JsonLoadingService implements IDataLoadingService
 		if(pProductStub.price != null)
 		{
 			PriceStub price = pProductStub.price;
-			atts.add(Attribute.buildPrice(price.attributeId, price.displayName, price.description, price.value));
+			atts.add(pInterner.buildPrice(price.attributeId, price.displayName, price.description, price.value));
 		}
 		
 		// Work out the brandName
 		String brandName;
 		if(pProductStub.brand != null)
 		{
-			brandName = pProductStub.brand.displayName;
+			brandName = pInterner.intern(pProductStub.brand.displayName);
 		}
 		else
 		{
@@ -219,7 +392,7 @@ public class JsonLoadingService implements IDataLoadingService
 			}
 		}
 		
-		return new Product(pProductStub.id, pProductStub.displayName, pProductStub.isTested, pProductStub.category.id, brandName, prodUrl, atts,  pProductStub.imageThumbnail, pProductStub.overallScore);
+		return new Product(pProductStub.id, pProductStub.displayName, pProductStub.isTested, pInterner.intern(pProductStub.category.id), brandName, prodUrl, atts,  pProductStub.imageThumbnail, pProductStub.overallScore);
 	}
 
 }
\ No newline at end of file
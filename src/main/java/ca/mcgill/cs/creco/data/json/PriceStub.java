@@ -15,16 +15,22 @@
  */
 package ca.mcgill.cs.creco.data.json;
 
+import com.google.gson.annotations.Expose;
+
 /**
  * Reflectively loaded by the GSON library, do not change the field names.
  */
 class PriceStub 
 {
+	@Expose
 	public String displayName;
+	@Expose
 	public String description;
+	@Expose
 	public String attributeId;
 	public String dataPresentationFormat;
 	public String filterWidget;
+	@Expose
 	public Double value;
 	public Integer sortOrder;
 	public Boolean isCategoryCommonAttribute;
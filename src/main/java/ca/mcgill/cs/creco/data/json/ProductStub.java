@@ -15,23 +15,31 @@
  */
 package ca.mcgill.cs.creco.data.json;
 
+import com.google.gson.annotations.Expose;
+
 /**
  * Reflectively loaded by the GSON library, do not change the field names.
+ * Only the fields annotated with Expose are read from the product files,
+ * along with the exposed fields of the stubs they refer to. The others are skipped.
  */
 class ProductStub 
 {
 	public String summary;
 	public String mpn;
+	@Expose
 	public String id;
 	public String subfranchise;
 	public String theCategory;
 	public String franchise;
 	public String imageLarge;
+	@Expose
 	public String imageThumbnail;
+	@Expose
 	public String displayName;
 	public String name;
 	public String upc;
 	public String overallScoreDisplayName;
+	@Expose
 	public String modelOverviewPageUrl;
 	public String genericColor;	
 	public String review;
@@ -44,14 +52,21 @@ class ProductStub
 	public String subcategory;
 	public Double overallScoreMax;
 	public Double overallScoreMin; 
+	@Expose
 	public Double overallScore;
 	public Boolean isRecommended;
 	public Boolean isBestSeller;
+	@Expose
 	public Boolean isTested;
 	public Boolean isBestBuy;
+	@Expose
 	public RatingStub[] ratings;
+	@Expose
 	public SpecStub[] specs;
+	@Expose
 	public CategoryStub category;
+	@Expose
 	public BrandStub brand;
+	@Expose
 	public PriceStub price;
 }
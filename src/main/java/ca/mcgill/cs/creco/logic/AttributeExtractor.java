@@ -16,13 +16,20 @@
 package ca.mcgill.cs.creco.logic;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
 import ca.mcgill.cs.creco.data.Attribute;
@@ -37,8 +44,14 @@ import ca.mcgill.cs.creco.data.Product;
  * and correlation with overall score. Unmodifiable lists are returned and ScoredAttribtues 
  * are immutable. If a category is not found will on request the extractor will
  * return an empty list, and log an error.
+ * 
+ * The attributes of each category are sorted by every SORT_METHOD and indexed by id
+ * when the extractor is built, so requests only read immutable lists and maps.
+ * The extractor of a new version of the data only scores the categories that are
+ * not the same objects as in the previous version.
  */
 @Component
+@Lazy
 public class AttributeExtractor
 {
 	/** Sorting methods for attributes. */
@@ -46,55 +59,232 @@ public class AttributeExtractor
 	{ ENTROPY, SCORE, CORRELATION }
 	private static final SORT_METHOD DEFAULT_SORT = SORT_METHOD.ENTROPY;
 	private static final Logger LOG = LoggerFactory.getLogger(AttributeExtractor.class);
+	
+	/** System property holding the number of threads used to score attributes at startup. */
+	public static final String PARALLELISM_PROPERTY = "creco.extractor.parallelism";
+	/** Categories with more attributes than this are split into several tasks. */
+	private static final int ATTRIBUTES_PER_TASK = 32;
+	
  	private IDataStore aDataStore;
-	private HashMap<String, ArrayList<ScoredAttribute>> aAllAttributes;
-	/** Constructor that takes a category.
+	private Map<String, CategoryAttributes> aAllAttributes;
+	
+	/** Constructor that takes a category. The attributes are scored on a pool
+	 * whose size is given by the PARALLELISM_PROPERTY system property, and defaults
+	 * to the number of available processors.
 	 * @param pDataStore the whole space of interesting products
 	 */
 	@Autowired
 	public AttributeExtractor(IDataStore pDataStore)
+	{
+		this(pDataStore, (AttributeExtractor) null);
+	}
+	
+	/** Constructor that reuses the scored attributes of the categories that are the 
+	 * same objects in a previous version of the data. The other categories are scored
+	 * as by AttributeExtractor(IDataStore).
+	 * @param pDataStore the whole space of interesting products
+	 * @param pPrevious the extractor of a previous version of the data, or null to score all the categories
+	 */
+	public AttributeExtractor(IDataStore pDataStore, AttributeExtractor pPrevious)
+	{
+		ForkJoinPool pool = new ForkJoinPool(Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors()));
+		try
+		{
+			buildAttributes(pDataStore, pPrevious, pool);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+	}
+	
+	/** Constructor that scores the attributes on the given pool. The pool is
+	 * not shut down by the extractor.
+	 * @param pDataStore the whole space of interesting products
+	 * @param pPool the pool on which to score the attributes
+	 */
+	public AttributeExtractor(IDataStore pDataStore, ForkJoinPool pPool)
+	{
+		buildAttributes(pDataStore, null, pPool);
+	}
+	
+	/*
+	 * Scores the attributes of all categories in parallel. Each category is a task, and
+	 * large categories are further split over ranges of attributes. Every task writes to 
+	 * its own slots, so the lists and the map are assembled in the same order as a 
+	 * sequential build. The categories of the previous extractor are not scored again.
+	 */
+	private void buildAttributes(IDataStore pDataStore, AttributeExtractor pPrevious, ForkJoinPool pPool)
 	{
 		aDataStore = pDataStore;
-		aAllAttributes = new HashMap<String, ArrayList<ScoredAttribute>>();
+		List<CategoryTask> tasks = new ArrayList<CategoryTask>();
+		List<CategoryTask> changedTasks = new ArrayList<CategoryTask>();
 		for(Category cat : aDataStore.getCategories())
 		{
-			ArrayList<ScoredAttribute> scoredAttributeList = new ArrayList<ScoredAttribute>();
+			CategoryTask task = new CategoryTask(cat);
+			if(pPrevious != null && pPrevious.aDataStore.getCategory(cat.getId()) == cat)
+			{
+				task.aAttributes = pPrevious.aAllAttributes.get(cat.getId());
+			}
+			else
+			{
+				changedTasks.add(task);
+			}
+			tasks.add(task);
+		}
+		pPool.invoke(new CategoriesTask(changedTasks));
+		
+		LinkedHashMap<String, CategoryAttributes> allAttributes = new LinkedHashMap<String, CategoryAttributes>();
+		for(CategoryTask task : tasks)
+		{
+			allAttributes.put(task.aCategory.getId(), task.aAttributes);
+		}
+		aAllAttributes = Collections.unmodifiableMap(allAttributes);
+	}
+	
+	/**
+	 * Forks one task per category and waits for all of them.
+	 */
+	private static final class CategoriesTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private final List<CategoryTask> aTasks;
+		
+		CategoriesTask(List<CategoryTask> pTasks)
+		{
+			aTasks = pTasks;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			invokeAll(aTasks);
+		}
+	}
+	
+	/**
+	 * The scored attributes of a category, sorted by each method and indexed by id.
+	 */
+	private static final class CategoryAttributes
+	{
+		private final Map<SORT_METHOD, List<ScoredAttribute>> aSortedAttributes = 
+				new EnumMap<SORT_METHOD, List<ScoredAttribute>>(SORT_METHOD.class);
+		private final Map<String, ScoredAttribute> aAttributesById = new HashMap<String, ScoredAttribute>();
+		
+		/*
+		 * Each method sorts the attributes from their order by DEFAULT_SORT, so that
+		 * the order of the attributes with equal keys is always the same.
+		 */
+		CategoryAttributes(ArrayList<ScoredAttribute> pScoredAttributes)
+		{
+			sort(DEFAULT_SORT, pScoredAttributes);
+			for(SORT_METHOD sortMethod : SORT_METHOD.values())
+			{
+				ArrayList<ScoredAttribute> sorted = new ArrayList<ScoredAttribute>(pScoredAttributes);
+				sort(sortMethod, sorted);
+				aSortedAttributes.put(sortMethod, Collections.unmodifiableList(sorted));
+			}
+			for(ScoredAttribute scoredAttribute : pScoredAttributes)
+			{
+				if(scoredAttribute != null)
+				{
+					aAttributesById.put(scoredAttribute.getAttributeID(), scoredAttribute);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Scores all the attributes of a category, and sorts them.
+	 */
+	private static final class CategoryTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private final Category aCategory;
+		private CategoryAttributes aAttributes;
+		
+		CategoryTask(Category pCategory)
+		{
+			aCategory = pCategory;
+		}
+		
+		@Override
+		protected void compute()
+		{
 			HashMap<String, Attribute> attributes = new HashMap<String, Attribute>();
-			for(Product prod : cat.getProducts())
+			for(Product prod : aCategory.getProducts())
 			{
 				for(Attribute att : prod.getAttributes())
 				{
 					attributes.put(att.getId(), att);
 				}
 			}
+			Attribute[] keyedAttributes = new Attribute[attributes.size()];
+			int index = 0;
 			for(String key : attributes.keySet())
+			{
+				keyedAttributes[index] = attributes.get(key);
+				index++;
+			}
+			ScoredAttribute[] scored = new ScoredAttribute[keyedAttributes.length];
+			new AttributeRangeTask(aCategory, keyedAttributes, scored, 0, keyedAttributes.length).compute();
+			
+			aAttributes = new CategoryAttributes(new ArrayList<ScoredAttribute>(Arrays.asList(scored)));
+		}
+	}
+	
+	/**
+	 * Scores a range of the attributes of a category, splitting the range 
+	 * in halves while it holds more than ATTRIBUTES_PER_TASK attributes.
+	 */
+	private static final class AttributeRangeTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		private final Category aCategory;
+		private final Attribute[] aAttributes;
+		private final ScoredAttribute[] aResults;
+		private final int aStart;
+		private final int aEnd;
+		
+		AttributeRangeTask(Category pCategory, Attribute[] pAttributes, ScoredAttribute[] pResults, int pStart, int pEnd)
+		{
+			aCategory = pCategory;
+			aAttributes = pAttributes;
+			aResults = pResults;
+			aStart = pStart;
+			aEnd = pEnd;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if(aEnd - aStart > ATTRIBUTES_PER_TASK)
+			{
+				int middle = (aStart + aEnd) >>> 1;
+				invokeAll(new AttributeRangeTask(aCategory, aAttributes, aResults, aStart, middle),
+						new AttributeRangeTask(aCategory, aAttributes, aResults, middle, aEnd));
+				return;
+			}
+			for(int i = aStart; i < aEnd; i++)
 			{
 				ScoredAttribute sa = null;
 				try
 				{
-					sa = new ScoredAttribute(attributes.get(key), cat);
-					sa.getAttributeID();
+					sa = new ScoredAttribute(aAttributes[i], aCategory);
 				}
 				catch(IllegalArgumentException iae)
 				{
 					LOG.error(iae.toString());
 				}
-				
-				scoredAttributeList.add(sa);
+				aResults[i] = sa;
 			}
-			sort(DEFAULT_SORT, scoredAttributeList);
-			aAllAttributes.put(cat.getId(), scoredAttributeList);
-
 		}
-		
-		
-		
 	}
 	
 
 	/**
 	 * Call this method to get the list of scored Attributes ranked from most important
-	 * to least important by DEFAULT_SORT
+	 * to least important by correlation with the overall score
 	 * can return null pointers if it doesn't have any attributes to work with.
 	 * @param pCatID Id of the category you want
 	 * @return list of scored attributes ranked from most important
@@ -103,14 +293,7 @@ public class AttributeExtractor
 	 */
 	public List<ScoredAttribute> getAttributesForCategory(String pCatID) 
 	{
-		ArrayList<ScoredAttribute> scoredAttributeList = aAllAttributes.get(pCatID);
-		if(scoredAttributeList != null)
-		{
-			sort(SORT_METHOD.CORRELATION, scoredAttributeList);
-			return Collections.unmodifiableList(scoredAttributeList);
-		}		
-		LOG.error("Category("+pCatID+") not found returning empty ScoredAttribute List");
-		return Collections.unmodifiableList(new ArrayList<ScoredAttribute>());
+		return getAttributesForCategory(pCatID, SORT_METHOD.CORRELATION);
 	}
 	/**
 	 * Call this method to get the list of scored Attributes ranked from most important
@@ -124,11 +307,10 @@ public class AttributeExtractor
 	 */
 	public List<ScoredAttribute> getAttributesForCategory(String pCatID, SORT_METHOD pSortMethod) 
 	{
-		ArrayList<ScoredAttribute> scoredAttributeList = aAllAttributes.get(pCatID);
-		if(scoredAttributeList != null)
+		CategoryAttributes attributes = aAllAttributes.get(pCatID);
+		if(attributes != null)
 		{
-			sort(pSortMethod, scoredAttributeList);
-			return Collections.unmodifiableList(scoredAttributeList);
+			return attributes.aSortedAttributes.get(pSortMethod);
 		}	
 		LOG.error("Category("+pCatID+") not found returning empty ScoredAttribute List");	
 		return Collections.unmodifiableList(new ArrayList<ScoredAttribute>());
@@ -143,15 +325,13 @@ public class AttributeExtractor
 	 */
 	public ScoredAttribute getScoredAttributeInCategory(String pCatID, String pAttributeID) 
 	{
-		ArrayList<ScoredAttribute> scoredAttributeList = aAllAttributes.get(pCatID);
-		if(scoredAttributeList != null)
+		CategoryAttributes attributes = aAllAttributes.get(pCatID);
+		if(attributes != null)
 		{
-			for(ScoredAttribute sa : scoredAttributeList)
+			ScoredAttribute sa = attributes.aAttributesById.get(pAttributeID);
+			if(sa != null)
 			{
-				if(sa.getAttributeID().equals(pAttributeID))
-				{
-					return sa;
-				}
+				return sa;
 			}
 			LOG.error("AttributeID: " + pAttributeID + " Not Found in CategoryID: " +pCatID );	
 		}	
@@ -163,7 +343,24 @@ public class AttributeExtractor
 		return new ScoredAttribute();
 	}
 	
-	private void sort(SORT_METHOD pSortMethod, ArrayList<ScoredAttribute> pScoredAttributeList)
+	/**
+	 * Finds a scored attribute of a category, without logging anything if it is not found.
+	 * @param pCatID Id of the category you want
+	 * @param pAttributeID Id of the attribute you want
+	 * @return ScoredAttribute with ID pAttributeID, or null if the category does not exist
+	 * or has no such attribute.
+	 */
+	public ScoredAttribute findScoredAttribute(String pCatID, String pAttributeID) 
+	{
+		CategoryAttributes attributes = aAllAttributes.get(pCatID);
+		if(attributes == null)
+		{
+			return null;
+		}
+		return attributes.aAttributesById.get(pAttributeID);
+	}
+	
+	private static void sort(SORT_METHOD pSortMethod, ArrayList<ScoredAttribute> pScoredAttributeList)
 	{
 		if (pSortMethod == SORT_METHOD.CORRELATION)
 		{
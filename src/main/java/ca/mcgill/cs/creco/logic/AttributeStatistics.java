@@ -0,0 +1,366 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.logic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.apache.commons.math3.stat.regression.SimpleRegression;
+
+import ca.mcgill.cs.creco.data.AttributeColumn;
+import ca.mcgill.cs.creco.data.CategoryColumns;
+
+/**
+ * Statistics of one attribute over the products of a category, gathered in
+ * a single pass over the columns of the category. This covers everything
+ * ScoredAttribute and the correlators need: the summary of the numeric values,
+ * the correlation with the overall score, the counts of each nominal label and
+ * the overall score of the products that have each label.
+ *
+ * Correlations use the same SimpleRegression that PearsonsCorrelation relies on,
+ * so the results are the same as correlating the collected arrays.
+ */
+final class AttributeStatistics
+{
+	static final String OVERALL_SCORE_ATTRIBUTE_ID = "254";
+
+	private final AttributeColumn aColumn;
+
+	// Numeric values
+	private final SummaryStatistics aSummary = new SummaryStatistics();
+	private double aMin = Double.POSITIVE_INFINITY;
+	private double aMax = Double.NEGATIVE_INFINITY;
+	private final double[] aNumericValues;
+
+	// Correlation of numeric values with the overall score
+	private final SimpleRegression aRegression = new SimpleRegression();
+	private double aExistingCount = 0;
+	private double aNonNumericCount = 0;
+
+	// Nominal values, indexed by label code
+	private final double[] aStringCounts;
+	private final double[] aScoreSums;
+	private final int[] aScoreCounts;
+	private final List<Integer> aScoredLabels = new ArrayList<Integer>();
+	private double aTrueCount = 0;
+	private double aBooleanCount = 0;
+
+	// Label and overall score of each product that has both, in ordinal order
+	private final int[] aPairLabels;
+	private final double[] aPairScores;
+	private int aPairCount = 0;
+
+	private AttributeStatistics(AttributeColumn pColumn, int pSize)
+	{
+		aColumn = pColumn;
+		int numberOfLabels = 0;
+		int numberOfValues = 0;
+		if(pColumn != null)
+		{
+			numberOfLabels = pColumn.getNumberOfLabels();
+			numberOfValues = pColumn.getNumericCount();
+		}
+		aNumericValues = new double[numberOfValues];
+		aStringCounts = new double[numberOfLabels];
+		aScoreSums = new double[numberOfLabels];
+		aScoreCounts = new int[numberOfLabels];
+		aPairLabels = new int[pSize];
+		aPairScores = new double[pSize];
+	}
+
+	/**
+	 * Gathers the statistics of an attribute in one pass over the products of a category.
+	 * @param pColumns The columns of the category.
+	 * @param pAttributeId The attribute to gather statistics for.
+	 * @return The statistics of the attribute.
+	 */
+	static AttributeStatistics compute(CategoryColumns pColumns, String pAttributeId)
+	{
+		AttributeColumn column = pColumns.getColumn(pAttributeId);
+		AttributeColumn scores = pColumns.getColumn(OVERALL_SCORE_ATTRIBUTE_ID);
+		AttributeStatistics statistics = new AttributeStatistics(column, pColumns.size());
+		if(column == null)
+		{
+			return statistics;
+		}
+		int numericIndex = 0;
+		for(int ordinal = 0; ordinal < pColumns.size(); ordinal++)
+		{
+			if(!column.isPresent(ordinal))
+			{
+				continue;
+			}
+			boolean hasScore = scores != null && scores.isNumeric(ordinal);
+			if(column.isNumeric(ordinal))
+			{
+				double value = column.getNumeric(ordinal);
+				statistics.addNumeric(value);
+				statistics.aNumericValues[numericIndex] = value;
+				numericIndex++;
+				if(hasScore)
+				{
+					statistics.addCorrelationPair(scores.getNumeric(ordinal), value);
+				}
+				else if(scores != null && scores.isAvailable(ordinal))
+				{
+					statistics.aExistingCount++;
+					statistics.aNonNumericCount++;
+				}
+			}
+			else if(column.isAvailable(ordinal))
+			{
+				int label = column.getLabel(ordinal);
+				statistics.addLabel(label, column.isBoolean(ordinal), column.isString(ordinal));
+				if(scores != null && scores.isAvailable(ordinal))
+				{
+					statistics.aExistingCount++;
+					statistics.aNonNumericCount++;
+				}
+				if(hasScore)
+				{
+					statistics.addLabelScorePair(label, scores.getNumeric(ordinal));
+				}
+			}
+		}
+		return statistics;
+	}
+
+	private void addNumeric(double pValue)
+	{
+		aSummary.addValue(pValue);
+		if(pValue < aMin)
+		{
+			aMin = pValue;
+		}
+		if(pValue > aMax)
+		{
+			aMax = pValue;
+		}
+	}
+
+	private void addCorrelationPair(double pScore, double pValue)
+	{
+		aExistingCount++;
+		if(pScore > 0)
+		{
+			aRegression.addData(pScore, pValue);
+		}
+	}
+
+	private void addLabel(int pLabel, boolean pIsBoolean, boolean pIsString)
+	{
+		if(pIsString)
+		{
+			aStringCounts[pLabel]++;
+		}
+		if(pIsBoolean)
+		{
+			aBooleanCount++;
+			if(Boolean.parseBoolean(aColumn.getLabelName(pLabel)))
+			{
+				aTrueCount++;
+			}
+		}
+	}
+
+	private void addLabelScorePair(int pLabel, double pScore)
+	{
+		if(aScoreCounts[pLabel] == 0)
+		{
+			aScoredLabels.add(pLabel);
+		}
+		aScoreSums[pLabel] += pScore;
+		aScoreCounts[pLabel]++;
+		aPairLabels[aPairCount] = pLabel;
+		aPairScores[aPairCount] = pScore;
+		aPairCount++;
+	}
+
+	/**
+	 * @return The summary statistics of the numeric values.
+	 */
+	SummaryStatistics getSummary()
+	{
+		return aSummary;
+	}
+
+	/**
+	 * @return The smallest numeric value, or positive infinity if there is none.
+	 */
+	double getMin()
+	{
+		return aMin;
+	}
+
+	/**
+	 * @return The largest numeric value, or negative infinity if there is none.
+	 */
+	double getMax()
+	{
+		return aMax;
+	}
+
+	/**
+	 * @return A copy of the numeric values, in product ordinal order.
+	 */
+	double[] getNumericValues()
+	{
+		return Arrays.copyOf(aNumericValues, aNumericValues.length);
+	}
+
+	/**
+	 * Pearson's correlation between the overall score and the numeric values
+	 * of the attribute, for the products with a positive overall score.
+	 * @param pThreshold The minimum fraction of products with both values available
+	 * that need to have both values numeric.
+	 * @return The correlation, or 0 if there are less than two products to correlate.
+	 * @throws IllegalArgumentException If the threshold is not met.
+	 */
+	double getCorrelation(double pThreshold)
+	{
+		double ratio = 1 - aNonNumericCount/aExistingCount;
+		if(ratio < pThreshold)
+		{
+			throw new IllegalArgumentException("Threshold for correlation was not met: "
+					+ ratio + "<" + pThreshold + " count: " + aExistingCount + " NNcount: " + aNonNumericCount);
+		}
+		if(aRegression.getN() < 2)
+		{
+			return 0;
+		}
+		return aRegression.getR();
+	}
+
+	/**
+	 * @return The number of occurrences of each string label, by label name.
+	 */
+	Map<String, Double> getStringCounts()
+	{
+		HashMap<String, Double> counts = new HashMap<String, Double>();
+		for(int label = 0; label < aStringCounts.length; label++)
+		{
+			if(aStringCounts[label] > 0)
+			{
+				counts.put(aColumn.getLabelName(label), aStringCounts[label]);
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * @return The number of products with a boolean value.
+	 */
+	double getBooleanCount()
+	{
+		return aBooleanCount;
+	}
+
+	/**
+	 * @return The number of products with a true value.
+	 */
+	double getTrueCount()
+	{
+		return aTrueCount;
+	}
+
+	/**
+	 * @return The mean overall score of the products with each nominal label, by label name.
+	 */
+	Map<String, Double> getLabelMeanScores()
+	{
+		Map<String, Double> labelScores = new HashMap<String, Double>();
+		for(String label : getScoredLabelNames())
+		{
+			int code = aColumn.getCode(label);
+			labelScores.put(label, aScoreSums[code] / aScoreCounts[code]);
+		}
+		return labelScores;
+	}
+
+	/**
+	 * Measures how well the nominal labels predict the overall score. Each product
+	 * is assigned to the label whose mean overall score is closest to its own, and
+	 * the accuracy of this assignment is normalized against a uniform guess.
+	 * @return The weight of the attribute, between 0.0 (terrible indicator of overall score) 
+	 * and 1.0 (great indicator of overall score).
+	 */
+	double getAttributeWeight()
+	{
+		Map<String, Double> labelCentroids = getLabelMeanScores();
+		int numClusters = labelCentroids.size();
+		
+		// If there is only one cluster, there cannot be any relationship between
+		// clusters and the overall score
+		if(numClusters <= 1)
+		{
+			return 0.0;
+		}
+		
+		int[] centroidLabels = new int[numClusters];
+		double[] centroids = new double[numClusters];
+		int index = 0;
+		for(Map.Entry<String, Double> labelCentroid : labelCentroids.entrySet())
+		{
+			centroidLabels[index] = aColumn.getCode(labelCentroid.getKey());
+			centroids[index] = labelCentroid.getValue();
+			index++;
+		}
+		
+		int correctCount = 0;
+		for(int pair = 0; pair < aPairCount; pair++)
+		{
+			double minimumDistance = Double.MAX_VALUE;
+			int centroidLabel = AttributeColumn.NO_LABEL;
+			for(int centroid = 0; centroid < numClusters; centroid++)
+			{
+				double distance = Math.abs(aPairScores[pair] - centroids[centroid]);
+				if(distance < minimumDistance)
+				{
+					minimumDistance = distance;
+					centroidLabel = centroidLabels[centroid];
+				}
+			}
+			if(centroidLabel == aPairLabels[pair])
+			{
+				correctCount++;
+			}
+		}
+		
+		double accuracy = correctCount / (double) aPairCount;
+		double uniformAccuracy = 1.0 / numClusters;
+		return (accuracy - uniformAccuracy) / ( 1 - uniformAccuracy);
+	}
+
+	/*
+	 * The labels that have at least one overall score, in the iteration order of
+	 * a set filled in product order.
+	 */
+	private Set<String> getScoredLabelNames()
+	{
+		Set<String> labels = new HashSet<String>();
+		for(int label : aScoredLabels)
+		{
+			labels.add(aColumn.getLabelName(label));
+		}
+		return labels;
+	}
+}
@@ -12,25 +12,34 @@
  */
 package ca.mcgill.cs.creco.logic;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.ui.Model;
 
 import ca.mcgill.cs.creco.data.Category;
-import ca.mcgill.cs.creco.data.IDataStore;
+import ca.mcgill.cs.creco.data.DataVersion;
+import ca.mcgill.cs.creco.data.IDataStoreListener;
+import ca.mcgill.cs.creco.data.IReloadableDataStore;
 import ca.mcgill.cs.creco.data.Product;
-import ca.mcgill.cs.creco.data.TypedValue;
-import ca.mcgill.cs.creco.logic.search.ICategorySearch;
+import ca.mcgill.cs.creco.logic.metrics.Metrics;
+import ca.mcgill.cs.creco.logic.search.CategorySearch;
+import ca.mcgill.cs.creco.logic.search.Completion;
+import ca.mcgill.cs.creco.logic.search.CompletionIndex;
 import ca.mcgill.cs.creco.logic.search.ProductSort;
 import ca.mcgill.cs.creco.web.model.ExplanationView;
 import ca.mcgill.cs.creco.web.model.FeatureView;
@@ -39,153 +48,145 @@ import ca.mcgill.cs.creco.web.model.UserData;
 import ca.mcgill.cs.creco.web.model.UserFeaturesModel;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonObject;
 /**
  * Default implementation of the service layer.
+ * 
+ * Everything precomputed from the data (the scored attributes, the search index,
+ * the top products and the completions) is built for one version of the data 
+ * and kept with it. When the data is reloaded, these structures are built for 
+ * the new version on the reloading thread and then all replace the old ones at 
+ * once. They are built from the structures of the previous version, and only 
+ * the categories and products that are not the same objects in both versions 
+ * are computed again. Each request gets the current version when it starts and uses it until 
+ * it ends, so requests in progress are not affected by a reload. The search
+ * index is the exception: there is only one, and it is updated in place with 
+ * the categories of each new version. Versions are built one at a time, so the
+ * index is never written by two threads.
+ * 
+ * The ranked products responses are cached by category and user scores. The 
+ * user scores are rounded to SCORE_QUANTUM before ranking, so that the rankings
+ * of nearly identical scores are shared. The responses of a category are dropped
+ * when a new version of the data changes it.
+ * 
+ * The time spent searching the categories and writing the ranked products is
+ * recorded in the metrics. The completions are timed by their endpoint only.
  */
 @Component
 public class ConcreteServiceFacade implements ServiceFacade
 {
 	private static final int MIN_NUMBER_OF_TYPED_LETTERS = 2;
 	private static final int NUMBER_OF_FEATURES_TO_DISPLAY = 10;
+	// The scores of the sliders are whole numbers
+	private static final double SCORE_QUANTUM = 1;
+	private static final Logger LOG = LoggerFactory.getLogger(ConcreteServiceFacade.class);
+	private static final String CATEGORY_SEARCH_TIMER = "search.categories";
+	private static final String WRITE_TIMER = "response.write";
 
 	@Autowired
-	private IDataStore aDataStore;
-
-	@Autowired
-	private ICategorySearch aCategorySearch;
+	private IReloadableDataStore aDataStore;
 
 	@Autowired
 	private ProductRanker aProductRanker;
 
 	@Autowired
-	private AttributeExtractor aAttributeExtractor;
+	private Metrics aMetrics;
 
-	@Autowired
-	private ProductSort aProductSort;
+	private volatile Services aServices;
+	
+	private final ResponseCache aResponseCache = new ResponseCache();
 
-	@Override
-	public String getCompletions(String pInput)
+	/**
+	 * Creates a facade whose dependencies are injected by Spring.
+	 */
+	public ConcreteServiceFacade()
+	{}
+
+	/*
+	 * Creates a facade outside of Spring, as in the benchmarks. init() must be called before use.
+	 */
+	ConcreteServiceFacade(IReloadableDataStore pDataStore, ProductRanker pProductRanker, Metrics pMetrics)
 	{
-		if (pInput.length() <= MIN_NUMBER_OF_TYPED_LETTERS)
-		{
-			return "";
-		}
-		String[] result_set = new String[100];
-		int pointer=0;
-		String temp = new String("");
-		int index=0;
-		JSONArray response = new JSONArray();
-		JSONObject obj= new JSONObject();
+		aDataStore = pDataStore;
+		aProductRanker = pProductRanker;
+		aMetrics = pMetrics;
+	}
 
-		for (Category category : aDataStore.getCategories())
-		{
-			if (category.getNumberOfProducts() == 0)
-			{
-				continue;
-			}
-			if (category.getName().toLowerCase().contains(pInput.toLowerCase()))
-			{
-				result_set[pointer++]=category.getName().toLowerCase();
-				result_set[pointer++]="Category";
-			}
-		}
-		Set<String> collectedbrandstillnow = new HashSet<String>();
-		Set<String> collectedtexttillnow = new HashSet<String>();
-		Set<String> brands = new HashSet<String>();
-		Set<String> textSearch = new HashSet<String>();
-		for (Product productname : aDataStore.getProducts())
+	/**
+	 * Builds the services for the current version of the data, and 
+	 * rebuilds them whenever a new version is published.
+	 * @throws IOException If the search index cannot be built.
+	 */
+	@PostConstruct
+	public void init() throws IOException
+	{
+		aDataStore.addListener(new IDataStoreListener()
 		{
-			if (productname.getName().toLowerCase().contains(pInput.toLowerCase()))
+			@Override
+			public void dataReloaded(DataVersion pVersion)
 			{
-				for (String productspace : productname.getName().toLowerCase().split(" "))
+				try
 				{
-					if (productspace.contains(pInput.toLowerCase()))
-					{
-						if (productspace.equals(productname.getBrandName().toLowerCase()))
-						{
-							if (collectedbrandstillnow.contains(productspace))
-							{
-
-							}
-							else
-							{
-								collectedbrandstillnow.add(productspace);
-								brands.add(productspace);
-							}
-						}
-						else if (collectedtexttillnow.contains(productspace) || 
-								collectedbrandstillnow.contains(productspace))
-						{
-						}
-						else
-						{
-							collectedtexttillnow.add(productspace);
-							int count = 0;
-							for (int i = 0; i < productspace.length(); i++)
-							{
-								if (Character.isDigit(productspace.charAt(i)))
-								{
-									count++;
-								}
-							}
-							if (count < 2 && !productspace.contains("(") && !productspace.contains(")"))
-							{
-								textSearch.add(productspace);
-							}								
-						}
-					}
+					update(pVersion);
+				}
+				catch(IOException e)
+				{
+					LOG.error("Could not build the services for data version " + pVersion.getNumber(), e);
 				}
 			}
+		});
+		update(aDataStore.getCurrentVersion());
+	}
+
+	/**
+	 * Closes the search index.
+	 * @throws IOException If the index cannot be closed.
+	 */
+	@PreDestroy
+	public synchronized void destroy() throws IOException
+	{
+		if(aServices != null)
+		{
+			aServices.aCategorySearch.close();
 		}
+	}
 
-		for (String brandname : brands)
+	/*
+	 * Builds and publishes the services of a version. init() and a reload can both 
+	 * update the services, so they are built one at a time, and older versions 
+	 * never replace newer ones.
+	 */
+	private synchronized void update(DataVersion pVersion) throws IOException
+	{
+		if(aServices == null || aServices.aVersion.getNumber() < pVersion.getNumber())
 		{
-			if(Arrays.asList(result_set).contains(brandname))
-			{
-				index= Arrays.asList(result_set).indexOf(brandname);
-				result_set[index+1]= result_set[index+1].concat("|Brand");
-				temp = result_set[0];
-				result_set[0]=result_set[index];
-				result_set[index]=temp;
-				temp = result_set[1];
-				result_set[1]=result_set[index+1];
-				result_set[index+1]=temp;
-			}
-			else
-			{
-				result_set[pointer++]=brandname;
-				result_set[pointer++]="Brand";
-			}
+			aServices = new Services(pVersion, aServices);
+			aResponseCache.invalidate(pVersion.getChangedCategories());
+			aResponseCache.invalidate(pVersion.getRemovedCategories());
 		}
-		for (String textname : textSearch)
+	}
+
+	/**
+	 * @return The cache of the ranked products responses.
+	 */
+	public ResponseCache getResponseCache()
+	{
+		return aResponseCache;
+	}
+
+	@Override
+	public String getCompletions(String pInput)
+	{
+		if (pInput.length() <= MIN_NUMBER_OF_TYPED_LETTERS)
 		{
-			if(Arrays.asList(result_set).contains(textname))
-			{
-				index= Arrays.asList(result_set).indexOf(textname);
-				result_set[index+1]= result_set[index+1].concat("|Product");
-				temp = result_set[0];
-				result_set[0]=result_set[index];
-				result_set[index]=temp;
-				temp = result_set[1];
-				result_set[1]=result_set[index+1];
-				result_set[index+1]=temp;
-			}
-			else
-			{
-				result_set[pointer++]=textname;
-				result_set[pointer++]="Product";
-			}
+			return "";
 		}
-		
-		
-		for(index=0;index<result_set.length;index=index+2)
+		JSONArray response = new JSONArray();
+		for(Completion completion : aServices.aCompletionIndex.getCompletions(pInput))
 		{
-			obj.put("name", result_set[index]);
-			obj.put("type", result_set[index+1]);
+			JSONObject obj = new JSONObject();
+			obj.put("name", completion.getName());
+			obj.put("type", completion.getType());
 			response.add(obj);
-			obj= new JSONObject();
 		}
 		return response.toJSONString();
 	}
@@ -193,131 +194,114 @@ public class ConcreteServiceFacade implements ServiceFacade
 	@Override
 	public Collection<Category> searchCategories(String pQuery)
 	{
-		return aCategorySearch.queryCategories(pQuery);
+		long start = System.nanoTime();
+		Collection<Category> categories = aServices.aCategorySearch.queryCategories(pQuery);
+		aMetrics.timer(CATEGORY_SEARCH_TIMER).recordSince(start);
+		return categories;
 	}
 
 	@Override
 	public Category getCategory(String pId)
 	{
-		return aDataStore.getCategory(pId);
+		return aServices.aVersion.getCategory(pId);
 	}
 
 	@Override
 	public List<RankExplanation> rankProducts(List<UserScoredAttribute> pUserScoredAttributes, String pCategoryID)
 	{
-		return aProductRanker.rankProducts(pUserScoredAttributes, aDataStore.getCategory(pCategoryID));
+		return aProductRanker.rankProducts(pUserScoredAttributes, aServices.aVersion.getCategory(pCategoryID));
+	}
+	
+	@Override
+	public List<RankExplanation> rankProducts(List<UserScoredAttribute> pUserScoredAttributes, String pCategoryID, int pK, int pOffset)
+	{
+		return aProductRanker.rankProducts(pUserScoredAttributes, aServices.aVersion.getCategory(pCategoryID), pK, pOffset);
 	}
 
 
 	@Override
 	public String sendCurrentFeatureList(String pUserFeatureList, String pCategoryId)
 	{
+		return sendCurrentFeatureList(pUserFeatureList, pCategoryId, 0, Integer.MAX_VALUE);
+	}
+	
+	@Override
+	public String sendCurrentFeatureList(String pUserFeatureList, String pCategoryId, int pOffset, int pLimit)
+	{
+		StringWriter response = new StringWriter();
+		try
+		{
+			writeCurrentFeatureList(pUserFeatureList, pCategoryId, pOffset, pLimit, ResponseFormat.EXPLAINED, new RankingState(), response);
+		}
+		catch(IOException e)
+		{
+			// A StringWriter does not throw
+			throw new IllegalStateException(e);
+		}
+		return response.toString();
+	}
+	
+	@Override
+	public void writeCurrentFeatureList(String pUserFeatureList, String pCategoryId, int pOffset, int pLimit, ResponseFormat pFormat, 
+			RankingState pState, Writer pOut) throws IOException
+	{
+		Services services = aServices;
 		UserData userFMSpec = new Gson().fromJson(pUserFeatureList, UserData.class);
 		List<UserScoredAttribute> userScoredFeaturesSpecs = new ArrayList<UserScoredAttribute>();
 		for(UserFeaturesModel userFeature: userFMSpec.getUserFeatures())
 		{			
 			String tempId = userFeature.getId();
-			ScoredAttribute sa = locateFeatureScoredAttribute(
-					aAttributeExtractor.getAttributesForCategory(pCategoryId), tempId);
+			ScoredAttribute sa = services.aAttributeExtractor.findScoredAttribute(pCategoryId, tempId);
 			if (sa != null)
 			{
-				UserScoredAttribute usa = new UserScoredAttribute(sa,userFeature.getValue());
+				double userScore = Math.round(userFeature.getValue() / SCORE_QUANTUM) * SCORE_QUANTUM;
+				UserScoredAttribute usa = new UserScoredAttribute(sa, userScore);
 				userScoredFeaturesSpecs.add(usa);
 			}
 			
 		}
 		Collections.sort(userScoredFeaturesSpecs, UserScoredAttribute.SORT_BY_USER_SCORE);
 
-		List<RankExplanation> rankedProducts = rankProducts(userScoredFeaturesSpecs, pCategoryId);
-
-		ArrayList<ProductView> products = new ArrayList<ProductView>();
-		for (RankExplanation productRankingExplanation : rankedProducts)
+		Category category = services.aVersion.getCategory(pCategoryId);
+		if(category == null)
 		{
-			ArrayList<ExplanationView> explanation = new ArrayList<ExplanationView>();
-			
-			for(RankExplanationInstance rei : productRankingExplanation.getaRankList())
-			{
-				TypedValue value = rei.getaAttributeValue();				
-				String attributeName = rei.getaAttribute().getAttributeName();
-				explanation.add(new ExplanationView(attributeName, value, rei.getaAttributeRank(), rei.getaAttribute().getUserScore()));
-			}
-			products.add(new ProductView(productRankingExplanation.getaProduct().getId(), productRankingExplanation.getaProduct().getName(),
-					productRankingExplanation.getaProduct().getUrl(), explanation, productRankingExplanation.getaProduct().getImage()));			
-		}		
-		
-		String response = "";
-		if (rankedProducts.size() > 0)
+			// An unknown category has no products to rank
+			write(new ArrayList<RankExplanation>(), userScoredFeaturesSpecs, 0, pFormat, pOut);
+			return;
+		}
+		String cacheKey = pFormat + "|" + ResponseCache.key(pCategoryId, userScoredFeaturesSpecs, pOffset, pLimit);
+		String cachedResponse = aResponseCache.get(cacheKey, category);
+		if(cachedResponse != null)
 		{
-			response = createExplainedProductsResponse(products);
-			
-		}		
+			pOut.write(cachedResponse);
+			pOut.flush();
+			return;
+		}
 		
-		return response;
+		List<RankExplanation> rankedProducts = aProductRanker.rankProducts(userScoredFeaturesSpecs, category, pLimit, pOffset, pState);
+		long start = System.nanoTime();
+		CapturingWriter out = new CapturingWriter(pOut, aResponseCache.getMaxSize());
+		write(rankedProducts, userScoredFeaturesSpecs, category.getNumberOfProducts(), pFormat, out);
+		aMetrics.timer(WRITE_TIMER).recordSince(start);
+		if(out.getCapture() != null)
+		{
+			aResponseCache.put(cacheKey, category, out.getCapture());
+		}
 	}
-
-	/**
-	 * 
-	 * @param pProducts list of products to display.
-	 * @return Create JSON response object representing the products and their explanations.
-	 */
-	private String createExplainedProductsResponse(ArrayList<ProductView> pProducts)
+	
+	private static void write(List<RankExplanation> pRankedProducts, List<UserScoredAttribute> pUserScoredAttributes, int pProductsNum, 
+			ResponseFormat pFormat, Writer pOut) throws IOException
 	{
-		JsonArray jResponse = new JsonArray();
-		
-		for (ProductView productView : pProducts)
-		{		
-			List<ExplanationView> expView = productView.getExplanation();
-			
-			JsonObject jProductObj = new JsonObject();
-			JsonArray jExplanationArray = new JsonArray();
-			
-			jProductObj.addProperty("productID", productView.getId());
-			jProductObj.addProperty("productName", productView.getName());
-			jProductObj.addProperty("productURL", productView.getUrl());
-			jProductObj.addProperty("productIMAGE", productView.getImage());		
-			
-			for(ExplanationView e : expView)
-			{
-				JsonObject jExplanationElem = new JsonObject();
-						
-				TypedValue tValue = e.getValue();
-				
-				jExplanationElem.addProperty("name", e.getName());
-				jExplanationElem.addProperty("productsNum", pProducts.size());
-				jExplanationElem.addProperty("boolean", e.getIsBoolean());
-				jExplanationElem.addProperty("rank", e.getValueRank());
-				jExplanationElem.addProperty("userScore", e.getAttrScore());
-							
-				if(e.getValueRank() == -1)
-				{
-					jExplanationElem.addProperty("isExplained", "-1");
-				}
-				else
-				{
-					jExplanationElem.addProperty("isExplained", "1");
-					
-					if(e.getIsBoolean())
-					{
-						if(tValue.getBoolean())
-						{
-							jExplanationElem.addProperty("boolValue", "True");
-
-						}
-						else
-						{
-							jExplanationElem.addProperty("boolValue", "False");
-						}
-					}
-				}
-
-				jExplanationArray.add(jExplanationElem);										
-			}						
-			jProductObj.add("explanation", jExplanationArray);		
-			jResponse.add(jProductObj);
+		if(pFormat == ResponseFormat.COMPACT)
+		{
+			ExplainedProductsWriter.writeCompact(pRankedProducts, pUserScoredAttributes, pProductsNum, pOut);
+		}
+		else
+		{
+			ExplainedProductsWriter.write(pRankedProducts, pProductsNum, pOut);
 		}
-		return jResponse.toString();
 	}
-	
+
 	/***
 	 * 
 	 * @param pUserFeatures list of scored attributes selected by the user.
@@ -364,7 +348,13 @@ public class ConcreteServiceFacade implements ServiceFacade
 	@Override
 	public ArrayList<ProductView> searchRankedFeaturesProducts(String pCategoryId, Model pModel)
 	{
-		List<Product> prodSearch = aProductSort.returnTopProducts(pCategoryId);
+		return searchRankedFeaturesProducts(pCategoryId, 0, ProductSort.DEFAULT_NUMBER_OF_PRODUCTS);
+	}
+	
+	@Override
+	public ArrayList<ProductView> searchRankedFeaturesProducts(String pCategoryId, int pOffset, int pLimit)
+	{
+		List<Product> prodSearch = aServices.aProductSort.returnTopProducts(pCategoryId, pOffset, pLimit);
 		ArrayList<ProductView> products = new ArrayList<ProductView>();
 		ArrayList<ExplanationView> emptyExplanation = new ArrayList<ExplanationView>();
 		for (Product scoredProduct : prodSearch)
@@ -379,7 +369,7 @@ public class ConcreteServiceFacade implements ServiceFacade
 	public ArrayList<FeatureView> createFeatureList(String pCategoryId)
 	{
 		ArrayList<FeatureView> specFeatures = new ArrayList<FeatureView>();
-		List<ScoredAttribute> scoredAttr = aAttributeExtractor.getAttributesForCategory(pCategoryId);
+		List<ScoredAttribute> scoredAttr = aServices.aAttributeExtractor.getAttributesForCategory(pCategoryId);
 		// Display top 10 scored attributes
 		for (int i = 0; i < scoredAttr.size(); i++)
 		{
@@ -406,4 +396,92 @@ public class ConcreteServiceFacade implements ServiceFacade
 		return specFeatures;
 	}
 	
+	/*
+	 * The services built for a version of the data, from the services of the previous
+	 * version, if any. The category search of the previous services is refreshed and
+	 * shared with them.
+	 */
+	private static final class Services
+	{
+		private final DataVersion aVersion;
+		private final CategorySearch aCategorySearch;
+		private final AttributeExtractor aAttributeExtractor;
+		private final ProductSort aProductSort;
+		private final CompletionIndex aCompletionIndex;
+
+		Services(DataVersion pVersion, Services pPrevious) throws IOException
+		{
+			aVersion = pVersion;
+			if(pPrevious == null)
+			{
+				aCategorySearch = new CategorySearch(pVersion);
+				aAttributeExtractor = new AttributeExtractor(pVersion);
+				aProductSort = new ProductSort(pVersion);
+				aCompletionIndex = new CompletionIndex(pVersion);
+			}
+			else
+			{
+				aCategorySearch = pPrevious.aCategorySearch;
+				aCategorySearch.refresh(pVersion);
+				aAttributeExtractor = new AttributeExtractor(pVersion, pPrevious.aAttributeExtractor);
+				aProductSort = new ProductSort(pVersion, pPrevious.aProductSort);
+				aCompletionIndex = new CompletionIndex(pVersion, pPrevious.aCompletionIndex);
+			}
+		}
+	}
+
+	/*
+	 * Copies what is written to a response, so that the response can be cached,
+	 * unless it is longer than the cache.
+	 */
+	private static final class CapturingWriter extends Writer
+	{
+		private final Writer aOut;
+		private final long aMaxLength;
+		private StringBuilder aCapture = new StringBuilder();
+
+		CapturingWriter(Writer pOut, long pMaxLength)
+		{
+			aOut = pOut;
+			aMaxLength = pMaxLength;
+		}
+
+		@Override
+		public void write(char[] pBuffer, int pOffset, int pLength) throws IOException
+		{
+			aOut.write(pBuffer, pOffset, pLength);
+			if(aCapture != null)
+			{
+				if(aCapture.length() + pLength > aMaxLength)
+				{
+					aCapture = null;
+				}
+				else
+				{
+					aCapture.append(pBuffer, pOffset, pLength);
+				}
+			}
+		}
+
+		@Override
+		public void flush() throws IOException
+		{
+			aOut.flush();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			aOut.close();
+		}
+
+		String getCapture()
+		{
+			if(aCapture == null)
+			{
+				return null;
+			}
+			return aCapture.toString();
+		}
+	}
 }
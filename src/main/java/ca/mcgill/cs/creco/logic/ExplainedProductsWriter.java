@@ -0,0 +1,222 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.logic;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+import ca.mcgill.cs.creco.data.Product;
+import ca.mcgill.cs.creco.data.TypedValue;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes ranked products and the explanations of their ranks as JSON, straight 
+ * from the ranking to a character stream. One JsonWriter is used for the whole 
+ * response, and no intermediate objects are built for the products or their 
+ * explanations.
+ * 
+ * The explained format is an array of products, each with an array of explanations
+ * that repeat the name and user score of the attributes. The compact format is an
+ * object of columns instead: productsNum, productID, productName, productURL and
+ * productIMAGE, then attributes, an array with the name and userScore of each
+ * scored attribute and two columns of the products: the ranks, with null where 
+ * the attribute is not explained and -1 where the product does not have it, and 
+ * the booleans, with null where the value is not a boolean. The booleans column 
+ * is left out if none of the values are booleans.
+ */
+final class ExplainedProductsWriter
+{
+	private static final int NOT_EXPLAINED = -1;
+
+	private ExplainedProductsWriter()
+	{}
+
+	/**
+	 * Writes the ranked products. Nothing is written if there are none.
+	 * @param pRankedProducts The ranked products with their explanations.
+	 * @param pProductsNum The number of products in the category, which ranks are relative to.
+	 * @param pOut The stream to write to. It is flushed but not closed.
+	 * @throws IOException If the stream cannot be written.
+	 */
+	static void write(List<RankExplanation> pRankedProducts, int pProductsNum, Writer pOut) throws IOException
+	{
+		if(pRankedProducts.isEmpty())
+		{
+			return;
+		}
+		JsonWriter writer = new JsonWriter(pOut);
+		writer.setLenient(true);
+		writer.beginArray();
+		for(RankExplanation rankedProduct : pRankedProducts)
+		{
+			Product product = rankedProduct.getaProduct();
+			writer.beginObject();
+			writer.name("productID").value(product.getId());
+			writer.name("productName").value(product.getName());
+			writer.name("productURL").value(product.getUrl());
+			writer.name("productIMAGE").value(product.getImage());
+			writer.name("explanation").beginArray();
+			for(RankExplanationInstance explanation : rankedProduct.getaRankList())
+			{
+				writeExplanation(explanation, pProductsNum, writer);
+			}
+			writer.endArray();
+			writer.endObject();
+		}
+		writer.endArray();
+		writer.flush();
+	}
+
+	/**
+	 * Writes the ranked products in the compact format. Nothing is written if there are none.
+	 * @param pRankedProducts The ranked products with their explanations.
+	 * @param pUserScoredAttributes The attributes that the products were ranked by, in the 
+	 * order of the explanations.
+	 * @param pProductsNum The number of products in the category, which ranks are relative to.
+	 * @param pOut The stream to write to. It is flushed but not closed.
+	 * @throws IOException If the stream cannot be written.
+	 */
+	static void writeCompact(List<RankExplanation> pRankedProducts, List<UserScoredAttribute> pUserScoredAttributes, int pProductsNum, 
+			Writer pOut) throws IOException
+	{
+		if(pRankedProducts.isEmpty())
+		{
+			return;
+		}
+		JsonWriter writer = new JsonWriter(pOut);
+		writer.setLenient(true);
+		writer.beginObject();
+		writer.name("productsNum").value(pProductsNum);
+		writer.name("productID").beginArray();
+		for(RankExplanation rankedProduct : pRankedProducts)
+		{
+			writer.value(rankedProduct.getaProduct().getId());
+		}
+		writer.endArray();
+		writer.name("productName").beginArray();
+		for(RankExplanation rankedProduct : pRankedProducts)
+		{
+			writer.value(rankedProduct.getaProduct().getName());
+		}
+		writer.endArray();
+		writer.name("productURL").beginArray();
+		for(RankExplanation rankedProduct : pRankedProducts)
+		{
+			writer.value(rankedProduct.getaProduct().getUrl());
+		}
+		writer.endArray();
+		writer.name("productIMAGE").beginArray();
+		for(RankExplanation rankedProduct : pRankedProducts)
+		{
+			writer.value(rankedProduct.getaProduct().getImage());
+		}
+		writer.endArray();
+
+		writer.name("attributes").beginArray();
+		for(UserScoredAttribute attribute : pUserScoredAttributes)
+		{
+			writer.beginObject();
+			writer.name("name").value(attribute.getAttributeName());
+			writer.name("userScore").value(attribute.getUserScore());
+			boolean hasBooleans = false;
+			writer.name("ranks").beginArray();
+			for(RankExplanation rankedProduct : pRankedProducts)
+			{
+				RankExplanationInstance explanation = find(rankedProduct, attribute);
+				if(explanation == null)
+				{
+					writer.nullValue();
+				}
+				else
+				{
+					writer.value(explanation.getaAttributeRank());
+					hasBooleans |= explanation.getaAttributeValue().isBoolean();
+				}
+			}
+			writer.endArray();
+			if(hasBooleans)
+			{
+				writer.name("booleans").beginArray();
+				for(RankExplanation rankedProduct : pRankedProducts)
+				{
+					RankExplanationInstance explanation = find(rankedProduct, attribute);
+					if(explanation == null || !explanation.getaAttributeValue().isBoolean())
+					{
+						writer.nullValue();
+					}
+					else
+					{
+						writer.value(explanation.getaAttributeValue().getBoolean());
+					}
+				}
+				writer.endArray();
+			}
+			writer.endObject();
+		}
+		writer.endArray();
+		writer.endObject();
+		writer.flush();
+	}
+
+	/*
+	 * The explanations of a product are few, so a linear search is enough.
+	 */
+	private static RankExplanationInstance find(RankExplanation pRankedProduct, UserScoredAttribute pAttribute)
+	{
+		for(RankExplanationInstance explanation : pRankedProduct.getaRankList())
+		{
+			if(explanation.getaAttribute() == pAttribute)
+			{
+				return explanation;
+			}
+		}
+		return null;
+	}
+
+	private static void writeExplanation(RankExplanationInstance pExplanation, int pProductsNum, JsonWriter pWriter) throws IOException
+	{
+		TypedValue value = pExplanation.getaAttributeValue();
+		int rank = pExplanation.getaAttributeRank();
+		pWriter.beginObject();
+		pWriter.name("name").value(pExplanation.getaAttribute().getAttributeName());
+		pWriter.name("productsNum").value(pProductsNum);
+		pWriter.name("boolean").value(value.isBoolean());
+		pWriter.name("rank").value(rank);
+		pWriter.name("userScore").value(pExplanation.getaAttribute().getUserScore());
+		if(rank == NOT_EXPLAINED)
+		{
+			pWriter.name("isExplained").value("-1");
+		}
+		else
+		{
+			pWriter.name("isExplained").value("1");
+			if(value.isBoolean())
+			{
+				if(value.getBoolean())
+				{
+					pWriter.name("boolValue").value("True");
+				}
+				else
+				{
+					pWriter.name("boolValue").value("False");
+				}
+			}
+		}
+		pWriter.endObject();
+	}
+}
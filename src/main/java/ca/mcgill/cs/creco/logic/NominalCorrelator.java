@@ -15,26 +15,15 @@
  */
 package ca.mcgill.cs.creco.logic;
 
-import java.util.AbstractMap.SimpleEntry;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
 
-import ca.mcgill.cs.creco.data.Attribute;
 import ca.mcgill.cs.creco.data.Category;
-import ca.mcgill.cs.creco.data.Product;
 
 /**
  * Computes how well nominal attributes correspond to a product's overall score.
  */
 public class NominalCorrelator 
 {
-
-	private static final String OVERALL_SCORE_ATTRIBUTE_ID = "254";
 	
 	private Category aCategory;
 	
@@ -55,26 +44,7 @@ public class NominalCorrelator
 	 */
 	public Map<String, Double> getLabelMeanScores(String pFirstAttributeId)
 	{
-		Map<String, Double> labelScores = new HashMap<String, Double>();
-		
-		List<Entry<String, Double>> labelScorePairs = getLabelScorePairs(pFirstAttributeId);
-		
-		for (String uniqueLabel : getUniqueLabels(labelScorePairs))
-		{
-			int labelCount = 0;
-			double scoreSum = 0;
-			
-			for (Entry<String, Double> labelScorePair : labelScorePairs)
-			{
-				if (labelScorePair.getKey().equals(uniqueLabel))
-				{
-					labelCount++;
-					scoreSum += labelScorePair.getValue();
-				}
-			}
-			labelScores.put(uniqueLabel, scoreSum / labelCount);
-		}
-		return labelScores;
+		return AttributeStatistics.compute(aCategory.getColumns(), pFirstAttributeId).getLabelMeanScores();
 	}
 	
 	/**
@@ -88,112 +58,6 @@ public class NominalCorrelator
 	 */
 	public double computeAttributeWeight(String pFirstAttributeId)
 	{
-		Map<String, Double> labelCentroids = getLabelMeanScores(pFirstAttributeId);
-		int numClusters = labelCentroids.entrySet().size();
-		
-		// If there is only one cluster, there cannot be any relationship between
-		// clusters and the overall score
-		if (numClusters <= 1)
-		{
-			return 0.0;
-		}
-		
-		int correctCount = 0;
-		int totalCount = 0;
-		
-		for (Entry<String, Double> labelScorePair : getLabelScorePairs(pFirstAttributeId))
-		{
-			double minimumDistance = Double.MAX_VALUE;
-			String centroidLabel = "";
-			
-			for (Entry<String, Double> labelCentroid : labelCentroids.entrySet())
-			{
-				double distance = Math.abs(labelScorePair.getValue() - labelCentroid.getValue());
-				
-				if (distance < minimumDistance)
-				{
-					minimumDistance = distance;
-					centroidLabel = labelCentroid.getKey();
-				}
-			}
-			
-			if (centroidLabel.equals(labelScorePair.getKey()))
-			{
-				correctCount++;
-			}
-			totalCount++;
-		}
-		
-		double accuracy = correctCount / (double) totalCount;
-		double uniformAccuracy = 1.0 / numClusters;
-		double normalizedWeight = (accuracy - uniformAccuracy) / ( 1 - uniformAccuracy);
-
-		return normalizedWeight;
-	}
-	
-	/**
-	 * Given some nominal attribute, gets a list of products which have that nominal
-	 * attribute and have an overall score. Assembles a list of nominal label and score
-	 * pairs.
-	 * @param pFirstAttributeId The nominal attribute.
-	 * @return A list of nominal value and overall score pairs.
-	 */
-	private List<Entry<String, Double>> getLabelScorePairs(String pFirstAttributeId)
-	{
-		List<Entry<String, Double>> labelScorePairs = new ArrayList<Entry<String, Double>>();
-		
-		for (Product product : aCategory.getProducts())
-		{
-			Attribute label = product.getAttribute(pFirstAttributeId);
-			Attribute score = product.getAttribute(OVERALL_SCORE_ATTRIBUTE_ID);
-			
-			// Skip the product if it's missing either attribute
-			if( missing(label) || missing(score))
-			{
-				continue;
-			}
-			
-			if (label.getTypedValue().isString() && score.getTypedValue().isNumeric())
-			{
-				String entryLabel = label.getTypedValue().getString();
-				Double entryScore = score.getTypedValue().getNumeric();
-				
-				labelScorePairs.add(new SimpleEntry<String, Double>(entryLabel, entryScore));
-			}
-			
-			if (label.getTypedValue().isBoolean() && score.getTypedValue().isNumeric())
-			{
-				String entryLabel = String.valueOf(label.getTypedValue().getBoolean());
-				Double entryScore = score.getTypedValue().getNumeric();
-				
-				labelScorePairs.add(new SimpleEntry<String, Double>(entryLabel, entryScore));
-			}
-		}
-		
-		return labelScorePairs;
-	}
-	
-	/**
-	 * Given a list of nominal value and score pairs, returns the set of all nominal
-	 * values possible.
-	 * @param pLabelScorePairs The list of nominal label and score pairs.
-	 * @return The set of nominal labels.
-	 */
-	private Set<String> getUniqueLabels(List<Entry<String, Double>> pLabelScorePairs)
-	{
-		Set<String> uniqueLabels = new HashSet<String>();
-		
-		for (Entry<String, Double> labelScorePair : pLabelScorePairs)
-		{
-			uniqueLabels.add(labelScorePair.getKey());
-		}
-		
-		return uniqueLabels;
+		return AttributeStatistics.compute(aCategory.getColumns(), pFirstAttributeId).getAttributeWeight();
 	}
-	
-	private static boolean missing( Attribute pAttribute )
-	{
-		return pAttribute == null || pAttribute.getTypedValue().isNull() || pAttribute.getTypedValue().isNA();
-	}
-	
 }
@@ -15,15 +15,7 @@
  */
 package ca.mcgill.cs.creco.logic;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
-
-import ca.mcgill.cs.creco.data.Attribute;
 import ca.mcgill.cs.creco.data.Category;
-import ca.mcgill.cs.creco.data.Product;
 
 /**
  * Computes the correlation between numeric attributes of products within a category.
@@ -31,7 +23,6 @@ import ca.mcgill.cs.creco.data.Product;
  */
 public class NumericCorrelator 
 {
-	private static final String OVERALL_SCORE_ATTRIBUTE_ID = "254";
 	private static final double LESS_IS_BETTER_THRESHOLD = -0.15;
 	
 	private Category aCategory;
@@ -69,9 +60,17 @@ public class NumericCorrelator
 	 */
 	public ScoredAttribute.Direction computeAttributeDirection(String pAttributeId, double pThreshold)
 	{
-		double correlation = computeCorrelation(pAttributeId, pThreshold);
-		
-		if (correlation < LESS_IS_BETTER_THRESHOLD)
+		return directionOf(computeCorrelation(pAttributeId, pThreshold));
+	}
+	
+	/**
+	 * @param pCorrelation The correlation of an attribute with the overall score.
+	 * @return LESS_IS_BETTER if the correlation is below the LESS_IS_BETTER_THRESHOLD, 
+	 * MORE_IS_BETTER otherwise.
+	 */
+	static ScoredAttribute.Direction directionOf(double pCorrelation)
+	{
+		if (pCorrelation < LESS_IS_BETTER_THRESHOLD)
 		{
 			return ScoredAttribute.Direction.LESS_IS_BETTER;
 		}
@@ -89,7 +88,7 @@ public class NumericCorrelator
 	 */
 	public double computeCorrelation(String pAttributeId)
 	{
-		return computeCorrelation(OVERALL_SCORE_ATTRIBUTE_ID, pAttributeId, 1.0);
+		return computeCorrelation(pAttributeId, 1.0);
 	}
 	
 	/**
@@ -102,72 +101,6 @@ public class NumericCorrelator
 	 */
 	public double computeCorrelation(String pAttributeId, double pThreshold)
 	{
-		return computeCorrelation(OVERALL_SCORE_ATTRIBUTE_ID, pAttributeId, pThreshold);
-	}
-	
-	private double computeCorrelation(String pFirstAttributeId, String pSecondAttributeId, double pThreshold)
-	{
-		List<Double> firstValues = new ArrayList<Double>();
-		List<Double> secondValues = new ArrayList<Double>();
-		
-		double existingCount = 0.0;
-		double nonNumericCount = 0.0;
-		
-		for (Product product : aCategory.getProducts())
-		{
-			Attribute firstAttribute = product.getAttribute(pFirstAttributeId);
-			Attribute secondAttribute = product.getAttribute(pSecondAttributeId);
-			
-			// Skip the product if it's missing either attribute
-			if( missing(firstAttribute) || missing(secondAttribute))
-			{
-				continue;
-			}
-			//add if the value is not missing
-			existingCount++;
-			//if the attribute is not numeric keep count
-			if (!firstAttribute.getTypedValue().isNumeric() ||
-					!secondAttribute.getTypedValue().isNumeric())
-			{
-				nonNumericCount++;
-			}
-			//else add the values to the correlation array
-			else
-			{
-				double firstValue = firstAttribute.getTypedValue().getNumeric();
-				double secondValue = secondAttribute.getTypedValue().getNumeric();
-				
-				if (firstValue > 0)
-				{
-					firstValues.add(firstValue);
-					secondValues.add(secondValue);
-				}
-			}
-			
-			
-		}
-		double ratio = 1 - nonNumericCount/existingCount;
-		if(ratio < pThreshold)
-		{
-			throw new IllegalArgumentException("Threshold for correlation was not met: "
-					+ ratio + "<" + pThreshold + " count: " + existingCount + " NNcount: " + nonNumericCount);
-		}
-		
-		double[] firstArray = ArrayUtils.toPrimitive(firstValues.toArray(new Double[0]));
-		double[] secondArray = ArrayUtils.toPrimitive(secondValues.toArray(new Double[0]));
-		
-		PearsonsCorrelation pearsonsCorrelation = new PearsonsCorrelation();
-		
-		if(firstArray.length < 2 || secondArray.length < 2)
-		{
-			return 0;
-		}
-		return pearsonsCorrelation.correlation(firstArray, secondArray);
-	}
-	
-	private static boolean missing( Attribute pAttribute )
-	{
-		return pAttribute == null || pAttribute.getTypedValue().isNull() || pAttribute.getTypedValue().isNA();
+		return AttributeStatistics.compute(aCategory.getColumns(), pAttributeId).getCorrelation(pThreshold);
 	}
-	
-}
\ No newline at end of file
+}
@@ -16,34 +16,73 @@
 package ca.mcgill.cs.creco.logic;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
-import ca.mcgill.cs.creco.data.Attribute;
 import ca.mcgill.cs.creco.data.Category;
-import ca.mcgill.cs.creco.data.IDataStore;
-import ca.mcgill.cs.creco.data.Product;
-import ca.mcgill.cs.creco.logic.ScoredAttribute.Direction;
+import ca.mcgill.cs.creco.data.CategoryColumns;
+import ca.mcgill.cs.creco.logic.metrics.LatencyHistogram;
+import ca.mcgill.cs.creco.logic.metrics.Metrics;
 
 /**
  * Ranks a collection of products according to a given set of attributes.
+ * Stateless: the same ranker is used for every version of the data. The scores
+ * of a user's last ranking can be kept in a RankingState, so that the next ranking
+ * only rescores the attributes whose weight changed.
+ * The time spent in each stage of a ranking is recorded in the metrics for one
+ * call in SAMPLE_INTERVAL: timing a stage costs about as much as ranking a few
+ * products, so timing every call would slow down the ranking of small categories.
  */
 @Component
 public class ProductRanker 
 {
-	private static final double MISSING_ATTRIBUTE_PENALTY = -1.0;
-	private static final int HUNDRED = 100;
-	@Autowired
-	private IDataStore aDataStore;
+	/** Name of the timer of the scoring of all the products of a category. */
+	public static final String SCORE_TIMER = "ranking.score";
+	/** Name of the timer of the scoring of the attributes whose weight changed since the last ranking. */
+	public static final String INCREMENTAL_SCORE_TIMER = "ranking.score.incremental";
+	/** Name of the timer of the selection of the best scored products. */
+	public static final String SELECT_TIMER = "ranking.select";
+	/** Name of the timer of the explanation of the ranks of the returned products. */
+	public static final String EXPLAIN_TIMER = "ranking.explain";
+	/** Name of the distribution of the number of products ranked per call. */
+	public static final String CATEGORY_SIZE_DISTRIBUTION = "ranking.categorySize";
+	/** Name of the distribution of the number of attributes ranked by per call. */
+	public static final String ATTRIBUTES_DISTRIBUTION = "ranking.attributes";
+	/** One ranking call in this number is recorded in the metrics. A power of two. */
+	public static final int SAMPLE_INTERVAL = 64;
+	
+	private final LatencyHistogram aScoreTimer;
+	private final LatencyHistogram aIncrementalScoreTimer;
+	private final LatencyHistogram aSelectTimer;
+	private final LatencyHistogram aExplainTimer;
+	private final LatencyHistogram aCategorySizes;
+	private final LatencyHistogram aAttributeCounts;
+	// Not synchronized: a lost increment only moves the sampling by one call
+	private int aCalls;
+	
+	/**
+	 * Creates a ranker that records its metrics in an instance of its own.
+	 */
+	public ProductRanker()
+	{
+		this(new Metrics());
+	}
+	
+	/**
+	 * @param pMetrics The metrics to record the stages of the rankings in.
+	 */
 	@Autowired
-	private AttributeExtractor aAttributeExtractor;
+	public ProductRanker(Metrics pMetrics)
+	{
+		aScoreTimer = pMetrics.timer(SCORE_TIMER);
+		aIncrementalScoreTimer = pMetrics.timer(INCREMENTAL_SCORE_TIMER);
+		aSelectTimer = pMetrics.timer(SELECT_TIMER);
+		aExplainTimer = pMetrics.timer(EXPLAIN_TIMER);
+		aCategorySizes = pMetrics.distribution(CATEGORY_SIZE_DISTRIBUTION);
+		aAttributeCounts = pMetrics.distribution(ATTRIBUTES_DISTRIBUTION);
+	}
 
 	/**
 	 * Ranks a collection of products according to a given set of attributes.
@@ -53,120 +92,150 @@ public class ProductRanker
 	 */
 	public List<RankExplanation> rankProducts(List<UserScoredAttribute> pUserScoredAttributes, Category pCategory)
 	{
-		Map<Product, Double> scoredProducts = new HashMap<Product, Double>();
-		Collection<Product> products = pCategory.getProducts();
-		// Initialize the map with scores of 0 for all products
-		for (Product product : products)
+		return rankProducts(pUserScoredAttributes, pCategory, pCategory.getNumberOfProducts(), 0);
+	}
+	
+	/**
+	 * Ranks the products of a category according to a given set of attributes, and returns
+	 * only one page of the ranking. Only the best pOffset + pK products are kept while scoring, 
+	 * and explanations are built only for the returned products.
+	 * @param pUserScoredAttributes The set of attributes used to rank the products.
+	 * @param pCategory The category of products being ranked.
+	 * @param pK The maximum number of products to return.
+	 * @param pOffset The number of best ranked products to skip.
+	 * @return The products ranked from pOffset to pOffset + pK - 1, ordered from highest to lowest score.
+	 * Products with the same score are ordered as in the category.
+	 */
+	public List<RankExplanation> rankProducts(List<UserScoredAttribute> pUserScoredAttributes, Category pCategory, int pK, int pOffset)
+	{
+		return rankProducts(pUserScoredAttributes, pCategory, pK, pOffset, new RankingState());
+	}
+	
+	/**
+	 * Ranks one page of the products of a category as rankProducts(pUserScoredAttributes, pCategory, pK, pOffset)
+	 * does, starting from the scores of the last ranking of the same user. If the last ranking was of the same
+	 * category for the same attributes, only the attributes whose weight changed are rescored. The scores
+	 * then differ from a full ranking by rounding only, which can change the order of equally scored products.
+	 * @param pUserScoredAttributes The set of attributes used to rank the products.
+	 * @param pCategory The category of products being ranked.
+	 * @param pK The maximum number of products to return.
+	 * @param pOffset The number of best ranked products to skip.
+	 * @param pState The scores of the last ranking of the user, which are replaced by the scores of this ranking.
+	 * @return The products ranked from pOffset to pOffset + pK - 1, ordered from highest to lowest score.
+	 */
+	public List<RankExplanation> rankProducts(List<UserScoredAttribute> pUserScoredAttributes, Category pCategory, int pK, int pOffset, 
+			RankingState pState)
+	{
+		boolean sampled = (aCalls++ & (SAMPLE_INTERVAL - 1)) == 0;
+		CategoryColumns columns = pCategory.getColumns();
+		List<RankExplanation> prodExp = new ArrayList<RankExplanation>();
+		int[] top;
+		long scored;
+		long selected;
+		synchronized (pState)
 		{
-			scoredProducts.put(product, 0.0);
-		}
-		
-		for (UserScoredAttribute userScoredAttribute : pUserScoredAttributes)
-		{	
-			for (Product product : products)
+			long start = time(sampled);
+			double[] scores = pState.score(pUserScoredAttributes, columns);
+			scored = time(sampled);
+			if (sampled)
 			{
-				double updateValue = 0;
-				
-				Attribute attribute = product.getAttribute(userScoredAttribute.getAttributeID());
-				
-				if (attribute == null)
-				{
-					updateValue = MISSING_ATTRIBUTE_PENALTY;
-				} 
-				else if (attribute.getTypedValue().isNumeric())
-				{
-					updateValue = numericUpdateEquation(userScoredAttribute, attribute.getTypedValue().getNumeric());
-				}
-				else if (attribute.getTypedValue().isString())
-				{
-					updateValue = stringUpdateEquation(userScoredAttribute, attribute.getTypedValue().getString());
-				}
-				else if (attribute.getTypedValue().isBoolean())
-				{
-					updateValue = stringUpdateEquation(userScoredAttribute, String.valueOf(attribute.getTypedValue().getBoolean()));
-				}
-				
-				// Update the product's score according to the attribute's value
-				scoredProducts.put(product, scoredProducts.get(product) + updateValue);
+				recordScoring(scored - start, pState.isRescored(), scores.length, pUserScoredAttributes.size());
 			}
+			
+			if (pK <= 0 || pOffset < 0 || pOffset >= scores.length)
+			{
+				return prodExp;
+			}
+			top = ScoreHeap.selectTop(scores, (int) Math.min((long) pOffset + pK, scores.length));
+			selected = time(sampled);
 		}
-
-		List<Product> sortedProducts = sortProductsByScore(scoredProducts);
-		List<RankExplanation> prodExp = new ArrayList<RankExplanation>();
-		
-		for (Product p :sortedProducts)
+		for (int i = pOffset; i < top.length; i++)
+		{
+			prodExp.add(new RankExplanation(columns.getProduct(top[i]), top[i], pUserScoredAttributes));						
+		}
+		if (sampled)
 		{
-			prodExp.add(new RankExplanation(p, pUserScoredAttributes));						
+			aSelectTimer.record(selected - scored);
+			aExplainTimer.recordSince(selected);
 		}
 		return prodExp; 	
 	}
 	
-	/**
-	 * Computes a score update depending on a numeric attribute value.
-	 * @param pUserScoredAttribute The score attribute according to which the update value will be computed.
-	 * @param pAttributeValue The numeric attribute value.
-	 * @return The score update value.
-	 */
-	private double numericUpdateEquation(UserScoredAttribute pUserScoredAttribute, double pAttributeValue)
+	private void recordScoring(long pDuration, boolean pRescored, int pCategorySize, int pAttributeCount)
 	{
-		int direction = 1;
-		if (pUserScoredAttribute.getDirection() == Direction.LESS_IS_BETTER)
+		if (pRescored)
 		{
-			direction = -1;
+			aScoreTimer.record(pDuration);
 		}
-		
-		// The attribute's correlation with the products' user score is used as a weight
-		double attributeWeight = Math.abs(pUserScoredAttribute.getUserScore());
-		
-		double normalization = 1 / pUserScoredAttribute.getMax().getNumeric();
-		
-		return direction * attributeWeight * normalization * pAttributeValue;
+		else
+		{
+			aIncrementalScoreTimer.record(pDuration);
+		}
+		aCategorySizes.record(pCategorySize);
+		aAttributeCounts.record(pAttributeCount);
 	}
 	
-	private double stringUpdateEquation(UserScoredAttribute pUserScoredAttribute, String pAttributeValue)
+	private static long time(boolean pSampled)
 	{
-		Double labelValue = pUserScoredAttribute.getLabelMeanScores().get(pAttributeValue);
-		if (labelValue == null)
+		if (pSampled)
 		{
-			labelValue = 0.0;
+			return System.nanoTime();
 		}
-		
-		double normalization = 1.0/HUNDRED;
-		
-		double attributeWeight = Math.abs(pUserScoredAttribute.getUserScore());
-		
-		return attributeWeight * normalization * labelValue;
+		return 0;
 	}
 	
 	/**
-	 * Sorts a map of products and scores, from highest scored product to lowest.
-	 * @param pScoredProducts The map of products with their corresponding scores.
-	 * @return A list sorted from highest scored product to lowest.
+	 * Scores all the products of a category. The scored attributes hold the score of 
+	 * every product, so the ranking score of a product is the sum of these columns weighted 
+	 * by the normalization and the absolute user score of their attribute, plus the penalties 
+	 * for the missing attributes. The loops are over plain arrays, which the JIT can vectorize.
+	 * @param pUserScoredAttributes The set of attributes used to score the products.
+	 * @param pColumns The columns of the category.
+	 * @return The scores of all products, indexed by their ordinal in the category.
 	 */
-	private List<Product> sortProductsByScore(Map<Product, Double> pScoredProducts)
+	static double[] scoreProducts(List<UserScoredAttribute> pUserScoredAttributes, CategoryColumns pColumns)
 	{
-		List<Map.Entry<Product, Double>> productEntries = new ArrayList<Map.Entry<Product, Double>>(pScoredProducts.entrySet());
-		
-		Collections.sort(productEntries, new ScoreComparator());
+		double[] scores = new double[pColumns.size()];
 		
-		// Place the sorted entries back into a list
-		List<Product> sortedProducts = new ArrayList<Product>();
-		for (Map.Entry<Product, Double> entry : productEntries)
-		{
-			sortedProducts.add(entry.getKey());
+		for (UserScoredAttribute userScoredAttribute : pUserScoredAttributes)
+		{	
+			ScoredAttribute scoredAttribute = userScoredAttribute.getScoredAttribute();
+			if (scoredAttribute.getColumns() != pColumns)
+			{
+				// Not scored against these columns, as for an attribute that none of the products have
+				for (int ordinal = 0; ordinal < scores.length; ordinal++)
+				{
+					scores[ordinal] += ScoredAttribute.MISSING_ATTRIBUTE_PENALTY;
+				}
+				continue;
+			}
+			
+			double[] productScores = scoredAttribute.getProductScores();
+			double weight = weight(userScoredAttribute);
+			for (int ordinal = 0; ordinal < scores.length; ordinal++)
+			{
+				scores[ordinal] += weight * productScores[ordinal];
+			}
+			
+			double[] penalties = scoredAttribute.getProductPenalties();
+			if (penalties != null)
+			{
+				for (int ordinal = 0; ordinal < scores.length; ordinal++)
+				{
+					scores[ordinal] += penalties[ordinal];
+				}
+			}
 		}
-		return sortedProducts;
+		return scores;
 	}
 	
 	/**
-	 * Comparator to sort a map of products according to their respective scores.
-	 * Sorts from highest to lowest scored product.
+	 * @param pUserScoredAttribute An attribute used to score the products.
+	 * @return The factor of the product scores of the attribute in the ranking scores.
 	 */
-	private class ScoreComparator implements Comparator<Map.Entry<Product, Double>>
+	static double weight(UserScoredAttribute pUserScoredAttribute)
 	{
-		public int compare(Map.Entry<Product, Double> pEntry1, Map.Entry<Product, Double> pEntry2) 
-        {
-            return -pEntry1.getValue().compareTo(pEntry2.getValue());
-        }
+		// The attribute's correlation with the products' user score is used as a weight
+		return Math.abs(pUserScoredAttribute.getUserScore()) * pUserScoredAttribute.getScoredAttribute().getScoreNormalization();
 	}
 }
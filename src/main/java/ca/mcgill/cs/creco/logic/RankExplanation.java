@@ -3,8 +3,6 @@ package ca.mcgill.cs.creco.logic;
 import java.util.ArrayList;
 import java.util.List;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import ca.mcgill.cs.creco.data.Product;
 
@@ -14,7 +12,6 @@ import ca.mcgill.cs.creco.data.Product;
  */
 public class RankExplanation
 {		
-	private static final Logger LOG = LoggerFactory.getLogger(RankExplanation.class);
 	private Product aProduct;
 	//private Category aCategory; 
 	private List<RankExplanationInstance> aRankList;
@@ -22,28 +19,21 @@ public class RankExplanation
 	/**
 	 * 
 	 * @param pProduct product to provide explanation to.
-	 * @param pCategory category that the product belongs to.
+	 * @param pOrdinal ordinal of the product in the columns of its category.
 	 * @param pUserScoredAttributes attribute selected by the user.
 	 */
-	public RankExplanation(Product pProduct, List<UserScoredAttribute> pUserScoredAttributes)
+	public RankExplanation(Product pProduct, int pOrdinal, List<UserScoredAttribute> pUserScoredAttributes)
 	{
 		aProduct = pProduct;
-		aRankList = new ArrayList<RankExplanationInstance>();
+		aRankList = new ArrayList<RankExplanationInstance>(pUserScoredAttributes.size());
 		
 		for(UserScoredAttribute sa : pUserScoredAttributes)
 		{
-			RankExplanationInstance rei = null;
-			try
+			// Values that cannot be ranked are not explained
+			if(sa.getProductRank(pOrdinal) != ScoredAttribute.RANK_UNRANKED)
 			{
-				rei = new RankExplanationInstance(pProduct, sa);
-				aRankList.add(rei);
+				aRankList.add(new RankExplanationInstance(pProduct, pOrdinal, sa));
 			}
-			catch(IllegalArgumentException iae)
-			{
-				LOG.info("No ranking for Attribute: " + sa.getAttributeID()+
-						" in Product: " + pProduct.getId());
-			}
-			
 		}
 		
 	}
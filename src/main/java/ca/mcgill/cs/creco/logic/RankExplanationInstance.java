@@ -37,11 +37,11 @@ public class RankExplanationInstance
 	private Product aProduct;
 	
 	/**
-	 * @param pScoredAttribute the explained attribute 
 	 * @param pProduct product to provide explanation to
-	 * @throws 
+	 * @param pOrdinal ordinal of the product in the columns of its category
+	 * @param pUserScoredAttribute the explained attribute 
 	 */
-	public RankExplanationInstance(Product pProduct, UserScoredAttribute pUserScoredAttribute) throws IllegalArgumentException
+	public RankExplanationInstance(Product pProduct, int pOrdinal, UserScoredAttribute pUserScoredAttribute)
 	{
 		aProduct  = pProduct;
 		aUserScoredAttribute = pUserScoredAttribute;
@@ -51,12 +51,8 @@ public class RankExplanationInstance
 		if(attribute != null)
 		{
 			aAttributeValue = attribute.getTypedValue();
-			aAttributeRank = pUserScoredAttribute.getValueRank(aAttributeValue);
+			aAttributeRank = pUserScoredAttribute.getProductRank(pOrdinal);
 		}	
-		else
-		{
-			aAttributeRank = -1;
-		}		
 	}
 	
 	/**
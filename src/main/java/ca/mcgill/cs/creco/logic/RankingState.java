@@ -0,0 +1,148 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.logic;
+
+import java.io.Serializable;
+import java.util.List;
+
+import ca.mcgill.cs.creco.data.CategoryColumns;
+
+/**
+ * The scores of the products of the last ranking of a user, kept between requests
+ * so that moving a slider does not rescore every product for every attribute. If
+ * the next ranking is of the same category for the same attributes, only the
+ * attributes whose weight changed are rescored, by adding the change of their
+ * weighted score to the total of every product.
+ *
+ * The additions round differently from a full scoring: products whose scores are
+ * equal can come in a different order than in a full ranking, and the products are
+ * fully rescored every MAX_INCREMENTAL_UPDATES updates to keep the scores from drifting.
+ *
+ * One state is kept per user session. It is not kept when the session is
+ * serialized, and the next ranking rescores every product.
+ */
+public final class RankingState implements Serializable
+{
+	/** The number of incremental updates after which the products are fully rescored. */
+	public static final int MAX_INCREMENTAL_UPDATES = 32;
+
+	private static final long serialVersionUID = 1L;
+
+	private transient CategoryColumns aColumns;
+	private transient ScoredAttribute[] aAttributes;
+	private transient double[] aWeights;
+	private transient double[] aScores;
+	private transient int aUpdates;
+	private transient boolean aRescored;
+
+	/**
+	 * Scores the products of a category, incrementally if possible. The caller must
+	 * hold the lock of this state while it uses the scores.
+	 * @param pUserScoredAttributes The set of attributes used to score the products.
+	 * @param pColumns The columns of the category.
+	 * @return The scores of all products, indexed by their ordinal in the category.
+	 * They are kept by this state and changed by the next ranking.
+	 */
+	double[] score(List<UserScoredAttribute> pUserScoredAttributes, CategoryColumns pColumns)
+	{
+		aRescored = !update(pUserScoredAttributes, pColumns);
+		if(aRescored)
+		{
+			aColumns = pColumns;
+			aAttributes = new ScoredAttribute[pUserScoredAttributes.size()];
+			aWeights = new double[aAttributes.length];
+			for(int i = 0; i < aAttributes.length; i++)
+			{
+				aAttributes[i] = pUserScoredAttributes.get(i).getScoredAttribute();
+				aWeights[i] = ProductRanker.weight(pUserScoredAttributes.get(i));
+			}
+			aScores = ProductRanker.scoreProducts(pUserScoredAttributes, pColumns);
+			aUpdates = 0;
+		}
+		return aScores;
+	}
+
+	/**
+	 * @return True if the products were fully rescored by the last call to score.
+	 */
+	boolean isRescored()
+	{
+		return aRescored;
+	}
+
+	/*
+	 * Adds the change of the weighted scores of the attributes to the scores of the products,
+	 * if they are the same attributes as in the last ranking. The attributes can come in any
+	 * order, as the list is sorted by user score.
+	 */
+	private boolean update(List<UserScoredAttribute> pUserScoredAttributes, CategoryColumns pColumns)
+	{
+		if(pColumns != aColumns || pUserScoredAttributes.size() != aAttributes.length || aUpdates >= MAX_INCREMENTAL_UPDATES)
+		{
+			return false;
+		}
+		int[] previous = new int[aAttributes.length];
+		boolean[] matched = new boolean[aAttributes.length];
+		for(int i = 0; i < previous.length; i++)
+		{
+			previous[i] = find(pUserScoredAttributes.get(i).getScoredAttribute(), matched);
+			if(previous[i] < 0)
+			{
+				return false;
+			}
+			matched[previous[i]] = true;
+		}
+
+		ScoredAttribute[] attributes = new ScoredAttribute[aAttributes.length];
+		double[] weights = new double[aWeights.length];
+		boolean changed = false;
+		for(int i = 0; i < attributes.length; i++)
+		{
+			attributes[i] = aAttributes[previous[i]];
+			weights[i] = ProductRanker.weight(pUserScoredAttributes.get(i));
+			double change = weights[i] - aWeights[previous[i]];
+			// As in a full scoring, the weight of an attribute not scored against these columns does not count
+			if(change != 0 && attributes[i].getColumns() == pColumns)
+			{
+				double[] productScores = attributes[i].getProductScores();
+				for(int ordinal = 0; ordinal < aScores.length; ordinal++)
+				{
+					aScores[ordinal] += change * productScores[ordinal];
+				}
+				changed = true;
+			}
+		}
+		aAttributes = attributes;
+		aWeights = weights;
+		if(changed)
+		{
+			aUpdates++;
+		}
+		return true;
+	}
+
+	private int find(ScoredAttribute pAttribute, boolean[] pMatched)
+	{
+		for(int i = 0; i < aAttributes.length; i++)
+		{
+			if(!pMatched[i] && aAttributes[i] == pAttribute)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,303 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.logic;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.mcgill.cs.creco.data.Category;
+
+/**
+ * A bounded cache of the ranked products responses, so that the users who
+ * submit the same feature scores for a category share one ranking.
+ *
+ * The cache is a segmented LRU: a response enters a probationary segment, and
+ * moves to a protected segment if it is requested again. The least recently
+ * used responses of the protected segment go back to the probationary segment
+ * when it is full, and responses are evicted from the probationary segment
+ * first, so that popular responses survive a burst of one-off requests. The
+ * size of the cache is the total length of the responses it holds.
+ *
+ * A response is only returned for the category object it was computed from:
+ * once a category changes in a new version of the data, its responses are
+ * no longer used, and invalidate() can be called to free them. Thread-safe.
+ */
+public final class ResponseCache
+{
+	/** System property holding the maximum total length of the cached responses, in characters. */
+	public static final String MAX_SIZE_PROPERTY = "creco.cache.maxSize";
+	private static final int DEFAULT_MAX_SIZE = 8 * 1024 * 1024;
+	private static final int PROTECTED_PERCENT = 80;
+	private static final int PERCENT = 100;
+	private static final int INITIAL_CAPACITY = 16;
+	private static final float LOAD_FACTOR = 0.75f;
+
+	private final long aMaxSize;
+	private final long aMaxProtectedSize;
+	// Both in access order, least recently used first
+	private final LinkedHashMap<String, Entry> aProbation = new LinkedHashMap<String, Entry>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+	private final LinkedHashMap<String, Entry> aProtected = new LinkedHashMap<String, Entry>(INITIAL_CAPACITY, LOAD_FACTOR, true);
+	private long aProbationSize;
+	private long aProtectedSize;
+	private long aHits;
+	private long aMisses;
+	private long aEvictions;
+	private long aInvalidations;
+
+	/**
+	 * Creates a cache whose size is given by the MAX_SIZE_PROPERTY system property.
+	 */
+	public ResponseCache()
+	{
+		this(Integer.getInteger(MAX_SIZE_PROPERTY, DEFAULT_MAX_SIZE));
+	}
+
+	/**
+	 * @param pMaxSize The maximum total length of the cached responses, in characters.
+	 * 0 disables the cache.
+	 */
+	public ResponseCache(long pMaxSize)
+	{
+		aMaxSize = pMaxSize;
+		aMaxProtectedSize = pMaxSize * PROTECTED_PERCENT / PERCENT;
+	}
+
+	/**
+	 * Builds the key of a response from the parameters of the ranking. The user scores
+	 * must already be quantized, and sorted in the order used for the ranking.
+	 * @param pCategoryId The id of the ranked category.
+	 * @param pUserScoredAttributes The attributes scored by the user.
+	 * @param pOffset The index of the first ranked product in the response.
+	 * @param pLimit The maximum number of products in the response.
+	 * @return A key equal to the keys of the same rankings.
+	 */
+	public static String key(String pCategoryId, List<UserScoredAttribute> pUserScoredAttributes, int pOffset, int pLimit)
+	{
+		StringBuilder key = new StringBuilder(pCategoryId);
+		key.append('|').append(pOffset).append('|').append(pLimit);
+		for(UserScoredAttribute attribute : pUserScoredAttributes)
+		{
+			key.append('|').append(attribute.getAttributeID()).append('=').append(attribute.getUserScore());
+		}
+		return key.toString();
+	}
+
+	/**
+	 * @param pKey The key of the response.
+	 * @param pCategory The current version of the ranked category.
+	 * @return The cached response for this version of the category, or null if there is none.
+	 */
+	public synchronized String get(String pKey, Category pCategory)
+	{
+		Entry entry = aProtected.get(pKey);
+		if(entry == null)
+		{
+			entry = aProbation.remove(pKey);
+			if(entry != null)
+			{
+				aProbationSize -= entry.size();
+				if(entry.aCategory == pCategory)
+				{
+					promote(pKey, entry);
+				}
+			}
+		}
+		if(entry == null || entry.aCategory != pCategory)
+		{
+			aMisses++;
+			return null;
+		}
+		aHits++;
+		return entry.aResponse;
+	}
+
+	/**
+	 * Caches a response, unless it is larger than the cache.
+	 * @param pKey The key of the response.
+	 * @param pCategory The version of the ranked category that the response was computed from.
+	 * @param pResponse The response.
+	 */
+	public synchronized void put(String pKey, Category pCategory, String pResponse)
+	{
+		remove(pKey);
+		Entry entry = new Entry(pCategory, pResponse);
+		if(entry.size() > aMaxSize)
+		{
+			return;
+		}
+		aProbation.put(pKey, entry);
+		aProbationSize += entry.size();
+		while(aProbationSize + aProtectedSize > aMaxSize)
+		{
+			if(aProbation.isEmpty())
+			{
+				aProtectedSize -= removeEldest(aProtected).size();
+			}
+			else
+			{
+				aProbationSize -= removeEldest(aProbation).size();
+			}
+			aEvictions++;
+		}
+	}
+
+	/**
+	 * Removes the responses computed for some categories.
+	 * @param pCategoryIds The ids of the categories.
+	 */
+	public synchronized void invalidate(Collection<String> pCategoryIds)
+	{
+		aProbationSize -= invalidate(aProbation, pCategoryIds);
+		aProtectedSize -= invalidate(aProtected, pCategoryIds);
+	}
+
+	/**
+	 * @return The number of requests for which a response was cached.
+	 */
+	public synchronized long getHits()
+	{
+		return aHits;
+	}
+
+	/**
+	 * @return The number of requests for which no response was cached.
+	 */
+	public synchronized long getMisses()
+	{
+		return aMisses;
+	}
+
+	/**
+	 * @return The number of responses removed to make room for others.
+	 */
+	public synchronized long getEvictions()
+	{
+		return aEvictions;
+	}
+
+	/**
+	 * @return The number of responses removed because their category changed.
+	 */
+	public synchronized long getInvalidations()
+	{
+		return aInvalidations;
+	}
+
+	/**
+	 * @return The number of responses in the cache.
+	 */
+	public synchronized int getNumberOfResponses()
+	{
+		return aProbation.size() + aProtected.size();
+	}
+
+	/**
+	 * @return The maximum total length of the cached responses, in characters.
+	 */
+	public long getMaxSize()
+	{
+		return aMaxSize;
+	}
+
+	/**
+	 * @return The total length of the responses in the cache, in characters.
+	 */
+	public synchronized long getSize()
+	{
+		return aProbationSize + aProtectedSize;
+	}
+
+	/*
+	 * Moves an entry to the protected segment, and the least recently used
+	 * protected entries back to the probationary segment if needed.
+	 */
+	private void promote(String pKey, Entry pEntry)
+	{
+		aProtected.put(pKey, pEntry);
+		aProtectedSize += pEntry.size();
+		while(aProtectedSize > aMaxProtectedSize && aProtected.size() > 1)
+		{
+			Iterator<Map.Entry<String, Entry>> eldest = aProtected.entrySet().iterator();
+			Map.Entry<String, Entry> demoted = eldest.next();
+			eldest.remove();
+			aProtectedSize -= demoted.getValue().size();
+			aProbation.put(demoted.getKey(), demoted.getValue());
+			aProbationSize += demoted.getValue().size();
+		}
+	}
+
+	private void remove(String pKey)
+	{
+		Entry entry = aProbation.remove(pKey);
+		if(entry != null)
+		{
+			aProbationSize -= entry.size();
+		}
+		entry = aProtected.remove(pKey);
+		if(entry != null)
+		{
+			aProtectedSize -= entry.size();
+		}
+	}
+
+	private static Entry removeEldest(LinkedHashMap<String, Entry> pSegment)
+	{
+		Iterator<Entry> eldest = pSegment.values().iterator();
+		Entry entry = eldest.next();
+		eldest.remove();
+		return entry;
+	}
+
+	/*
+	 * Returns the total size of the removed entries.
+	 */
+	private long invalidate(LinkedHashMap<String, Entry> pSegment, Collection<String> pCategoryIds)
+	{
+		long size = 0;
+		Iterator<Entry> entries = pSegment.values().iterator();
+		while(entries.hasNext())
+		{
+			Entry entry = entries.next();
+			if(pCategoryIds.contains(entry.aCategory.getId()))
+			{
+				entries.remove();
+				size += entry.size();
+				aInvalidations++;
+			}
+		}
+		return size;
+	}
+
+	private static final class Entry
+	{
+		private final Category aCategory;
+		private final String aResponse;
+
+		Entry(Category pCategory, String pResponse)
+		{
+			aCategory = pCategory;
+			aResponse = pResponse;
+		}
+
+		long size()
+		{
+			return aResponse.length();
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.logic;
+
+/**
+ * Selects the best scored products with a bounded min-heap of product ordinals.
+ * The heap root is the worst product retained so far, so each remaining product
+ * is either rejected by a single comparison or replaces the root.
+ *
+ * A product is better than another if its score is higher, or if the scores
+ * are equal and its ordinal is lower. This is the order of a stable sort by
+ * descending score.
+ */
+final class ScoreHeap
+{
+	private ScoreHeap()
+	{}
+
+	/**
+	 * Selects the best scored products.
+	 * @param pScores The scores of the products, indexed by ordinal.
+	 * @param pCount The maximum number of products to select.
+	 * @return The ordinals of the min(pCount, pScores.length) best products,
+	 * from best to worst.
+	 */
+	static int[] selectTop(double[] pScores, int pCount)
+	{
+		int capacity = Math.max(0, Math.min(pCount, pScores.length));
+		int[] heap = new int[capacity];
+		if(capacity == 0)
+		{
+			return heap;
+		}
+		int size = 0;
+		for(int ordinal = 0; ordinal < pScores.length; ordinal++)
+		{
+			if(size < capacity)
+			{
+				heap[size] = ordinal;
+				siftUp(pScores, heap, size);
+				size++;
+			}
+			else if(isWorse(pScores, heap[0], ordinal))
+			{
+				heap[0] = ordinal;
+				siftDown(pScores, heap, 0, size);
+			}
+		}
+
+		// Repeatedly move the worst product to the end of the array
+		for(int last = size - 1; last > 0; last--)
+		{
+			int worst = heap[0];
+			heap[0] = heap[last];
+			heap[last] = worst;
+			siftDown(pScores, heap, 0, last);
+		}
+		return heap;
+	}
+
+	/*
+	 * True if product pFirst ranks after product pSecond.
+	 */
+	private static boolean isWorse(double[] pScores, int pFirst, int pSecond)
+	{
+		int comparison = Double.compare(pScores[pFirst], pScores[pSecond]);
+		return comparison < 0 || comparison == 0 && pFirst > pSecond;
+	}
+
+	private static void siftUp(double[] pScores, int[] pHeap, int pIndex)
+	{
+		int index = pIndex;
+		while(index > 0)
+		{
+			int parent = (index - 1) >>> 1;
+			if(!isWorse(pScores, pHeap[index], pHeap[parent]))
+			{
+				return;
+			}
+			swap(pHeap, index, parent);
+			index = parent;
+		}
+	}
+
+	private static void siftDown(double[] pScores, int[] pHeap, int pIndex, int pSize)
+	{
+		int index = pIndex;
+		while(true)
+		{
+			int worst = index;
+			int left = 2 * index + 1;
+			int right = left + 1;
+			if(left < pSize && isWorse(pScores, pHeap[left], pHeap[worst]))
+			{
+				worst = left;
+			}
+			if(right < pSize && isWorse(pScores, pHeap[right], pHeap[worst]))
+			{
+				worst = right;
+			}
+			if(worst == index)
+			{
+				return;
+			}
+			swap(pHeap, index, worst);
+			index = worst;
+		}
+	}
+
+	private static void swap(int[] pHeap, int pFirst, int pSecond)
+	{
+		int temp = pHeap[pFirst];
+		pHeap[pFirst] = pHeap[pSecond];
+		pHeap[pSecond] = temp;
+	}
+}
@@ -20,7 +20,7 @@
 package ca.mcgill.cs.creco.logic;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -33,9 +33,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import ca.mcgill.cs.creco.data.Attribute;
+import ca.mcgill.cs.creco.data.AttributeColumn;
 import ca.mcgill.cs.creco.data.Category;
+import ca.mcgill.cs.creco.data.CategoryColumns;
 import ca.mcgill.cs.creco.data.IDataStore;
-import ca.mcgill.cs.creco.data.Product;
 import ca.mcgill.cs.creco.data.TypedValue;
 
 /**
@@ -49,9 +50,17 @@ public class ScoredAttribute
 	
 	private static final Logger LOG = LoggerFactory.getLogger(ScoredAttribute.class);
 	
+	/** Rank of a product that does not have the attribute. */
+	public static final int RANK_NOT_AVAILABLE = -1;
+	/** Rank of a product whose value for the attribute cannot be ranked. */
+	public static final int RANK_UNRANKED = -2;
+	/** Added to the ranking score of a product that does not have the attribute, whatever its weight. */
+	public static final double MISSING_ATTRIBUTE_PENALTY = -1.0;
+	
 	private static final double CONSIDERATION_THRESHOLD = 0.8;
 	private static final double DEFAULT_MIN = 10000000;
 	private static final double DEFAULT_MAX = -10000000;
+	private static final double HUNDRED = 100;
 	
 	public static final Comparator<ScoredAttribute> SORT_BY_CORRELATION = 
 			new Comparator<ScoredAttribute>() 
@@ -162,6 +171,11 @@ public class ScoredAttribute
  	private Map<String, Double> aLabelMeanScores;
  	private Map<Double, Integer> aNumericValueRank;
  	private Map<String, Integer> aStringValueRank;
+	private int[] aProductRanks = new int[0];
+	private CategoryColumns aColumns;
+	private double[] aProductScores = new double[0];
+	private double aScoreNormalization;
+	private double[] aProductPenalties;
  	
  	private Type aAttributeMainType;
  	private Direction aDirection;
@@ -211,8 +225,9 @@ public class ScoredAttribute
 		
 		if( pCategory != null )
 		{
-			Collection<Product> products = pCategory.getProducts();
-			setStats(products);	
+			setStats(pCategory.getColumns());	
+			setProductRanks(pCategory.getColumns());
+			setProductScores(pCategory.getColumns());
 		}
 		else
 		{
@@ -221,22 +236,12 @@ public class ScoredAttribute
 		
 
 	}
-	private void setStats(Collection<Product> pProducts)
+	private void setStats(CategoryColumns pColumns)
 	{
-		ArrayList<TypedValue> values = new ArrayList<TypedValue>();
-		for(Product p : pProducts)
-		{
-			
-			Attribute a = p.getAttribute(aAttributeID);
-			if( a != null)
-			{
-				values.add(a.getTypedValue());
-			}
-			
-		}
-		if(values.size()>0)
+		AttributeColumn column = pColumns.getColumn(aAttributeID);
+		if(column != null && column.getPresentCount() > 0)
 		{
-			aAttributeMainType = getMainType(values);
+			aAttributeMainType = getMainType(column);
 		}
 		else
 		{
@@ -246,16 +251,16 @@ public class ScoredAttribute
 		// goes only over the products that had a non null attribute value
 		if(aAttributeMainType == Type.NUMERIC)
 		{
-			setNumericStats(values);
+			setNumericStats(AttributeStatistics.compute(pColumns, aAttributeID));
 			
 		}
 		else if(aAttributeMainType == Type.BOOLEAN)
 		{
-			setBooleanStats(values);
+			setBooleanStats(AttributeStatistics.compute(pColumns, aAttributeID));
 		}
 		else if(aAttributeMainType == Type.STRING)
 		{
-			setStringStats(values);
+			setStringStats(AttributeStatistics.compute(pColumns, aAttributeID));
 		}
 		else
 		{
@@ -264,52 +269,132 @@ public class ScoredAttribute
 		}
 	}
 	
-	private void setNumericStats(ArrayList<TypedValue> pValues)
+	/*
+	 * Looks up the rank of the value of every product of the category once, so that
+	 * explaining a ranking is an array read.
+	 */
+	private void setProductRanks(CategoryColumns pColumns)
 	{
-		SummaryStatistics ss = new SummaryStatistics();
-		double min = DEFAULT_MIN;
-		double max = DEFAULT_MAX;
-		ArrayList<Double> values = new ArrayList<Double>(pValues.size());
-		for(TypedValue tv : pValues)
+		aProductRanks = new int[pColumns.size()];
+		AttributeColumn column = pColumns.getColumn(aAttributeID);
+		for(int ordinal = 0; ordinal < aProductRanks.length; ordinal++)
+		{
+			Integer rank = null;
+			if(column == null || !column.isPresent(ordinal))
+			{
+				aProductRanks[ordinal] = RANK_NOT_AVAILABLE;
+				continue;
+			}
+			
+			if(column.isNumeric(ordinal))
+			{
+				rank = aNumericValueRank.get(column.getNumeric(ordinal));
+			}
+			else if(column.getLabel(ordinal) != AttributeColumn.NO_LABEL)
+			{
+				rank = aStringValueRank.get(column.getLabelName(column.getLabel(ordinal)));
+			}
+			
+			if(rank == null)
+			{
+				aProductRanks[ordinal] = RANK_UNRANKED;
+			}
+			else
+			{
+				aProductRanks[ordinal] = rank;
+			}
+		}
+	}
+	
+	/*
+	 * Looks up the score of the value of every product of the category once, so that
+	 * ranking is a weighted sum of these columns: the numeric value if the attribute is 
+	 * numeric, or else the mean score of the label. The products that do not have the 
+	 * attribute score 0 and get the penalty instead. The normalization of the scores is 
+	 * kept apart, so that weighting it first rounds the same as weighting every value.
+	 */
+	private void setProductScores(CategoryColumns pColumns)
+	{
+		aColumns = pColumns;
+		aProductScores = new double[pColumns.size()];
+		AttributeColumn column = pColumns.getColumn(aAttributeID);
+		
+		// Only a numeric attribute has a maximum. The numeric values of the others are not scored.
+		boolean numeric = aMax != null;
+		if(numeric)
+		{
+			aScoreNormalization = 1 / aMax.getNumeric();
+			if(aDirection == Direction.LESS_IS_BETTER)
+			{
+				aScoreNormalization = -aScoreNormalization;
+			}
+		}
+		else
+		{
+			aScoreNormalization = 1.0 / HUNDRED;
+		}
+		double[] labelScores = new double[0];
+		if(column != null)
 		{
-			if(tv.isNumeric())
+			labelScores = new double[column.getNumberOfLabels()];
+			for(int label = 0; label < labelScores.length; label++)
 			{
-				ss.addValue(tv.getNumeric());
-				if(tv.getNumeric() < min)
+				Double meanScore = aLabelMeanScores.get(column.getLabelName(label));
+				if(meanScore != null)
 				{
-					min = tv.getNumeric();
-					
+					labelScores[label] = meanScore;
 				}
-				if(tv.getNumeric() > max)
+			}
+		}
+		
+		for(int ordinal = 0; ordinal < aProductScores.length; ordinal++)
+		{
+			if(column == null || !column.isPresent(ordinal))
+			{
+				if(aProductPenalties == null)
 				{
-					max = tv.getNumeric();	
+					aProductPenalties = new double[aProductScores.length];
 				}
-				values.add(tv.getNumeric());
+				aProductPenalties[ordinal] = MISSING_ATTRIBUTE_PENALTY;
+			}
+			else if(column.isNumeric(ordinal))
+			{
+				if(numeric)
+				{
+					aProductScores[ordinal] = column.getNumeric(ordinal);
+				}
+			}
+			else if(column.getLabel(ordinal) != AttributeColumn.NO_LABEL)
+			{
+				aProductScores[ordinal] = labelScores[column.getLabel(ordinal)];
 			}
-			
 		}
-		//Set bounds
-		if(Double.isNaN(min))
+	}
+	
+	private void setNumericStats(AttributeStatistics pStatistics)
+	{
+		SummaryStatistics ss = pStatistics.getSummary();
+		double min = DEFAULT_MIN;
+		double max = DEFAULT_MAX;
+		if(pStatistics.getMin() < min)
 		{
-			LOG.error("Min value is NaN: " + aAttributeID +", "+ aAttributeName + ", "+ aCategory.getId());
+			min = pStatistics.getMin();
 		}
-		if(Double.isNaN(max))
+		if(pStatistics.getMax() > max)
 		{
-			LOG.error("Max value is NaN: " + aAttributeID +", "+ aAttributeName + ", "+ aCategory.getId());
+			max = pStatistics.getMax();
 		}
+		double[] values = pStatistics.getNumericValues();
 		aMin = new TypedValue(min);
 		aMax = new TypedValue(max);
 		double mean = ss.getGeometricMean();
 		double variance = ss.getStandardDeviation()*ss.getStandardDeviation();
 		//Calculate Entropy
 		double entropy = 0;
-		for(TypedValue tv : pValues)
+		for(double value : values)
 		{
-			if(tv.isNumeric())
-			{
-				double prob = computeNormalProbability(tv, mean, variance);
-				entropy = entropy - prob * (Math.log(prob));
-			}
+			double prob = computeNormalProbability(value, mean, variance);
+			entropy = entropy - prob * (Math.log(prob));
 		}
 		aDefaultValue = new TypedValue(mean);
 		if(!Double.isNaN(entropy))
@@ -322,8 +407,7 @@ public class ScoredAttribute
 		}
 		
 		//Get the correlation
-		NumericCorrelator ac = new NumericCorrelator(aCategory);
-		aCorrelation = ac.computeCorrelation(aAttributeID, CONSIDERATION_THRESHOLD);
+		aCorrelation = pStatistics.getCorrelation(CONSIDERATION_THRESHOLD);
 			
 		if(aIsPrice)
 		{
@@ -331,18 +415,26 @@ public class ScoredAttribute
 		}
 		else
 		{
-			aDirection = ac.computeAttributeDirection(aAttributeID, CONSIDERATION_THRESHOLD);
+			aDirection = NumericCorrelator.directionOf(aCorrelation);
 		}
 		//Calculate Ranking
+		Arrays.sort(values);
+		List<Double> sortedValues = new ArrayList<Double>(values.length);
 		if(aDirection == Direction.LESS_IS_BETTER)
 		{
-			Collections.sort(values);
+			for(int i = 0; i < values.length; i++)
+			{
+				sortedValues.add(values[i]);
+			}
 		}
 		else
 		{
-			Collections.sort(values, Collections.reverseOrder());
+			for(int i = values.length - 1; i >= 0; i--)
+			{
+				sortedValues.add(values[i]);
+			}
 		}
-		setRank(values);
+		setRank(sortedValues);
 	}
 	
 	private void setRank(List<Double> pValues)
@@ -377,27 +469,14 @@ public class ScoredAttribute
 		}
 	}
 	
-	private void setStringStats(ArrayList<TypedValue> pValues)
+	private void setStringStats(AttributeStatistics pStatistics)
 	{
-		HashMap<String, Double> stringCounts = new HashMap<String, Double>();
+		Map<String, Double> stringCounts = pStatistics.getStringCounts();
 		ArrayList<TypedValue> dictionary = new ArrayList<TypedValue>();
-		double count;
 		double totalCount = 0;
-		for(TypedValue tv : pValues)
+		for(Double count : stringCounts.values())
 		{
-			if(tv.isString())
-			{
-				totalCount += 1;
-				if (stringCounts.containsKey(tv.getString()))
-				{
-					count = stringCounts.get(tv.getString());
-				}
-				else
-				{
-					count = 0;
-				}
-				stringCounts.put(tv.getString(), count + 1);
-			}
+			totalCount += count;
 		}
 		double entropy = 0;
 		double maxCount = 0;
@@ -426,9 +505,8 @@ public class ScoredAttribute
 		// Compute Correlation and rankings
 		aLabelMeanScores = new HashMap<String, Double>();
 		
-		NominalCorrelator nominalCorrelator = new NominalCorrelator(aCategory);
 		ArrayList<Map.Entry<String, Double>> entryList = new ArrayList<Map.Entry<String, Double>>();
-		entryList.addAll(nominalCorrelator.getLabelMeanScores(aAttributeID).entrySet());
+		entryList.addAll(pStatistics.getLabelMeanScores().entrySet());
 		sortEntries(entryList);
 		int rank = 1;
 		for (Map.Entry<String, Double> entry : entryList)
@@ -438,27 +516,16 @@ public class ScoredAttribute
 			rank++;
 		}
 		
-		aCorrelation = nominalCorrelator.computeAttributeWeight(aAttributeID);
+		aCorrelation = pStatistics.getAttributeWeight();
 		
 
 		
 	}
 	
-	private void setBooleanStats(ArrayList<TypedValue> pValues)
+	private void setBooleanStats(AttributeStatistics pStatistics)
 	{
-		double trueCount = 0;
-		double totalCount = 0;
-		for(TypedValue tv : pValues)
-		{
-			if(tv.isBoolean())
-			{
-				totalCount = totalCount + 1;
-				if (tv.getBoolean())
-				{
-					trueCount = trueCount + 1;
-				}
-			}
-		}
+		double trueCount = pStatistics.getTrueCount();
+		double totalCount = pStatistics.getBooleanCount();
 		double entropy = 0;
 		boolean mode = false;
 		double probTrue = trueCount/totalCount;
@@ -479,9 +546,8 @@ public class ScoredAttribute
 			aEntropy = 0;
 		}
 		// Compute Correlation
-		NominalCorrelator nominalCorrelator = new NominalCorrelator(aCategory);
 		ArrayList<Map.Entry<String, Double>> entryList = new ArrayList<Map.Entry<String, Double>>();
-		entryList.addAll(nominalCorrelator.getLabelMeanScores(aAttributeID).entrySet());
+		entryList.addAll(pStatistics.getLabelMeanScores().entrySet());
 		sortEntries(entryList);
 		int rank = 1;
 		for (Map.Entry<String, Double> entry : entryList)
@@ -491,17 +557,13 @@ public class ScoredAttribute
 			rank ++;
 		}
 		
-		aCorrelation = nominalCorrelator.computeAttributeWeight(aAttributeID);
+		aCorrelation = pStatistics.getAttributeWeight();
 		
 	}
  
-	private double computeNormalProbability(TypedValue pValue, double pMean, double pVariance)
+	private double computeNormalProbability(double pValue, double pMean, double pVariance)
 	{
-		if(!pValue.isNumeric())
-		{
-			return 0.0;
-		}
-		double x = pValue.getNumeric();
+		double x = pValue;
 		double probability;
 		probability = 1/(Math.sqrt(2*Math.PI*pVariance)) * Math.exp(-((x-pMean)*(x-pMean))/2*pVariance);
 
@@ -509,27 +571,12 @@ public class ScoredAttribute
 	}
 
 	
-	private Type getMainType(ArrayList<TypedValue> pValues)
+	private Type getMainType(AttributeColumn pColumn)
 	{
-		float stringCount = 0;
-		float numericCount = 0;
-		float booleanCount = 0;
-		for(TypedValue tv : pValues)
-		{
-			if(tv.isBoolean())
-			{
-				booleanCount += 1.0;
-			}
-			else if (tv.isNumeric())
-			{
-				numericCount += 1.0;
-			}
-			else if(tv.isString())
-			{
-				stringCount += 1.0;
-			}
-		}
-		float totalCount = pValues.size();
+		float stringCount = pColumn.getStringCount();
+		float numericCount = pColumn.getNumericCount();
+		float booleanCount = pColumn.getBooleanCount();
+		float totalCount = pColumn.getPresentCount();
 		if((booleanCount/totalCount) >= CONSIDERATION_THRESHOLD)
 		{
 			return Type.BOOLEAN;
@@ -780,6 +827,62 @@ public class ScoredAttribute
 		}
 	}
 	
+	/**
+	 * Returns the rank of the value of a product for this attribute, as precomputed
+	 * when the attribute was scored. This is the rank getValueRank would return
+	 * for the value of the product.
+	 * @param pOrdinal The ordinal of the product in the columns of the category.
+	 * @return The rank of the value of the product, RANK_NOT_AVAILABLE if the product does
+	 * not have the attribute, or RANK_UNRANKED if its value cannot be ranked.
+	 */
+	public int getProductRank(int pOrdinal)
+	{
+		if(pOrdinal < 0 || pOrdinal >= aProductRanks.length)
+		{
+			return RANK_NOT_AVAILABLE;
+		}
+		return aProductRanks[pOrdinal];
+	}
+	
+	/*
+	 * The columns whose products were scored, or null if the attribute was not scored 
+	 * in a category. The product scores and penalties are indexed by the ordinals of 
+	 * these columns, and are only valid for them.
+	 */
+	CategoryColumns getColumns()
+	{
+		return aColumns;
+	}
+	
+	/*
+	 * The scores of the values of the products, by ordinal. A product adds its score times 
+	 * the normalization and the weight of the attribute to its ranking score. Empty if the 
+	 * attribute was not scored in a category. Shared with the ranker, not copied.
+	 */
+	double[] getProductScores()
+	{
+		return aProductScores;
+	}
+	
+	/*
+	 * The factor of the product scores: the inverse of the maximum for a numeric attribute, 
+	 * negated if less is better, and 1/100 for the mean scores of the labels.
+	 */
+	double getScoreNormalization()
+	{
+		return aScoreNormalization;
+	}
+	
+	/*
+	 * The penalty of each product, by ordinal: MISSING_ATTRIBUTE_PENALTY if the product does not
+	 * have the attribute, and 0 otherwise. Null if all the products have it. Shared with the ranker, 
+	 * not copied.
+	 */
+	double[] getProductPenalties()
+	{
+		return aProductPenalties;
+	}
+	
 	/**
 	 * This will return the score for a  TypedValue passed. If the value is not found,
 	 * this will throw an IllegalArgeumetnException error.
@@ -15,6 +15,8 @@
  */
 package ca.mcgill.cs.creco.logic;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -31,12 +33,24 @@ import ca.mcgill.cs.creco.web.model.ProductView;
  */
 public interface ServiceFacade 
 {
+	/**
+	 * The formats of the ranked products response. 
+	 */
+	enum ResponseFormat
+	{
+		/** An array of products, each with the explanations of its ranks. */
+		EXPLAINED,
+		/** The products and the explanations of their ranks as columns, with each attribute described once. */
+		COMPACT
+	}
+	
 	/**
 	 * Returns a number of possible completions for the input string.
 	 * Completions are based on product categories, product names, or 
-	 * product brands. 
+	 * product brands, and the most popular ones come first.
 	 * @param pInput The input text to complete.
-	 * @return A comma-separated string of potential completions.
+	 * @return A JSON array of at most CompletionIndex.MAX_NUM_RESULTS completions,
+	 * each with a name and a type.
 	 */
 	String getCompletions(String pInput);
 	
@@ -62,6 +76,17 @@ public interface ServiceFacade
 	 * @return The ranked list of products, ordered from highest to lowest score.
 	 */
 	List<RankExplanation> rankProducts(List<UserScoredAttribute> pUserScoredAttributes, String pCategoryID);
+	
+	/**
+	 * Ranks the products of a category according to a given set of attributes, and 
+	 * returns one page of the ranking.
+	 * @param pUserScoredAttributes The set of attributes used to rank the products.
+	 * @param pCategoryID The Id of category searched.
+	 * @param pK The maximum number of products to return.
+	 * @param pOffset The number of best ranked products to skip.
+	 * @return The requested page of the ranked list of products, ordered from highest to lowest score.
+	 */
+	List<RankExplanation> rankProducts(List<UserScoredAttribute> pUserScoredAttributes, String pCategoryID, int pK, int pOffset);
 
 	/**
 	 * Returns a string of for the products view page.
@@ -71,6 +96,33 @@ public interface ServiceFacade
 	 */
 	String sendCurrentFeatureList(String pUserFeatureList, String pCategoryId);
 	
+	/**
+	 * Returns a string of for one page of the products view page.
+	 * @param pUserFeatureList list of features selected by the user.
+	 * @param pCategoryId Id of the searched category. 
+	 * @param pOffset The number of best ranked products to skip.
+	 * @param pLimit The maximum number of products to return.
+	 * @return Name of file to redirect the browser to the products page.
+	 */
+	String sendCurrentFeatureList(String pUserFeatureList, String pCategoryId, int pOffset, int pLimit);
+	
+	/**
+	 * Writes the response of sendCurrentFeatureList to a character stream as it 
+	 * is produced, without building it in memory first. The products are ranked
+	 * incrementally from the last ranking of the user when only the weights of
+	 * the features changed.
+	 * @param pUserFeatureList list of features selected by the user.
+	 * @param pCategoryId Id of the searched category. 
+	 * @param pOffset The number of best ranked products to skip.
+	 * @param pLimit The maximum number of products to return.
+	 * @param pFormat The format of the response.
+	 * @param pState The scores of the last ranking of the user.
+	 * @param pOut The stream to write the response to. It is flushed but not closed.
+	 * @throws IOException If the stream cannot be written.
+	 */
+	void writeCurrentFeatureList(String pUserFeatureList, String pCategoryId, int pOffset, int pLimit, ResponseFormat pFormat, 
+			RankingState pState, Writer pOut) throws IOException;
+	
 	
 	/**
 	 * A category is selected and this controller obtains the features
@@ -81,6 +133,15 @@ public interface ServiceFacade
 	 */
 	ArrayList<ProductView> searchRankedFeaturesProducts(String pCategoryId, Model pModel);
 	
+	/**
+	 * Lists one page of the products of a category, by decreasing overall score.
+	 * @param pCategoryId The id of the selected category
+	 * @param pOffset The number of best products to skip.
+	 * @param pLimit The maximum number of products to return.
+	 * @return List of products
+	 */
+	ArrayList<ProductView> searchRankedFeaturesProducts(String pCategoryId, int pOffset, int pLimit);
+	
 	/**
 	 * Updated current feature list based on the category selected.
 	 * @param pCategoryId Id of the searched category.
@@ -193,6 +193,10 @@ public class UserScoredAttribute {
 	{
 		return aScoredAttribute.getValueRank(pValue);
 	}
+	public int getProductRank(int pOrdinal)
+	{
+		return aScoredAttribute.getProductRank(pOrdinal);
+	}
 	public double getValueScore(TypedValue pValue)
 	{
 		return aScoredAttribute.getValueScore(pValue);
@@ -0,0 +1,152 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.logic.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records the distribution of positive long values, such as durations in nanoseconds,
+ * in the manner of HdrHistogram: values are counted in buckets whose width grows
+ * with their magnitude, so that every value is known within 1/32 of itself
+ * whatever its scale, in a fixed amount of memory.
+ *
+ * Recording is lock-free and takes two atomic additions, so any number of threads
+ * can record into the same histogram. Reading the statistics while values are being
+ * recorded gives a consistent enough view for monitoring, not an exact snapshot.
+ */
+public final class LatencyHistogram
+{
+	// Values below SUB_BUCKETS are exact, and the larger ones share SUB_BUCKETS / 2 buckets per power of two
+	private static final int SUB_BUCKETS = 64;
+	private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+	private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+	private static final int LONG_BITS = 64;
+	private static final int NUMBER_OF_BUCKETS = (LONG_BITS - SUB_BUCKET_BITS + 1) * HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+	private static final double PERCENT = 100;
+
+	private final AtomicLongArray aCounts = new AtomicLongArray(NUMBER_OF_BUCKETS);
+	private final AtomicLong aTotal = new AtomicLong();
+	private final AtomicLong aMax = new AtomicLong();
+
+	/**
+	 * Records a value. Negative values are recorded as 0.
+	 * @param pValue The value.
+	 */
+	public void record(long pValue)
+	{
+		long value = Math.max(0, pValue);
+		aCounts.incrementAndGet(bucket(value));
+		aTotal.addAndGet(value);
+		long max = aMax.get();
+		while(value > max && !aMax.compareAndSet(max, value))
+		{
+			max = aMax.get();
+		}
+	}
+
+	/**
+	 * Records the time elapsed since a start time.
+	 * @param pStartNanos The start time, as returned by System.nanoTime().
+	 */
+	public void recordSince(long pStartNanos)
+	{
+		record(System.nanoTime() - pStartNanos);
+	}
+
+	/**
+	 * @return The number of recorded values.
+	 */
+	public long getCount()
+	{
+		long count = 0;
+		for(int i = 0; i < NUMBER_OF_BUCKETS; i++)
+		{
+			count += aCounts.get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * @return The mean of the recorded values, or 0 if there are none.
+	 */
+	public double getMean()
+	{
+		long count = getCount();
+		if(count == 0)
+		{
+			return 0;
+		}
+		return aTotal.get() / (double) count;
+	}
+
+	/**
+	 * @return The largest recorded value, or 0 if there are none.
+	 */
+	public long getMax()
+	{
+		return aMax.get();
+	}
+
+	/**
+	 * @param pPercentile A percentile between 0 and 100, such as 99.9.
+	 * @return The largest value of the bucket of the value at the percentile, which
+	 * is within 1/32 of that value, or 0 if there are no values.
+	 */
+	public long getValueAtPercentile(double pPercentile)
+	{
+		long count = getCount();
+		long rank = Math.max(1, (long) Math.ceil(pPercentile / PERCENT * count));
+		long seen = 0;
+		for(int i = 0; i < NUMBER_OF_BUCKETS; i++)
+		{
+			seen += aCounts.get(i);
+			if(seen >= rank)
+			{
+				return Math.min(highestValue(i), aMax.get());
+			}
+		}
+		return 0;
+	}
+
+	/*
+	 * Values below SUB_BUCKETS have a bucket each. Above, the values between two powers
+	 * of two 2^e and 2^(e+1) share HALF_SUB_BUCKETS buckets of width 2^(e + 1 - SUB_BUCKET_BITS).
+	 */
+	static int bucket(long pValue)
+	{
+		if(pValue < SUB_BUCKETS)
+		{
+			return (int) pValue;
+		}
+		int shift = LONG_BITS - Long.numberOfLeadingZeros(pValue) - SUB_BUCKET_BITS;
+		return (shift + 1) * HALF_SUB_BUCKETS + (int) (pValue >>> shift) - HALF_SUB_BUCKETS;
+	}
+
+	/*
+	 * The largest value counted in a bucket.
+	 */
+	static long highestValue(int pBucket)
+	{
+		if(pBucket < SUB_BUCKETS)
+		{
+			return pBucket;
+		}
+		int shift = pBucket / HALF_SUB_BUCKETS - 1;
+		long subBucket = pBucket % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
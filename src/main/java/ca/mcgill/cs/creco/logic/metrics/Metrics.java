@@ -0,0 +1,126 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.logic.metrics;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.stereotype.Component;
+
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * The latency histograms of the endpoints and of the stages of the requests, and
+ * the histograms of other values measured per request, such as the number of
+ * products ranked. Histograms are created by name on first use, and the latencies
+ * are recorded in nanoseconds.
+ *
+ * The components that are built outside of Spring, as in the benchmarks, record
+ * into their own instance.
+ */
+@Component
+public class Metrics
+{
+	private static final double NANOS_PER_MICRO = 1000.0;
+	private static final double[] PERCENTILES = { 50, 99, 99.9 };
+	private static final String[] PERCENTILE_NAMES = { "p50", "p99", "p999" };
+
+	private final ConcurrentMap<String, LatencyHistogram> aTimers = new ConcurrentHashMap<String, LatencyHistogram>();
+	private final ConcurrentMap<String, LatencyHistogram> aDistributions = new ConcurrentHashMap<String, LatencyHistogram>();
+
+	/**
+	 * @param pName The name of an endpoint or stage.
+	 * @return The histogram of its latencies, in nanoseconds.
+	 */
+	public LatencyHistogram timer(String pName)
+	{
+		return get(aTimers, pName);
+	}
+
+	/**
+	 * @param pName The name of a value measured per request.
+	 * @return The histogram of its values.
+	 */
+	public LatencyHistogram distribution(String pName)
+	{
+		return get(aDistributions, pName);
+	}
+
+	private static LatencyHistogram get(ConcurrentMap<String, LatencyHistogram> pHistograms, String pName)
+	{
+		LatencyHistogram histogram = pHistograms.get(pName);
+		if(histogram == null)
+		{
+			histogram = new LatencyHistogram();
+			LatencyHistogram existing = pHistograms.putIfAbsent(pName, histogram);
+			if(existing != null)
+			{
+				histogram = existing;
+			}
+		}
+		return histogram;
+	}
+
+	/**
+	 * @return A JSON object with the count, mean, percentiles and maximum of every histogram
+	 * by name, under "timers" for the latencies, in microseconds, and under "distributions"
+	 * for the other values.
+	 */
+	public String toJson()
+	{
+		StringWriter out = new StringWriter();
+		JsonWriter writer = new JsonWriter(out);
+		try
+		{
+			writer.beginObject();
+			writer.name("timers");
+			write(aTimers, 1 / NANOS_PER_MICRO, writer);
+			writer.name("distributions");
+			write(aDistributions, 1, writer);
+			writer.endObject();
+			writer.close();
+		}
+		catch(IOException e)
+		{
+			// A StringWriter does not throw
+			throw new IllegalStateException(e);
+		}
+		return out.toString();
+	}
+
+	private static void write(Map<String, LatencyHistogram> pHistograms, double pScale, JsonWriter pWriter) throws IOException
+	{
+		pWriter.beginObject();
+		for(Map.Entry<String, LatencyHistogram> entry : new TreeMap<String, LatencyHistogram>(pHistograms).entrySet())
+		{
+			LatencyHistogram histogram = entry.getValue();
+			pWriter.name(entry.getKey()).beginObject();
+			pWriter.name("count").value(histogram.getCount());
+			pWriter.name("mean").value(histogram.getMean() * pScale);
+			for(int i = 0; i < PERCENTILES.length; i++)
+			{
+				pWriter.name(PERCENTILE_NAMES[i]).value(histogram.getValueAtPercentile(PERCENTILES[i]) * pScale);
+			}
+			pWriter.name("max").value(histogram.getMax() * pScale);
+			pWriter.endObject();
+		}
+		pWriter.endObject();
+	}
+}
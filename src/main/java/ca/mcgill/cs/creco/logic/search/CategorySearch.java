@@ -15,54 +15,108 @@
  */
 package ca.mcgill.cs.creco.logic.search;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.en.EnglishAnalyzer;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.Version;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
 import ca.mcgill.cs.creco.data.Category;
+import ca.mcgill.cs.creco.data.DataPath;
 import ca.mcgill.cs.creco.data.IDataStore;
 import ca.mcgill.cs.creco.data.Product;
 
 /**
  * Searches a list of categories with Lucene indexes.
+ * 
+ * All queries share the searchers of a SearcherManager, which only opens a new 
+ * reader when the index is rebuilt. Query parsers are not thread-safe, so each 
+ * thread reuses its own.
+ * 
+ * The index is kept in memory, unless the INDEX_DIRECTORY_PROPERTY system property 
+ * names a directory, under the data path if it is relative. The index is then memory-mapped from that 
+ * directory and kept between restarts. Each category document records a signature 
+ * of its indexed text, and only the categories whose signature changed are indexed again.
+ * 
+ * A new version of the database is indexed by refreshing the search, rather than by
+ * building a new one, so that there is only ever one writer and one reader of the index.
+ * The categories that are the same objects as in the version indexed before are 
+ * already up to date, and their text is not even flattened.
  */
 @Component
+@Lazy
 public class CategorySearch implements ICategorySearch
 {
 	public static final String CATEGORY_ID = "ID";
 	public static final String CATEGORY_NAME = "NAME";
 	public static final String FLATTENED_TEXT = "FLATTENED_TEXT";
+	public static final String SIGNATURE = "SIGNATURE";
 	
+	/** System property holding the directory of the persistent index, either absolute or relative to the data path. */
+	public static final String INDEX_DIRECTORY_PROPERTY = "creco.search.index";
+	
+	// Change whenever the content of the documents or the analyzer changes, to reindex everything
+	private static final int INDEX_FORMAT = 1;
 	private static final int MAX_NUM_RESULTS = 10;
+	private static final Charset CHARSET = Charset.forName("UTF-8");
 	private static final Version VERSION = Version.LUCENE_46;
 	private static final Logger LOG = LoggerFactory.getLogger(CategorySearch.class);
 	
 	private final Directory aDirectory;
 	private final Analyzer aAnalyzer;
+	private final SearcherManager aSearcherManager;
+	private final ThreadLocal<QueryParser> aCategoryNameParser = new ThreadLocal<QueryParser>()
+	{
+		@Override
+		protected QueryParser initialValue()
+		{
+			return new QueryParser(VERSION, CATEGORY_NAME, aAnalyzer);
+		}
+	};
+	private final ThreadLocal<QueryParser> aFlattenedTextParser = new ThreadLocal<QueryParser>()
+	{
+		@Override
+		protected QueryParser initialValue()
+		{
+			return new QueryParser(VERSION, FLATTENED_TEXT, aAnalyzer);
+		}
+	};
 	
-	private IDataStore aDataStore;
+	private volatile IDataStore aDataStore;
+	private int aIndexedCategories;
+	private int aRemovedCategories;
 	
 	/**
 	 * Constructor.
@@ -72,59 +126,228 @@ public class CategorySearch implements ICategorySearch
 	@Autowired
 	public CategorySearch(IDataStore pDataStore) throws IOException
 	{
-		aDirectory = new RAMDirectory();
+		String indexDirectory = System.getProperty(INDEX_DIRECTORY_PROPERTY);
+		if(indexDirectory == null)
+		{
+			aDirectory = new RAMDirectory();
+		}
+		else if(new File(indexDirectory).isAbsolute())
+		{
+			aDirectory = new MMapDirectory(new File(indexDirectory));
+		}
+		else
+		{
+			aDirectory = new MMapDirectory(new File(DataPath.get() + indexDirectory));
+		}
 		aAnalyzer = new EnglishAnalyzer(VERSION);
 		aDataStore = pDataStore;
 
-		buildCategoryIndex();
+		updateCategoryIndex(pDataStore, null);
+		aSearcherManager = new SearcherManager(aDirectory, null);
+	}
+	
+	/**
+	 * Updates the index with the categories of a new version of the database. Only the 
+	 * categories that changed are indexed again. Queries that are running keep their 
+	 * searcher, later queries see the new index.
+	 * @param pDataStore The new version of the database.
+	 * @throws IOException If the index cannot be written or reopened.
+	 */
+	@Override
+	public void refresh(IDataStore pDataStore) throws IOException
+	{
+		synchronized(aDirectory)
+		{
+			updateCategoryIndex(pDataStore, aDataStore);
+			aSearcherManager.maybeRefreshBlocking();
+			aDataStore = pDataStore;
+		}
+	}
+	
+	/**
+	 * Closes the reader and the directory of the index. No query can be made
+	 * once the search is closed.
+	 * @throws IOException If the index cannot be closed.
+	 */
+	public void close() throws IOException
+	{
+		synchronized(aDirectory)
+		{
+			aSearcherManager.close();
+			aDirectory.close();
+		}
 	}
 	
-	private void buildCategoryIndex() throws IOException
+	/*
+	 * Adds or replaces the documents of the categories whose signature differs from the
+	 * one in the index, and deletes the documents of the categories that no longer exist.
+	 * The index is not touched if nothing changed. The categories that are the same objects
+	 * in pPrevious, the version indexed before, if any, are assumed to be in the index.
+	 */
+	private void updateCategoryIndex(IDataStore pDataStore, IDataStore pPrevious) throws IOException
 	{
-		IndexWriter writer = new IndexWriter(aDirectory, new IndexWriterConfig(VERSION, aAnalyzer));
-		for (Category category : aDataStore.getCategories()) 
+		Map<String, String> indexedSignatures = readSignatures();
+		IndexWriter writer = null;
+		if(!DirectoryReader.indexExists(aDirectory))
 		{
-			String flattenedText = category.getName();
-			for (Product product : category.getProducts())
+			writer = openWriter();
+		}
+		int updated = 0;
+		try
+		{
+			for (Category category : pDataStore.getCategories()) 
 			{
-				flattenedText += product.getName() + " ";
+				if(pPrevious != null && pPrevious.getCategory(category.getId()) == category)
+				{
+					indexedSignatures.remove(category.getId());
+					continue;
+				}
+				String flattenedText = flattenText(category);
+				String signature = signature(flattenedText);
+				if(signature.equals(indexedSignatures.remove(category.getId())))
+				{
+					continue;
+				}
+				if(writer == null)
+				{
+					writer = openWriter();
+				}
+				Document doc = new Document();
+				doc.add(new StringField(CATEGORY_ID, category.getId(), Field.Store.YES));
+				doc.add(new TextField(CATEGORY_NAME, category.getName(), Field.Store.YES));
+				doc.add(new TextField(FLATTENED_TEXT, flattenedText, Field.Store.NO));
+				doc.add(new StringField(SIGNATURE, signature, Field.Store.YES));
+				writer.updateDocument(new Term(CATEGORY_ID, category.getId()), doc);
+				updated++;
+			}
+			for(String removedId : indexedSignatures.keySet())
+			{
+				if(writer == null)
+				{
+					writer = openWriter();
+				}
+				writer.deleteDocuments(new Term(CATEGORY_ID, removedId));
 			}
-			Document doc = new Document();
-			doc.add(new TextField(CATEGORY_ID, category.getId(), Field.Store.YES));
-			doc.add(new TextField(CATEGORY_NAME, category.getName(), Field.Store.YES));
-			doc.add(new TextField(FLATTENED_TEXT, flattenedText, Field.Store.YES));	
-			writer.addDocument(doc);
 		}
-		writer.close();
+		finally
+		{
+			if(writer != null)
+			{
+				writer.close();
+			}
+		}
+		aIndexedCategories = updated;
+		aRemovedCategories = indexedSignatures.size();
+		LOG.info("Indexed " + updated + " categories, removed " + indexedSignatures.size());
+	}
+	
+	/*
+	 * The number of categories added to the index or replaced by the last update.
+	 */
+	int getNumberOfIndexedCategories()
+	{
+		return aIndexedCategories;
+	}
+	
+	/*
+	 * The number of categories deleted from the index by the last update.
+	 */
+	int getNumberOfRemovedCategories()
+	{
+		return aRemovedCategories;
+	}
+	
+	private IndexWriter openWriter() throws IOException
+	{
+		return new IndexWriter(aDirectory, new IndexWriterConfig(VERSION, aAnalyzer));
+	}
+	
+	/*
+	 * The signatures of the categories in the index, by category id.
+	 */
+	private Map<String, String> readSignatures() throws IOException
+	{
+		Map<String, String> signatures = new HashMap<String, String>();
+		if(!DirectoryReader.indexExists(aDirectory))
+		{
+			return signatures;
+		}
+		DirectoryReader reader = DirectoryReader.open(aDirectory);
+		try
+		{
+			Bits liveDocs = MultiFields.getLiveDocs(reader);
+			for(int i = 0; i < reader.maxDoc(); i++)
+			{
+				if(liveDocs == null || liveDocs.get(i))
+				{
+					Document doc = reader.document(i);
+					signatures.put(doc.get(CATEGORY_ID), doc.get(SIGNATURE));
+				}
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+		return signatures;
+	}
+	
+	private static String flattenText(Category pCategory)
+	{
+		StringBuilder flattenedText = new StringBuilder(pCategory.getName());
+		for (Product product : pCategory.getProducts())
+		{
+			flattenedText.append(product.getName()).append(' ');
+		}
+		return flattenedText.toString();
+	}
+	
+	/*
+	 * The flattened text starts with the name of the category, so it is all
+	 * the signature needs to cover.
+	 */
+	private static String signature(String pFlattenedText)
+	{
+		CRC32 checksum = new CRC32();
+		checksum.update(pFlattenedText.getBytes(CHARSET));
+		return INDEX_FORMAT + ":" + pFlattenedText.length() + ":" + Long.toHexString(checksum.getValue());
 	}
 	
 	@Override
 	public List<Category> queryCategories(String pQueryString) 
 	{
 		List<Category> searchResult = new ArrayList<Category>();
+		IDataStore dataStore = aDataStore;
 		try 
 		{
-			DirectoryReader reader = DirectoryReader.open(aDirectory);
-			IndexSearcher searcher = new IndexSearcher(reader);
-			TopScoreDocCollector results = TopScoreDocCollector.create(MAX_NUM_RESULTS, true);
-			
-			// Search category names
-			Query categoryNameQuery = new QueryParser(VERSION, CATEGORY_NAME, aAnalyzer).parse(pQueryString);
-			searcher.search(categoryNameQuery, results);
-			
-			// Search flattened text (only product names for now)
-			Query flattenedTextQuery = new QueryParser(VERSION, FLATTENED_TEXT, aAnalyzer).parse(pQueryString);
-			searcher.search(flattenedTextQuery, results);
-
-			for(ScoreDoc scoredResult : results.topDocs().scoreDocs) 
+			IndexSearcher searcher = aSearcherManager.acquire();
+			try
 			{
-			    Document doc = searcher.doc(scoredResult.doc);
-			    Category resultCategory = aDataStore.getCategory(doc.get(CATEGORY_ID));
-
-			    if (!searchResult.contains(resultCategory) && resultCategory.getNumberOfProducts() > 0)
-			    {
-			    	searchResult.add(resultCategory);
-			    }
+				TopScoreDocCollector results = TopScoreDocCollector.create(MAX_NUM_RESULTS, true);
+				
+				// Search category names
+				Query categoryNameQuery = aCategoryNameParser.get().parse(pQueryString);
+				searcher.search(categoryNameQuery, results);
+				
+				// Search flattened text (only product names for now)
+				Query flattenedTextQuery = aFlattenedTextParser.get().parse(pQueryString);
+				searcher.search(flattenedTextQuery, results);
+	
+				for(ScoreDoc scoredResult : results.topDocs().scoreDocs) 
+				{
+				    Document doc = searcher.doc(scoredResult.doc);
+				    // Null if the searcher and the database are of different versions during a refresh
+				    Category resultCategory = dataStore.getCategory(doc.get(CATEGORY_ID));
+	
+				    if (resultCategory != null && !searchResult.contains(resultCategory) && resultCategory.getNumberOfProducts() > 0)
+				    {
+				    	searchResult.add(resultCategory);
+				    }
+				}
+			}
+			finally
+			{
+				aSearcherManager.release(searcher);
 			}
 		}
 		catch (IOException e) 
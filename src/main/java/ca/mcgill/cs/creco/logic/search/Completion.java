@@ -0,0 +1,111 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.logic.search;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A suggestion for the search box: a lower-case name, the kinds of entities
+ * that have this name, and a popularity weight. Immutable.
+ */
+public final class Completion
+{
+	/**
+	 * The kinds of entities a completion can name, in the order they are reported.
+	 */
+	public enum Type
+	{
+		CATEGORY("Category"), BRAND("Brand"), PRODUCT("Product");
+
+		private final String aLabel;
+
+		private Type(String pLabel)
+		{
+			aLabel = pLabel;
+		}
+
+		/**
+		 * @return The name of the type as reported to the search box.
+		 */
+		public String getLabel()
+		{
+			return aLabel;
+		}
+	}
+
+	private static final String TYPE_SEPARATOR = "|";
+
+	private final String aName;
+	private final Set<Type> aTypes;
+	private final int aWeight;
+
+	Completion(String pName, Set<Type> pTypes, int pWeight)
+	{
+		aName = pName;
+		aTypes = EnumSet.copyOf(pTypes);
+		aWeight = pWeight;
+	}
+
+	/**
+	 * @return The lower-case name to complete the input with.
+	 */
+	public String getName()
+	{
+		return aName;
+	}
+
+	/**
+	 * @param pType A type of entity.
+	 * @return True if the name is the name of an entity of this type.
+	 */
+	public boolean hasType(Type pType)
+	{
+		return aTypes.contains(pType);
+	}
+
+	/**
+	 * @return The types of the entities with this name, separated by '|',
+	 * for example "Category|Brand".
+	 */
+	public String getType()
+	{
+		StringBuilder type = new StringBuilder();
+		for(Type value : aTypes)
+		{
+			if(type.length() > 0)
+			{
+				type.append(TYPE_SEPARATOR);
+			}
+			type.append(value.getLabel());
+		}
+		return type.toString();
+	}
+
+	/**
+	 * @return The number of products that this completion leads to.
+	 */
+	public int getWeight()
+	{
+		return aWeight;
+	}
+
+	@Override
+	public String toString()
+	{
+		return aName + " (" + getType() + ", " + aWeight + ")";
+	}
+}
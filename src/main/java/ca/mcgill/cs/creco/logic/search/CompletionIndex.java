@@ -0,0 +1,384 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.logic.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import ca.mcgill.cs.creco.data.Category;
+import ca.mcgill.cs.creco.data.IDataStore;
+import ca.mcgill.cs.creco.data.Product;
+
+/**
+ * Prefix index of the names that the search box can be completed with: the names
+ * of the categories, the brand names and the words of the product names.
+ *
+ * Names are stored in a trie, once for each word they contain, so that an input
+ * matches a name if it is a prefix of the name or of one of its words. Each node
+ * of the trie holds the best MAX_NUM_RESULTS completions below it, so a lookup
+ * only walks down the input and never visits the names it does not return.
+ *
+ * Completions are ranked by their weight, the number of products they lead to.
+ * The index is immutable once built.
+ *
+ * The index of a new version of the data can be built from the index of the previous
+ * version: the weights of the names are then updated with the categories and products
+ * that changed, and only the trie is built again.
+ */
+@Component
+@Lazy
+public class CompletionIndex
+{
+	/** The maximum number of completions returned for an input. */
+	public static final int MAX_NUM_RESULTS = 10;
+
+	// Words with this many digits or more look like model numbers
+	private static final int MODEL_NUMBER_DIGITS = 2;
+	private static final char WORD_SEPARATOR = ' ';
+	private static final int[] NO_IDS = new int[0];
+
+	private final IDataStore aDataStore;
+	// The weight of each name for each type of completion, indexed by the ordinal of the type
+	private final Map<String, int[]> aWeights = new HashMap<String, int[]>();
+	private final Completion[] aCompletions;
+	private final Node aRoot = new Node();
+
+	/**
+	 * Builds the index from the categories and products of a database.
+	 * @param pDataStore The database whose names will be in the index.
+	 */
+	@Autowired
+	public CompletionIndex(IDataStore pDataStore)
+	{
+		this(pDataStore, null);
+	}
+
+	/**
+	 * Builds the index of a new version of a database from the index of a previous version.
+	 * Only the categories and products that are not the same objects in both versions are read.
+	 * @param pDataStore The database whose names will be in the index.
+	 * @param pPrevious The index of a previous version of the database, or null to read all
+	 * the categories and products.
+	 */
+	public CompletionIndex(IDataStore pDataStore, CompletionIndex pPrevious)
+	{
+		aDataStore = pDataStore;
+		if(pPrevious == null)
+		{
+			for(Category category : pDataStore.getCategories())
+			{
+				addCategory(category, 1);
+			}
+			for(Product product : pDataStore.getProducts())
+			{
+				addProduct(product, 1);
+			}
+		}
+		else
+		{
+			IDataStore previous = pPrevious.aDataStore;
+			for(Map.Entry<String, int[]> entry : pPrevious.aWeights.entrySet())
+			{
+				aWeights.put(entry.getKey(), entry.getValue().clone());
+			}
+			for(Category category : previous.getCategories())
+			{
+				if(pDataStore.getCategory(category.getId()) != category)
+				{
+					addCategory(category, -1);
+				}
+			}
+			for(Category category : pDataStore.getCategories())
+			{
+				if(previous.getCategory(category.getId()) != category)
+				{
+					addCategory(category, 1);
+				}
+			}
+			for(Product product : previous.getProducts())
+			{
+				if(pDataStore.getProduct(product.getId()) != product)
+				{
+					addProduct(product, -1);
+				}
+			}
+			for(Product product : pDataStore.getProducts())
+			{
+				if(previous.getProduct(product.getId()) != product)
+				{
+					addProduct(product, 1);
+				}
+			}
+		}
+
+		List<Completion> completions = new ArrayList<Completion>();
+		for(Map.Entry<String, int[]> entry : aWeights.entrySet())
+		{
+			EnumSet<Completion.Type> types = EnumSet.noneOf(Completion.Type.class);
+			int weight = 0;
+			for(Completion.Type type : Completion.Type.values())
+			{
+				if(entry.getValue()[type.ordinal()] > 0)
+				{
+					types.add(type);
+					weight += entry.getValue()[type.ordinal()];
+				}
+			}
+			completions.add(new Completion(entry.getKey(), types, weight));
+		}
+		Collections.sort(completions, new Comparator<Completion>()
+		{
+			@Override
+			public int compare(Completion pCompletion1, Completion pCompletion2)
+			{
+				if(pCompletion1.getWeight() != pCompletion2.getWeight())
+				{
+					return pCompletion2.getWeight() - pCompletion1.getWeight();
+				}
+				return pCompletion1.getName().compareTo(pCompletion2.getName());
+			}
+		});
+
+		// The id of a completion is its rank, so the best completions have the smallest ids
+		aCompletions = completions.toArray(new Completion[completions.size()]);
+		for(int id = 0; id < aCompletions.length; id++)
+		{
+			String name = aCompletions[id].getName();
+			for(int start = 0; start < name.length(); start++)
+			{
+				if(start == 0 || name.charAt(start - 1) == WORD_SEPARATOR)
+				{
+					insert(name, start, id);
+				}
+			}
+		}
+		aRoot.collectTop();
+	}
+
+	/**
+	 * Returns the best completions for an input.
+	 * @param pInput The text typed so far.
+	 * @return At most MAX_NUM_RESULTS completions whose name, or one of its words, starts
+	 * with the input, regardless of case. Completions leading to more products come first.
+	 */
+	public List<Completion> getCompletions(String pInput)
+	{
+		String input = pInput.toLowerCase();
+		Node node = aRoot;
+		for(int i = 0; i < input.length() && node != null; i++)
+		{
+			node = node.getChild(input.charAt(i));
+		}
+		if(node == null)
+		{
+			return Collections.emptyList();
+		}
+		List<Completion> completions = new ArrayList<Completion>(node.aTop.length);
+		for(int id : node.aTop)
+		{
+			completions.add(aCompletions[id]);
+		}
+		return Collections.unmodifiableList(completions);
+	}
+
+	/*
+	 * Adds the name of a category to the weights, or removes it if pSign is negative.
+	 */
+	private void addCategory(Category pCategory, int pSign)
+	{
+		if(pCategory.getNumberOfProducts() > 0)
+		{
+			add(pCategory.getName().toLowerCase(), Completion.Type.CATEGORY, pSign * pCategory.getNumberOfProducts());
+		}
+	}
+
+	/*
+	 * Adds the brand and the words of the name of a product to the weights, 
+	 * or removes them if pSign is negative.
+	 */
+	private void addProduct(Product pProduct, int pSign)
+	{
+		String brandName = pProduct.getBrandName().toLowerCase();
+		Set<String> brandWords = new HashSet<String>(Arrays.asList(brandName.split(String.valueOf(WORD_SEPARATOR))));
+		if(brandName.length() > 0)
+		{
+			add(brandName, Completion.Type.BRAND, pSign);
+		}
+		Set<String> words = new HashSet<String>();
+		for(String word : pProduct.getName().toLowerCase().split(String.valueOf(WORD_SEPARATOR)))
+		{
+			if(isProductWord(word) && !brandWords.contains(word) && words.add(word))
+			{
+				add(word, Completion.Type.PRODUCT, pSign);
+			}
+		}
+	}
+
+	/*
+	 * Names whose weights all drop to zero are no longer completions.
+	 */
+	private void add(String pName, Completion.Type pType, int pWeight)
+	{
+		int[] weights = aWeights.get(pName);
+		if(weights == null)
+		{
+			weights = new int[Completion.Type.values().length];
+			aWeights.put(pName, weights);
+		}
+		weights[pType.ordinal()] += pWeight;
+		for(int weight : weights)
+		{
+			if(weight != 0)
+			{
+				return;
+			}
+		}
+		aWeights.remove(pName);
+	}
+
+	/*
+	 * Words of product names that are worth suggesting: not empty, not
+	 * a model number and not a parenthesized remark.
+	 */
+	private static boolean isProductWord(String pWord)
+	{
+		if(pWord.length() == 0 || pWord.contains("(") || pWord.contains(")"))
+		{
+			return false;
+		}
+		int digits = 0;
+		for(int i = 0; i < pWord.length(); i++)
+		{
+			if(Character.isDigit(pWord.charAt(i)))
+			{
+				digits++;
+			}
+		}
+		return digits < MODEL_NUMBER_DIGITS;
+	}
+
+	private void insert(String pName, int pStart, int pId)
+	{
+		Node node = aRoot;
+		for(int i = pStart; i < pName.length(); i++)
+		{
+			node = node.getOrAddChild(pName.charAt(i));
+		}
+		node.addId(pId);
+	}
+
+	/*
+	 * A node of the trie. Children are kept sorted by label so they can be
+	 * found by binary search.
+	 */
+	private static final class Node
+	{
+		private char[] aLabels = new char[0];
+		private Node[] aChildren = new Node[0];
+
+		// Completions whose key ends at this node, only needed until collectTop()
+		private int[] aIds = NO_IDS;
+
+		// The best completions in this subtree, by increasing id
+		private int[] aTop = NO_IDS;
+
+		Node getChild(char pLabel)
+		{
+			int index = Arrays.binarySearch(aLabels, pLabel);
+			if(index < 0)
+			{
+				return null;
+			}
+			return aChildren[index];
+		}
+
+		Node getOrAddChild(char pLabel)
+		{
+			int index = Arrays.binarySearch(aLabels, pLabel);
+			if(index >= 0)
+			{
+				return aChildren[index];
+			}
+			int insertion = -(index + 1);
+			char[] labels = new char[aLabels.length + 1];
+			Node[] children = new Node[aChildren.length + 1];
+			System.arraycopy(aLabels, 0, labels, 0, insertion);
+			System.arraycopy(aChildren, 0, children, 0, insertion);
+			System.arraycopy(aLabels, insertion, labels, insertion + 1, aLabels.length - insertion);
+			System.arraycopy(aChildren, insertion, children, insertion + 1, aChildren.length - insertion);
+			labels[insertion] = pLabel;
+			children[insertion] = new Node();
+			aLabels = labels;
+			aChildren = children;
+			return children[insertion];
+		}
+
+		void addId(int pId)
+		{
+			aIds = Arrays.copyOf(aIds, aIds.length + 1);
+			aIds[aIds.length - 1] = pId;
+		}
+
+		/*
+		 * Computes the best completions of every node below this one. A node with a single
+		 * child and no completion of its own shares the array of its child.
+		 */
+		int[] collectTop()
+		{
+			if(aIds.length == 0 && aChildren.length == 1)
+			{
+				aTop = aChildren[0].collectTop();
+				return aTop;
+			}
+			int[] candidates = aIds;
+			for(Node child : aChildren)
+			{
+				int[] childTop = child.collectTop();
+				int length = candidates.length;
+				candidates = Arrays.copyOf(candidates, length + childTop.length);
+				System.arraycopy(childTop, 0, candidates, length, childTop.length);
+			}
+			Arrays.sort(candidates);
+
+			// Keep the smallest distinct ids, as a name can be reached through several of its words
+			int[] top = new int[Math.min(candidates.length, MAX_NUM_RESULTS)];
+			int size = 0;
+			for(int i = 0; i < candidates.length && size < top.length; i++)
+			{
+				if(size == 0 || top[size - 1] != candidates[i])
+				{
+					top[size] = candidates[i];
+					size++;
+				}
+			}
+			aTop = Arrays.copyOf(top, size);
+			aIds = NO_IDS;
+			return aTop;
+		}
+	}
+}
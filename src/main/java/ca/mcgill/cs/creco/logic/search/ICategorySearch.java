@@ -15,9 +15,11 @@
  */
 package ca.mcgill.cs.creco.logic.search;
 
+import java.io.IOException;
 import java.util.List;
 
 import ca.mcgill.cs.creco.data.Category;
+import ca.mcgill.cs.creco.data.IDataStore;
 
 /**
  * Searches the database for categories.
@@ -30,4 +32,12 @@ public interface ICategorySearch
 	 * @return A list of categories whose name or products match the query string.
 	 */
 	List<Category> queryCategories(String pQueryString);
+	
+	/**
+	 * Updates the search index with the categories of a new version of the database.
+	 * Later queries return the categories of that version.
+	 * @param pDataStore The new version of the database.
+	 * @throws IOException If the index cannot be updated.
+	 */
+	void refresh(IDataStore pDataStore) throws IOException;
 }
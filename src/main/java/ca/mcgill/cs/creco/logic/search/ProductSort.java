@@ -17,14 +17,17 @@ package ca.mcgill.cs.creco.logic.search;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
 import ca.mcgill.cs.creco.data.Category;
@@ -32,74 +35,109 @@ import ca.mcgill.cs.creco.data.IDataStore;
 import ca.mcgill.cs.creco.data.Product;
 
 /**
- *Lists products alphabetically after taking a category id.
+ * Lists the products of a category by decreasing overall score, which is the
+ * order in which they are shown before the user scores any feature. The order
+ * of each category is computed once, when the sort is built, so listing a page
+ * of products does not sort anything. The sort of a new version of the data 
+ * only sorts the categories that are not the same objects as in the previous version.
  */
 @Component
+@Lazy
 public class ProductSort 
 {
+	/** The number of products listed by returnTopProducts(String). */
+	public static final int DEFAULT_NUMBER_OF_PRODUCTS = 20;
 	private static final Logger LOG = LoggerFactory.getLogger(ProductSort.class);
-	private IDataStore aDataStore;	
+	
+	// Highest overall score first, then by id so that the order does not depend on the data files
+	private static final Comparator<Product> BY_OVERALL_SCORE = new Comparator<Product>()
+	{
+		@Override
+		public int compare(Product pProduct1, Product pProduct2)
+		{
+			int comparison = pProduct2.getOverallScore().compareTo(pProduct1.getOverallScore());
+			if(comparison == 0)
+			{
+				comparison = pProduct1.getId().compareTo(pProduct2.getId());
+			}
+			return comparison;
+		}
+	};
+	
+	private final IDataStore aDataStore;
+	private final Map<String, List<Product>> aSortedProducts = new HashMap<String, List<Product>>();
 
 	/**
 	 * Constructor.
-	 * @param pDataStore The database whose products will be in the search index. 
+	 * @param pDataStore The database whose products will be sorted. 
 	 * @throws IOException If an exception is thrown during the creation of the product index.
 	 */
 	@Autowired
 	public ProductSort(IDataStore pDataStore) throws IOException
+	{
+		this(pDataStore, null);
+	}
+	
+	/**
+	 * Sorts the products of a new version of a database, reusing the order of the 
+	 * categories that are the same objects in a previous version.
+	 * @param pDataStore The database whose products will be sorted. 
+	 * @param pPrevious The sort of a previous version of the database, or null to sort all the categories.
+	 * @throws IOException If an exception is thrown during the creation of the product index.
+	 */
+	public ProductSort(IDataStore pDataStore, ProductSort pPrevious) throws IOException
 	{
 		aDataStore = pDataStore;
+		for(Category category : pDataStore.getCategories())
+		{
+			if(pPrevious != null && pPrevious.aDataStore.getCategory(category.getId()) == category)
+			{
+				aSortedProducts.put(category.getId(), pPrevious.aSortedProducts.get(category.getId()));
+				continue;
+			}
+			List<Product> scoredProducts = new ArrayList<Product>();
+			for(Product product : category.getProducts())
+			{
+				if(product.getOverallScore() != null)
+				{
+					scoredProducts.add(product);
+				}
+			}
+			Product[] sortedProducts = scoredProducts.toArray(new Product[scoredProducts.size()]);
+			Arrays.sort(sortedProducts, BY_OVERALL_SCORE);
+			aSortedProducts.put(category.getId(), Collections.unmodifiableList(Arrays.asList(sortedProducts)));
+		}
 	}
 	
 	/**
 	 * Lists top 20 products according to their overall score in a category.
 	 * @param pCategoryID The category whose products are to be displayed
-	 * @return scoredproducts - The list of products.
+	 * @return scoredproducts - The list of products, or null if the category does not exist.
 	 */
 	public List<Product> returnTopProducts(String pCategoryID)
 	{
-		Category category = aDataStore.getCategory(pCategoryID);
-		if (category == null)
+		return returnTopProducts(pCategoryID, 0, DEFAULT_NUMBER_OF_PRODUCTS);
+	}
+	
+	/**
+	 * Lists one page of the products of a category, by decreasing overall score. 
+	 * Products with the same score are ordered by id. Products without an overall 
+	 * score are not listed.
+	 * @param pCategoryID The category whose products are to be displayed.
+	 * @param pOffset The number of best products to skip.
+	 * @param pLimit The maximum number of products to list.
+	 * @return An unmodifiable list of the products, or null if the category does not exist.
+	 */
+	public List<Product> returnTopProducts(String pCategoryID, int pOffset, int pLimit)
+	{
+		List<Product> sortedProducts = aSortedProducts.get(pCategoryID);
+		if (sortedProducts == null)
 		{
 			LOG.error("Invalid category ID: " + pCategoryID);
 			return null;
 		} 
-		
-		List<Product> allScoredProducts = new ArrayList<Product>();
-		Map<Double, Product> map = new TreeMap<Double , Product>(Collections.reverseOrder());
-		List<Product> scoredProducts = new ArrayList<Product>();
-		
-		// The products get sorted as they are added to a tree map.
-				for(Product product :category.getProducts())
-				{
-					if(product.getOverallScore() != null)
-					{
-						map.put(product.getOverallScore(), product );
-					}
-				}
-				
-				
-				// Repackage the treemap as a list.
-				for( Product product : map.values()) 
-				{
-					allScoredProducts.add(product);
-				}
-
-		
-				// 20 products with the highest overall score will be displayed initially
-				
-				if(allScoredProducts.size() >=20)
-				{
-					for(int i = 0; i < 20; i++)
-					{
-						scoredProducts.add(allScoredProducts.get(i));
-					}
-				
-					return scoredProducts;
-				} 
-				else
-				{
-					return allScoredProducts;
-				}
+		int start = Math.min(Math.max(pOffset, 0), sortedProducts.size());
+		int end = start + Math.min(Math.max(pLimit, 0), sortedProducts.size() - start);
+		return sortedProducts.subList(start, end);
 	}
-}
\ No newline at end of file
+}
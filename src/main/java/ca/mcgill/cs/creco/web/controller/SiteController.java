@@ -15,6 +15,11 @@
  */
 package ca.mcgill.cs.creco.web.controller;
 
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -23,11 +28,16 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
+import ca.mcgill.cs.creco.logic.RankingState;
 import ca.mcgill.cs.creco.logic.ServiceFacade;
+import ca.mcgill.cs.creco.logic.ServiceFacade.ResponseFormat;
+import ca.mcgill.cs.creco.logic.metrics.Metrics;
 import ca.mcgill.cs.creco.web.model.UserFeaturesModel;
 
 /**
  * Currently this is the only controller for the entire web application. 
+ * The latency of each endpoint is recorded in the metrics, under the URL of
+ * the endpoint. For the pages, it does not include the rendering of the view.
  */
 @Controller
 public class SiteController
@@ -39,9 +49,16 @@ public class SiteController
 	private static final String URL_SEARCH_PRODUCTS = "/searchProducts";
 	private static final String URL_SHOW_PRODUCTS = "/products";
 	private static final String URL_UPDATE_FEATURES = "/sendFeatures";
+	private static final String URL_METRICS = "/metrics";
+	private static final String RESPONSE_CONTENT_TYPE = "text/plain;charset=UTF-8";
+	private static final String FORMAT_COMPACT = "compact";
+	private static final String SESSION_RANKING_STATE = "rankingState";
 	
 	@Autowired
 	private ServiceFacade aServiceFacade;
+	
+	@Autowired
+	private Metrics aMetrics;
 
 	
 	/**
@@ -57,7 +74,7 @@ public class SiteController
 		 pModel.addAttribute("myForm", form);
 		 return URL_SHOW_CATEGORIES;								
 	}
-
+
 	
 	/**
 	 * Returns a response body with results for the search auto-complete
@@ -70,7 +87,15 @@ public class SiteController
 	@ResponseBody
 	public String getCompletions(@RequestParam(value = "input", required = true) String pInput)
 	{  
-		return aServiceFacade.getCompletions(pInput);
+		long start = System.nanoTime();
+		try
+		{
+			return aServiceFacade.getCompletions(pInput);
+		}
+		finally
+		{
+			aMetrics.timer(URL_AUTOCOMPLETE).recordSince(start);
+		}
 	}  
 	   
 	
@@ -83,8 +108,10 @@ public class SiteController
 	@RequestMapping(URL_SEARCH_CATEGORIES)
 	public String searchCategories(@RequestParam(value = "query", required = true) String pSearchQuery, Model pModel) 
 	{
+		long start = System.nanoTime();
 		pModel.addAttribute("categories", aServiceFacade.searchCategories(pSearchQuery));
 		pModel.addAttribute("query", pSearchQuery);
+		aMetrics.timer(URL_SEARCH_CATEGORIES).recordSince(start);
 		return URL_SHOW_CATEGORIES;
 	}
 	
@@ -92,15 +119,37 @@ public class SiteController
 	 * A category is selected and this controller obtains the features
 	 * and products to display.		
 	 * @param pCategoryId The id of the selected category
+	 * @param pOffset optional number of best products to skip.
+	 * @param pLimit optional maximum number of products to show. The top 20 products are shown if both are absent.
 	 * @param pModel The model, containing the list of categories.
 	 * @return A redirection to the product page
 	 */
 	@RequestMapping(URL_SEARCH_PRODUCTS)  
-	public String searchRankedFeaturesProductsPOST(@RequestParam(value = "id", required = true) String pCategoryId, Model pModel)
+	public String searchRankedFeaturesProductsPOST(@RequestParam(value = "id", required = true) String pCategoryId, 
+			@RequestParam(required = false) Integer pOffset, @RequestParam(required = false) Integer pLimit, Model pModel)
 	{  	
-		pModel.addAttribute("productList", aServiceFacade.searchRankedFeaturesProducts(pCategoryId, pModel));			
+		long start = System.nanoTime();
+		if (pOffset == null && pLimit == null)
+		{
+			pModel.addAttribute("productList", aServiceFacade.searchRankedFeaturesProducts(pCategoryId, pModel));
+		}
+		else
+		{
+			int offset = 0;
+			if (pOffset != null)
+			{
+				offset = pOffset;
+			}
+			int limit = Integer.MAX_VALUE;
+			if (pLimit != null)
+			{
+				limit = pLimit;
+			}
+			pModel.addAttribute("productList", aServiceFacade.searchRankedFeaturesProducts(pCategoryId, offset, limit));
+		}
 		pModel.addAttribute("specFeatureList", aServiceFacade.createFeatureList(pCategoryId));
 		pModel.addAttribute("currentCategoryId", pCategoryId);
+		aMetrics.timer(URL_SEARCH_PRODUCTS).recordSince(start);
 		return URL_SHOW_PRODUCTS;
 	}
 	
@@ -108,15 +157,68 @@ public class SiteController
 	 * @author MariamN
 	 * @param pUserFeatureList list of features selected by the user.
 	 * @param pCategoryId id of the category the user searched.
-	 * @return response contains list of products and explanation matching the user selected features.
+	 * @param pOffset optional number of best ranked products to skip.
+	 * @param pLimit optional maximum number of products to return. All products are returned if absent.
+	 * @param pFormat optional format of the response: "compact" for the compact format of 
+	 * ServiceFacade.ResponseFormat, or the explained format if absent.
+	 * @param pSession The session of the user, which keeps the scores of the last ranking
+	 * so that moving a slider only rescores the feature that moved.
+	 * @param pResponse The response, to which the list of products and explanation matching the user 
+	 * selected features is streamed.
+	 * @throws IOException If the response cannot be written.
 	 */
 	@RequestMapping(URL_UPDATE_FEATURES)	
+	public void sendCurrentFeatureList(@RequestParam String pUserFeatureList, @RequestParam String pCategoryId,
+			@RequestParam(required = false) Integer pOffset, @RequestParam(required = false) Integer pLimit, 
+			@RequestParam(required = false) String pFormat, HttpSession pSession, HttpServletResponse pResponse) throws IOException
+	{
+		long start = System.nanoTime();
+		int offset = 0;
+		if (pOffset != null)
+		{
+			offset = pOffset;
+		}
+		int limit = Integer.MAX_VALUE;
+		if (pLimit != null)
+		{
+			limit = pLimit;
+		}
+		ResponseFormat format = ResponseFormat.EXPLAINED;
+		if (FORMAT_COMPACT.equals(pFormat))
+		{
+			format = ResponseFormat.COMPACT;
+		}
+		// The page parses the response itself, so it is not sent as JSON
+		pResponse.setContentType(RESPONSE_CONTENT_TYPE);
+		aServiceFacade.writeCurrentFeatureList(pUserFeatureList, pCategoryId, offset, limit, format, rankingState(pSession), 
+				pResponse.getWriter());
+		aMetrics.timer(URL_UPDATE_FEATURES).recordSince(start);
+	}
+	
+	/*
+	 * Concurrent first requests of a session can each create a state. Only the last one
+	 * is kept, and the next request rescores the products if it was not its own.
+	 */
+	private static RankingState rankingState(HttpSession pSession)
+	{
+		RankingState state = (RankingState) pSession.getAttribute(SESSION_RANKING_STATE);
+		if (state == null)
+		{
+			state = new RankingState();
+			pSession.setAttribute(SESSION_RANKING_STATE, state);
+		}
+		return state;
+	}
+	
+	/**
+	 * Returns the latency percentiles of the endpoints and of the stages of the
+	 * requests, and the distributions of the sizes of the rankings.
+	 * @return A JSON object, as described in Metrics.toJson().
+	 */
+	@RequestMapping(value = URL_METRICS, produces = "application/json")
 	@ResponseBody
-	public String sendCurrentFeatureList(@RequestParam String pUserFeatureList, @RequestParam String pCategoryId)
+	public String getMetrics()
 	{
-		
-		String response = aServiceFacade.sendCurrentFeatureList(pUserFeatureList, pCategoryId);	 
-		return response;	
-
+		return aMetrics.toJson();
 	}		
 }
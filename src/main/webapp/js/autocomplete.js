@@ -25,9 +25,9 @@ function getCompletions(val) {
             var index = mySplitResult.length;
             var i;
             var temporary="";
-            if(index>1)
+            if(index>0)
         	{
-        	for( i =0;i<10;i=i+1)
+        	for( i =0;i<index && i<10;i=i+1)
         		{
         		temporary = temporary.concat(mySplitResult[i].name);
         		temporary = temporary.concat("| ");
@@ -140,7 +140,8 @@ function sendFeatures() {
         url: '/sendFeatures',
         data: ({
             pUserFeatureList: featureObj,
-            pCategoryId: $("#categoryMarker").attr('title')
+            pCategoryId: $("#categoryMarker").attr('title'),
+            pFormat: 'compact'
         }),
         success: function (response) {
             // Spinner 
@@ -151,8 +152,9 @@ function sendFeatures() {
             var spinner_div_mask = $("<div>").attr("id", "spinner").appendTo(spinner_div);
 
             //Products
-            var jsonResponse = JSON.parse(response);
-            var completeResponse = JSON.parse(response);
+            var compactResponse = JSON.parse(response);
+            var jsonResponse = decodeProducts(compactResponse);
+            var completeResponse = decodeProducts(compactResponse);
 
             for (var r = 0; r < jsonResponse.length && r < MAX_PRODUCTS; r++) {
                 var added_explanations = 0;
@@ -270,6 +272,49 @@ function sendFeatures() {
     });
 
 }
+/*
+ * Expands the compact response of /sendFeatures into an array of products,
+ * each with the explanations of its ranks, as in the explained response.
+ * Input parameters : the parsed compact response
+ * Return value : the array of products
+ */
+function decodeProducts(compact) {
+    var products = [];
+    for (var i = 0; i < compact.productID.length; i++) {
+        var explanation = [];
+        for (var a = 0; a < compact.attributes.length; a++) {
+            var attribute = compact.attributes[a];
+            var rank = attribute.ranks[i];
+            if (rank === null) {
+                continue;
+            }
+            var isBoolean = attribute.booleans !== undefined && attribute.booleans[i] !== null;
+            var exp = {
+                name: attribute.name,
+                productsNum: compact.productsNum,
+                boolean: isBoolean,
+                rank: rank,
+                userScore: attribute.userScore,
+                isExplained: "1"
+            };
+            if (rank == -1) {
+                exp.isExplained = "-1";
+            } else if (isBoolean) {
+                exp.boolValue = attribute.booleans[i] ? "True" : "False";
+            }
+            explanation.push(exp);
+        }
+        products.push({
+            productID: compact.productID[i],
+            productName: compact.productName[i],
+            productURL: compact.productURL[i],
+            productIMAGE: compact.productIMAGE[i],
+            explanation: explanation
+        });
+    }
+    return products;
+}
+
 // Intilisating the event listeners in javascript
 function initialise() {
     var moveLeft = 20;
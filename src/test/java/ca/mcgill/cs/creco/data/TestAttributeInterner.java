@@ -0,0 +1,63 @@
+package ca.mcgill.cs.creco.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TestAttributeInterner
+{
+	@Test
+	public void testSharedAttributes()
+	{
+		AttributeInterner interner = new AttributeInterner();
+		Attribute attribute1 = interner.buildSpecification("1", "Wi-Fi", "Connects to a network", "Yes");
+		Attribute attribute2 = interner.buildSpecification("1", "Wi-Fi", "Connects to a network", new String("Yes"));
+		Attribute attribute3 = interner.buildSpecification("1", "Wi-Fi", "Connects to a network", true);
+		assertSame(attribute1, attribute2);
+		assertSame(attribute1, attribute3);
+		assertTrue(attribute1.getTypedValue().getBoolean());
+
+		Attribute attribute4 = interner.buildSpecification("1", "Wi-Fi", "Connects to a network", "No");
+		assertNotSame(attribute1, attribute4);
+		assertSame(attribute1.getDescriptor(), attribute4.getDescriptor());
+
+		Attribute attribute5 = interner.buildRating("1", "Wi-Fi", "Connects to a network", "Yes");
+		assertNotSame(attribute1.getDescriptor(), attribute5.getDescriptor());
+		assertTrue(attribute5.isRating());
+		assertSame(attribute1.getTypedValue(), attribute5.getTypedValue());
+
+		assertEquals(5, interner.getNumberOfBuiltAttributes());
+		assertEquals(3, interner.getNumberOfDistinctAttributes());
+		assertEquals(2, interner.getNumberOfDescriptors());
+	}
+
+	@Test
+	public void testExactValues()
+	{
+		AttributeInterner interner = new AttributeInterner();
+		Attribute attribute1 = interner.buildPrice("p", "Price", null, "12");
+		Attribute attribute2 = interner.buildPrice("p", "Price", null, 12);
+		Attribute attribute3 = interner.buildPrice("p", "Price", null, 12.0000001);
+		Attribute attribute4 = interner.buildPrice("p", "Price", null, "N/A");
+		Attribute attribute5 = interner.buildPrice("p", "Price", null, null);
+		assertSame(attribute1, attribute2);
+		assertNotSame(attribute1, attribute3);
+		assertEquals(12.0000001, attribute3.getTypedValue().getNumeric(), 0);
+		assertTrue(attribute4.getTypedValue().isNA());
+		assertTrue(attribute5.getTypedValue().isNull());
+		assertNotSame(attribute4, attribute5);
+		assertEquals(null, attribute5.getDescription());
+	}
+
+	@Test
+	public void testStrings()
+	{
+		AttributeInterner interner = new AttributeInterner();
+		String brand = interner.intern("Samsung");
+		assertSame(brand, interner.intern(new String("Samsung")));
+		assertEquals(null, interner.intern(null));
+	}
+}
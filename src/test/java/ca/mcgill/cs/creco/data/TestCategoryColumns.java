@@ -0,0 +1,92 @@
+package ca.mcgill.cs.creco.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCategoryColumns
+{
+	Category aCategory;
+	ArrayList<Product> aTestProducts = new ArrayList<Product>();
+
+	@Before
+	public void setup()
+	{
+		Object[] specValues = { 72, "Black", true, "NA", 36.5 };
+		for(int i = 0; i < specValues.length; i++)
+		{
+			ArrayList<Attribute> testAttributes = new ArrayList<Attribute>();
+			testAttributes.add(Attribute.buildSpecification("specId", "specName", "Mixed specification", specValues[i]));
+			if(i % 2 == 0)
+			{
+				testAttributes.add(Attribute.buildRating("ratingId", "ratingName", "Ease of use", i));
+			}
+			aTestProducts.add(new Product("productId" + i, "productName" + i, true,
+					"leafId", "brandName", "http://www.example.com", testAttributes, "", 5.0));
+		}
+		aCategory = new Category("leafId", "leafName", "rootName", aTestProducts);
+	}
+
+	@Test
+	public void testOrdinals()
+	{
+		CategoryColumns columns = aCategory.getColumns();
+		assertEquals(aTestProducts.size(), columns.size());
+		for(int i = 0; i < aTestProducts.size(); i++)
+		{
+			assertEquals(aTestProducts.get(i), columns.getProduct(i));
+			assertEquals(i, columns.getOrdinal(aTestProducts.get(i)));
+		}
+		Product stranger = new Product("productId0", "productName0", true,
+				"leafId", "brandName", "http://www.example.com", new ArrayList<Attribute>(), "", 5.0);
+		assertEquals(-1, columns.getOrdinal(stranger));
+		assertNull(columns.getColumn("noSuchId"));
+	}
+
+	@Test
+	public void testMixedColumn()
+	{
+		AttributeColumn column = aCategory.getColumns().getColumn("specId");
+		assertEquals(5, column.getPresentCount());
+		assertEquals(2, column.getNumericCount());
+		assertEquals(1, column.getStringCount());
+		assertEquals(1, column.getBooleanCount());
+
+		assertEquals(72.0, column.getNumeric(0), 0.0);
+		assertEquals("Black", column.getLabelName(column.getLabel(1)));
+		assertTrue(column.isString(1));
+		assertTrue(column.isBoolean(2));
+		assertTrue(column.getBoolean(2));
+		assertEquals("true", column.getLabelName(column.getLabel(2)));
+		assertTrue(column.isPresent(3));
+		assertFalse(column.isAvailable(3));
+		assertEquals(AttributeColumn.NO_LABEL, column.getLabel(3));
+		assertEquals(36.5, column.getNumeric(4), 0.0);
+	}
+
+	@Test
+	public void testSparseColumn()
+	{
+		AttributeColumn column = aCategory.getColumns().getColumn("ratingId");
+		assertEquals(3, column.getPresentCount());
+		assertEquals(0, column.getNumberOfLabels());
+		for(int i = 0; i < aTestProducts.size(); i++)
+		{
+			assertEquals(i % 2 == 0, column.isPresent(i));
+			assertEquals(i % 2 == 0, column.isNumeric(i));
+		}
+		assertEquals(4.0, column.getNumeric(4), 0.0);
+	}
+
+	@Test(expected = TypedValueException.class)
+	public void testMissingNumeric()
+	{
+		aCategory.getColumns().getColumn("ratingId").getNumeric(1);
+	}
+}
@@ -0,0 +1,41 @@
+package ca.mcgill.cs.creco.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestDataVersion
+{
+	private static Product product(String pId)
+	{
+		return new Product(pId, "Product " + pId, true, "c", "Brand", "", new ArrayList<Attribute>(), "", null);
+	}
+
+	@Test
+	public void testVersion()
+	{
+		List<Product> products = Arrays.asList(product("1"), product("2"), product("3"));
+		CategoryNode root = new CategoryNode("r", "Root", null);
+		CategoryNode node = new CategoryNode("c", "Category", root);
+		node.addProduct(products.get(0));
+		node.addProduct(products.get(1));
+
+		DataVersion version = new DataVersion(2, products, Arrays.asList(node));
+		assertEquals(2, version.getNumber());
+		assertEquals(3, version.getProducts().size());
+		assertEquals(1, version.getCategories().size());
+		assertSame(products.get(2), version.getProduct("3"));
+		assertNull(version.getProduct("4"));
+
+		Category category = version.getCategory("c");
+		assertEquals(2, category.getNumberOfProducts());
+		assertSame(category, products.get(0).getCategory());
+		assertNull(products.get(2).getCategory());
+	}
+}
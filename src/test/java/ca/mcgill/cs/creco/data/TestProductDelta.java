@@ -0,0 +1,188 @@
+package ca.mcgill.cs.creco.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestProductDelta
+{
+	private Map<String, Product> aProducts;
+
+	private static Product product(String pId, String pCategoryId, boolean pIsTested, String... pAttributeIds)
+	{
+		List<Attribute> attributes = new ArrayList<Attribute>();
+		for(String attributeId : pAttributeIds)
+		{
+			attributes.add(Attribute.buildSpecification(attributeId, "Attribute " + attributeId, "", "Yes"));
+		}
+		return new Product(pId, "Product " + pId, pIsTested, pCategoryId, "Brand", "", attributes, "", null);
+	}
+
+	/*
+	 * Franchise "f" with a leaf "a" and a category "b" with the leaves "b1" and "b2",
+	 * whose products have similar attributes.
+	 */
+	private static CategoryTree tree(Collection<Product> pProducts)
+	{
+		CategoryNode franchise = new CategoryNode("f", "Franchise", null);
+		CategoryNode b = new CategoryNode("b", "B", franchise);
+		franchise.addSubcategory(new CategoryNode("a", "A", franchise));
+		franchise.addSubcategory(b);
+		b.addSubcategory(new CategoryNode("b1", "B1", b));
+		b.addSubcategory(new CategoryNode("b2", "B2", b));
+
+		CategoryTree tree = new CategoryTree();
+		tree.addCategory(franchise);
+		tree.indexRootCategories();
+		tree.eliminateAllSingletons();
+		for(Product product : pProducts)
+		{
+			tree.addProduct(product);
+		}
+		tree.associateProducts();
+		tree.refresh();
+		tree.findEquivalenceClasses();
+		return tree;
+	}
+
+	private static String describe(CategoryTree pTree)
+	{
+		StringBuilder description = new StringBuilder();
+		for(String id : Arrays.asList("f", "a", "b", "b1", "b2"))
+		{
+			CategoryNode node = pTree.getCategoryNode(id);
+			Set<String> productIds = new HashSet<String>();
+			for(Product product : node.getProducts())
+			{
+				productIds.add(product.getId());
+			}
+			description.append(id + ": " + productIds.size() + " " + new TreeSet<String>(productIds) + " " + node.getJaccardIndex() 
+					+ " " + node.getTestedCount() + " " + new TreeSet<String>(pTree.getAttributeIds(node)) + "\n");
+		}
+		for(CategoryNode equivalenceClass : pTree.getCategories())
+		{
+			description.append(equivalenceClass.getId() + " ");
+		}
+		return description.toString();
+	}
+
+	@Before
+	public void setup()
+	{
+		aProducts = new LinkedHashMap<String, Product>();
+		for(Product product : Arrays.asList(product("1", "a", true, "x"), product("2", "a", false, "x", "y"),
+				product("3", "b1", true, "p", "q", "r", "s", "t"), product("4", "b2", true, "p", "q", "r", "s", "t"), 
+				product("5", "b2", false, "p", "q", "r", "s")))
+		{
+			aProducts.put(product.getId(), product);
+		}
+	}
+
+	@Test
+	public void testSameAsFullBuild()
+	{
+		CategoryTree tree = tree(aProducts.values());
+		assertEquals("a b ", describe(tree).substring(describe(tree).lastIndexOf('\n') + 1));
+
+		ProductDelta delta = new ProductDelta();
+		delta.putProduct(product("4", "b2", false, "p", "u"));
+		delta.putProduct(product("6", "b1", true, "p", "q", "v"));
+		delta.removeProduct("5");
+		delta.removeProduct("unknown");
+		Set<CategoryNode> changed = tree.applyDelta(delta);
+
+		aProducts.put("4", product("4", "b2", false, "p", "u"));
+		aProducts.put("6", product("6", "b1", true, "p", "q", "v"));
+		aProducts.remove("5");
+		assertEquals(describe(tree(aProducts.values())), describe(tree));
+
+		// "b" is no longer an equivalence class, its children are
+		List<String> changedIds = new ArrayList<String>();
+		for(CategoryNode node : changed)
+		{
+			changedIds.add(node.getId());
+		}
+		assertEquals(Arrays.asList("b1", "b2"), changedIds);
+	}
+
+	@Test
+	public void testProductRanges()
+	{
+		CategoryTree tree = tree(aProducts.values());
+		List<Product> franchiseProducts = new ArrayList<Product>(tree.getCategoryNode("f").getProducts());
+		List<Product> expected = new ArrayList<Product>(tree.getCategoryNode("a").getProducts());
+		expected.addAll(tree.getCategoryNode("b").getProducts());
+		assertEquals(expected, franchiseProducts);
+		assertEquals(new HashSet<String>(Arrays.asList("p", "q", "r", "s", "t")), tree.getAttributeIds(tree.getCategoryNode("b")));
+		assertEquals(1.0, tree.getCategoryNode("b").getJaccardIndex(), 0);
+		assertEquals(0.0, tree.getCategoryNode("f").getJaccardIndex(), 0);
+		
+		ProductDelta delta = new ProductDelta();
+		delta.putProduct(product("7", "a", true, "x"));
+		tree.applyDelta(delta);
+		assertEquals(3, tree.getCategoryNode("b").getCount());
+		assertEquals("7", new ArrayList<Product>(tree.getCategoryNode("f").getProducts()).get(2).getId());
+	}
+
+	@Test
+	public void testOnlyPathChanges()
+	{
+		CategoryTree tree = tree(aProducts.values());
+		ProductDelta delta = new ProductDelta();
+		delta.putProduct(product("7", "a", true, "x"));
+		Set<CategoryNode> changed = tree.applyDelta(delta);
+		assertEquals(1, changed.size());
+		assertEquals("a", changed.iterator().next().getId());
+		assertEquals(3, tree.getCategoryNode("a").getCount());
+		assertEquals(2, tree.getCategoryNode("a").getTestedCount());
+		assertEquals(6, tree.getCategoryNode("f").getCount());
+	}
+
+	@Test
+	public void testReprocess()
+	{
+		CategoryTree tree = tree(aProducts.values());
+		String expected = describe(tree);
+		tree.reprocess();
+		assertEquals(expected, describe(tree));
+	}
+
+	@Test
+	public void testVersions()
+	{
+		CategoryTree tree = tree(aProducts.values());
+		DataVersion version1 = new DataVersion(1, tree.getProducts(), tree.getCategories());
+		assertEquals(new HashSet<String>(Arrays.asList("a", "b")), version1.getChangedCategories());
+
+		ProductDelta delta = new ProductDelta();
+		delta.putProduct(product("4", "b2", false, "p", "u"));
+		Set<CategoryNode> changed = tree.applyDelta(delta);
+		DataVersion version2 = new DataVersion(2, version1, tree.getProducts(), tree.getCategories(), changed);
+		assertTrue(version1.getCategory("a") == version2.getCategory("a"));
+		assertEquals(new HashSet<String>(Arrays.asList("b1", "b2")), version2.getChangedCategories());
+		assertEquals(new HashSet<String>(Arrays.asList("b")), version2.getRemovedCategories());
+		assertEquals(3, version1.getCategory("b").getNumberOfProducts());
+		assertEquals("p", version2.getProduct("4").getAttributes().iterator().next().getId());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownCategory()
+	{
+		CategoryTree tree = tree(aProducts.values());
+		ProductDelta delta = new ProductDelta();
+		delta.putProduct(product("8", "zzz", true));
+		tree.applyDelta(delta);
+	}
+}
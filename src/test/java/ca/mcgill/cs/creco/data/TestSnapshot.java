@@ -0,0 +1,166 @@
+package ca.mcgill.cs.creco.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestSnapshot
+{
+	private static final long FINGERPRINT = 42;
+
+	CategoryTree aTree;
+	File aFile;
+
+	@Before
+	public void setup() throws IOException
+	{
+		// A root with a leaf, a singleton and a category with two leaves
+		CategoryNode root = new CategoryNode("root", "Root", null);
+		CategoryNode leaf = new CategoryNode("leaf", "Leaf", root);
+		CategoryNode singleton = new CategoryNode("singleton", "Singleton", root);
+		CategoryNode inner = new CategoryNode("inner", "Inner", singleton);
+		CategoryNode first = new CategoryNode("first", "First", inner);
+		CategoryNode second = new CategoryNode("second", "Second", inner);
+		root.addSubcategory(leaf);
+		root.addSubcategory(singleton);
+		singleton.addSubcategory(inner);
+		inner.addSubcategory(first);
+		inner.addSubcategory(second);
+
+		aTree = new CategoryTree();
+		aTree.addCategory(root);
+		aTree.indexRootCategories();
+		aTree.eliminateAllSingletons();
+
+		Object[] values = { 72, "Black", true, "NA", 36.5, null, "12\"" };
+		String[] categories = { "leaf", "first", "second" };
+		for(int i = 0; i < values.length; i++)
+		{
+			ArrayList<Attribute> attributes = new ArrayList<Attribute>();
+			attributes.add(Attribute.buildSpecification("specId", "Spec", "Mixed specification", values[i]));
+			attributes.add(Attribute.buildRating("254", "Overall score", null, i * 10));
+			if(i % 2 == 0)
+			{
+				attributes.add(Attribute.buildPrice("priceId", "Price", "Price in dollars", i + 0.99));
+			}
+			boolean isTested = i % 3 == 1;
+			String brandName = null;
+			if(i % 2 == 1)
+			{
+				brandName = "Brand" + i;
+			}
+			aTree.addProduct(new Product("productId" + i, "Product \u00e9" + i, isTested, categories[i % categories.length],
+					brandName, "http://www.example.com/" + i, attributes, "image" + i, Double.valueOf(i)));
+		}
+		aTree.associateProducts();
+		aTree.refresh();
+		aTree.findEquivalenceClasses();
+
+		aFile = File.createTempFile("crdata", ".snapshot");
+		SnapshotWriter.write(aFile, FINGERPRINT, aTree);
+	}
+
+	@After
+	public void tearDown()
+	{
+		aFile.delete();
+	}
+
+	@Test
+	public void testProducts() throws IOException
+	{
+		SnapshotLoadingService service = new SnapshotLoadingService(aFile, FINGERPRINT);
+		CategoryTree tree = new CategoryTree();
+		service.loadCategories(tree);
+		service.loadProducts(tree);
+
+		assertEquals(aTree.getProducts().size(), tree.getProducts().size());
+		Iterator<Product> loaded = tree.getProducts().iterator();
+		for(Product expected : aTree.getProducts())
+		{
+			Product actual = loaded.next();
+			assertEquals(expected.getId(), actual.getId());
+			assertEquals(expected.getName(), actual.getName());
+			assertEquals(expected.getRawBrandName(), actual.getRawBrandName());
+			assertEquals(expected.isTested(), actual.isTested());
+			assertEquals(expected.isRated(), actual.isRated());
+			assertEquals(expected.isPriced(), actual.isPriced());
+			assertEquals(expected.getCategoryId(), actual.getCategoryId());
+			assertEquals(expected.getUrl(), actual.getUrl());
+			assertEquals(expected.getImage(), actual.getImage());
+			assertEquals(expected.getOverallScore(), actual.getOverallScore());
+
+			Iterator<Attribute> attributes = actual.getAttributes().iterator();
+			for(Attribute attribute : expected.getAttributes())
+			{
+				Attribute copy = attributes.next();
+				assertEquals(attribute.getId(), copy.getId());
+				assertEquals(attribute.getName(), copy.getName());
+				assertEquals(attribute.getDescription(), copy.getDescription());
+				assertEquals(attribute.getAttributeType(), copy.getAttributeType());
+				assertEquals(attribute.getTypedValue(), copy.getTypedValue());
+			}
+		}
+	}
+
+	@Test
+	public void testEquivalenceClasses() throws IOException
+	{
+		SnapshotLoadingService service = new SnapshotLoadingService(aFile, FINGERPRINT);
+		assertNull(service.getEquivalenceClasses());
+		CategoryTree tree = new CategoryTree();
+		service.loadCategories(tree);
+		service.loadProducts(tree);
+
+		assertEquals(1, tree.getRootCategories().size());
+		assertEquals(aTree.getCategories().size(), service.getEquivalenceClasses().size());
+		Iterator<CategoryNode> loaded = service.getEquivalenceClasses().iterator();
+		for(CategoryNode expected : aTree.getCategories())
+		{
+			CategoryNode actual = loaded.next();
+			assertEquals(expected.getId(), actual.getId());
+			assertEquals(expected.getName(), actual.getName());
+			assertEquals(expected.getRootCategoryName(), actual.getRootCategoryName());
+			assertEquals(expected.getCount(), actual.getCount());
+			Iterator<Product> products = actual.getProducts().iterator();
+			for(Product product : expected.getProducts())
+			{
+				assertEquals(product.getId(), products.next().getId());
+			}
+		}
+	}
+
+	@Test
+	public void testSingletonsEliminated() throws IOException
+	{
+		SnapshotLoadingService service = new SnapshotLoadingService(aFile, FINGERPRINT);
+		CategoryTree tree = new CategoryTree();
+		service.loadCategories(tree);
+		tree.indexRootCategories();
+		assertNull(tree.getCategoryNode("singleton"));
+		assertEquals("root", tree.getCategoryNode("inner").getParent().getId());
+	}
+
+	@Test
+	public void testStaleSnapshot()
+	{
+		try
+		{
+			new SnapshotLoadingService(aFile, FINGERPRINT + 1);
+			assertTrue(false);
+		}
+		catch(IOException e)
+		{
+			assertTrue(e.getMessage().contains("current data files"));
+		}
+	}
+}
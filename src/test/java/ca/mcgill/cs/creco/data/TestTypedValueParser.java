@@ -0,0 +1,65 @@
+package ca.mcgill.cs.creco.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import ca.mcgill.cs.creco.data.TypedValueParser.Rule;
+
+public class TestTypedValueParser
+{
+	@Test
+	public void testRules()
+	{
+		assertEquals(new TypedValue(-28), TypedValueParser.parse("-28"));
+		assertEquals(new TypedValue(28.5), TypedValueParser.parse("28.5"));
+		assertTrue(TypedValueParser.parse("n/A").isNA());
+		assertEquals(new TypedValue(true), TypedValueParser.parse("yes"));
+		assertEquals(new TypedValue(false), TypedValueParser.parse("No"));
+		assertEquals(new TypedValue(23), TypedValueParser.parse("23 \""));
+		assertEquals(new TypedValue(6), TypedValueParser.parse("6 hours"));
+		assertEquals(new TypedValue(20), TypedValueParser.parse("5-35Lbs"));
+		assertEquals(new TypedValue(13), TypedValueParser.parse("Limited to 4-22\""));
+		assertEquals(new TypedValue(0), TypedValueParser.parse("Limited to weekends"));
+		assertTrue(TypedValueParser.parse("-").isString());
+		assertTrue(TypedValueParser.parse("5.").isString());
+		assertTrue(TypedValueParser.parse("-5\"").isString());
+		assertTrue(TypedValueParser.parse("").isString());
+		assertTrue(TypedValueParser.parse("Nope").isString());
+		assertTrue(TypedValueParser.parse("5-35\nLbs").isString());
+	}
+
+	@Test
+	public void testCache()
+	{
+		long hits = TypedValueParser.getCacheHits();
+		assertSame(TypedValueParser.parse("Yes"), TypedValueParser.parse("Yes"));
+		assertSame(TypedValueParser.parse("N/A"), TypedValueParser.parse("N/A"));
+		assertTrue(TypedValueParser.getCacheHits() >= hits + 4);
+
+		// Other short values are cached once parsed, whatever was parsed before
+		for(int i = 0; i < 2 * TypedValueParser.MAX_CACHE_SIZE; i++)
+		{
+			TypedValueParser.parse("Value " + i);
+		}
+		TypedValue value = TypedValueParser.parse("Stainless");
+		assertSame(value, TypedValueParser.parse("Stainless"));
+
+		String longValue = "A value much too long to be worth caching";
+		assertEquals(TypedValueParser.parse(longValue), TypedValueParser.parse(longValue));
+	}
+
+	@Test
+	public void testCounts()
+	{
+		long yes = TypedValueParser.getCounts().get(Rule.YES);
+		long strings = TypedValueParser.getCounts().get(Rule.STRING);
+		new TypedValue("Yes");
+		new TypedValue("Yes");
+		new TypedValue("Black");
+		assertTrue(TypedValueParser.getCounts().get(Rule.YES) >= yes + 2);
+		assertTrue(TypedValueParser.getCounts().get(Rule.STRING) >= strings + 1);
+	}
+}
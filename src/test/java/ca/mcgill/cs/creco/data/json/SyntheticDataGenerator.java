@@ -0,0 +1,660 @@
+/**
+ * Copyright 2014 McGill University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package ca.mcgill.cs.creco.data.json;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes a random data set in the format of the Consumer Reports JSON files,
+ * so that the data loading and the services can be tried without the real data.
+ * The same seed and settings always produce the same files.
+ *
+ * Each franchise is the root of a tree of categories of a given depth and fanout,
+ * and the products of the leaves of the tree are written to one of the product
+ * files read by CRData. The products are streamed to the files, so the size of
+ * the data set is only bounded by the disk. Half of the specifications of a leaf
+ * category are shared by all the categories of its franchise, and the other half
+ * are its own.
+ *
+ * The generator can also be run from the command line, see {@link #main(String[])}.
+ */
+public final class SyntheticDataGenerator
+{
+	/** The name of the file of categories. */
+	public static final String CATEGORY_FILE_NAME = "category.json";
+	/** The name of the file of dead links. */
+	public static final String DEAD_LINKS_FILE_NAME = "dead_links.json";
+
+	private static final Logger LOG = LoggerFactory.getLogger(SyntheticDataGenerator.class);
+
+	private static final String[] PRODUCT_FILE_NAMES =
+		{
+			"appliances.json", "electronicsComputers.json",
+			"cars.json", "health.json", "homeGarden.json",
+			"food.json", "babiesKids.json", "money.json"
+		};
+	// The types of the levels below the franchise, by depth, as found in the category file.
+	private static final String[][] LEVEL_TYPES =
+		{
+			{ "category" },
+			{ "subfranchise", "category" },
+			{ "subfranchise", "category", "subcategory" },
+			{ "subfranchise", "supercategory", "category", "subcategory" }
+		};
+	private static final String SUBCATEGORY = "subcategory";
+	private static final String[] CATEGORY_WORDS =
+		{
+			"Refrigerators", "Dishwashers", "Humidifiers", "Televisions", "Cameras", "Laptops", "Drills",
+			"Blenders", "Mattresses", "Strollers", "Printers", "Headphones", "Mowers", "Grills", "Vacuums"
+		};
+	private static final String[] QUALIFIER_WORDS =
+		{
+			"Compact", "Portable", "Smart", "Wireless", "Electric", "Outdoor", "Professional", "Budget"
+		};
+	private static final String[] BRANDS =
+		{
+			"Acme", "Globex", "Initech", "Umbrella", "Hooli", "Vandelay", "Soylent", "Wonka"
+		};
+	private static final String[] STRING_VALUES =
+		{
+			"Stainless steel", "Black", "White", "Plastic", "Aluminum", "Glass"
+		};
+	private static final String USAGE = "Usage: SyntheticDataGenerator <directory> [seed=<n>] [franchises=<n>] [depth=<n>] [fanout=<n>] "
+			+ "[products=<n>] [specifications=<n>] [sparsity=<ratio>] [types=<integers>,<decimals>,<booleans>,<strings>] [strings=<n>]";
+	private static final String YES = "Yes";
+	private static final String NO = "No";
+	private static final String NOT_AVAILABLE = "N/A";
+	private static final String PRICE_ID = "price";
+	private static final String URL_PREFIX = "http://www.consumerreports.org/products/";
+	private static final int INTEGER_VALUES = 0;
+	private static final int DECIMAL_VALUES = 1;
+	private static final int BOOLEAN_VALUES = 2;
+	private static final int NUMBER_OF_VALUE_TYPES = 4;
+	private static final int NUMBER_OF_RATINGS = 3;
+	private static final int MAX_RATING = 5;
+	private static final int MAX_INTEGER_VALUE = 100;
+	private static final double DECIMAL_SCALE = 10.0;
+	private static final int MIN_OVERALL_SCORE = 20;
+	private static final int OVERALL_SCORE_RANGE = 80;
+	private static final int MAX_PRICE = 2000;
+	private static final double TESTED_RATIO = 0.8;
+	private static final double NOT_AVAILABLE_RATIO = 0.05;
+	private static final double DEAD_LINK_RATIO = 0.1;
+	private static final int LINK_OK = 200;
+	private static final int LINK_NOT_FOUND = 404;
+
+	private final long aSeed;
+	private int aNumberOfFranchises = 2;
+	private int aCategoryDepth = 1;
+	private int aCategoryFanout = 2;
+	private int aProductsPerCategory = 10;
+	private int aSpecificationsPerCategory = 8;
+	private double aSparsity;
+	private int[] aValueTypeWeights = { 1, 1, 1, 1 };
+	private int aStringCardinality = STRING_VALUES.length;
+
+	private Random aRandom;
+	private long aNumberOfProducts;
+	private int aNumberOfCategories;
+
+	/**
+	 * @param pSeed The seed of the random data.
+	 */
+	public SyntheticDataGenerator(long pSeed)
+	{
+		aSeed = pSeed;
+	}
+
+	/**
+	 * @param pNumberOfFranchises The number of top-level categories. The default is 2.
+	 */
+	public void setNumberOfFranchises(int pNumberOfFranchises)
+	{
+		aNumberOfFranchises = pNumberOfFranchises;
+	}
+
+	/**
+	 * @param pCategoryDepth The number of levels of categories below each franchise, at least 1.
+	 * The products are in the categories of the last level. The default is 1.
+	 */
+	public void setCategoryDepth(int pCategoryDepth)
+	{
+		if(pCategoryDepth < 1)
+		{
+			throw new IllegalArgumentException("The category depth must be at least 1: " + pCategoryDepth);
+		}
+		aCategoryDepth = pCategoryDepth;
+	}
+
+	/**
+	 * @param pCategoryFanout The number of subcategories of each franchise and of each category
+	 * above the last level, at least 2. The default is 2.
+	 */
+	public void setCategoryFanout(int pCategoryFanout)
+	{
+		if(pCategoryFanout < 2)
+		{
+			throw new IllegalArgumentException("The category fanout must be at least 2: " + pCategoryFanout);
+		}
+		aCategoryFanout = pCategoryFanout;
+	}
+
+	/**
+	 * @param pProductsPerCategory The number of products in each category of the last level.
+	 * The default is 10.
+	 */
+	public void setProductsPerCategory(int pProductsPerCategory)
+	{
+		aProductsPerCategory = pProductsPerCategory;
+	}
+
+	/**
+	 * @param pSpecificationsPerCategory The number of specifications of the products
+	 * of each category. The default is 8.
+	 */
+	public void setSpecificationsPerCategory(int pSpecificationsPerCategory)
+	{
+		aSpecificationsPerCategory = pSpecificationsPerCategory;
+	}
+
+	/**
+	 * @param pSparsity The probability that a product does not have one of the specifications
+	 * of its category, from 0 inclusive to 1 exclusive. The default is 0.
+	 */
+	public void setSparsity(double pSparsity)
+	{
+		if(pSparsity < 0 || pSparsity >= 1)
+		{
+			throw new IllegalArgumentException("The sparsity must be in [0, 1): " + pSparsity);
+		}
+		aSparsity = pSparsity;
+	}
+
+	/**
+	 * Sets the relative number of specifications with each type of value. The type of
+	 * the values of a specification only depends on its id. By default, each type is
+	 * equally likely.
+	 * @param pIntegers The weight of specifications with integers written as strings, as in "12".
+	 * @param pDecimals The weight of specifications with numbers.
+	 * @param pBooleans The weight of specifications with "Yes" and "No" values.
+	 * @param pStrings The weight of specifications with other strings.
+	 */
+	public void setValueTypeMix(int pIntegers, int pDecimals, int pBooleans, int pStrings)
+	{
+		if(pIntegers < 0 || pDecimals < 0 || pBooleans < 0 || pStrings < 0 || pIntegers + pDecimals + pBooleans + pStrings == 0)
+		{
+			throw new IllegalArgumentException("The weights of the value types must be positive or zero, and not all zero");
+		}
+		aValueTypeWeights = new int[] { pIntegers, pDecimals, pBooleans, pStrings };
+	}
+
+	/**
+	 * @param pStringCardinality The number of distinct values of each specification with strings,
+	 * at least 1. The default is 6.
+	 */
+	public void setStringCardinality(int pStringCardinality)
+	{
+		if(pStringCardinality < 1)
+		{
+			throw new IllegalArgumentException("The string cardinality must be at least 1: " + pStringCardinality);
+		}
+		aStringCardinality = pStringCardinality;
+	}
+
+	/**
+	 * @return The names of the product files, in the order expected by JsonLoadingService.
+	 */
+	public static String[] getProductFileNames()
+	{
+		return PRODUCT_FILE_NAMES.clone();
+	}
+
+	/**
+	 * @return The number of products written by the last call to generate.
+	 */
+	public long getNumberOfProducts()
+	{
+		return aNumberOfProducts;
+	}
+
+	/**
+	 * @return The number of categories, including the franchises, written by the last call to generate.
+	 */
+	public int getNumberOfCategories()
+	{
+		return aNumberOfCategories;
+	}
+
+	/**
+	 * Writes the category file, the product files and the dead links file.
+	 * @param pDirectory The directory where to write the files. Existing files are replaced.
+	 * @throws IOException If the files cannot be written.
+	 */
+	public void generate(File pDirectory) throws IOException
+	{
+		aRandom = new Random(aSeed);
+		aNumberOfProducts = 0;
+		aNumberOfCategories = 0;
+		Gson gson = new Gson();
+
+		List<CategoryStub> franchises = new ArrayList<CategoryStub>();
+		JsonWriter[] productWriters = new JsonWriter[PRODUCT_FILE_NAMES.length];
+		JsonWriter deadLinksWriter = open(new File(pDirectory, DEAD_LINKS_FILE_NAME));
+		try
+		{
+			for(int i = 0; i < productWriters.length; i++)
+			{
+				productWriters[i] = open(new File(pDirectory, PRODUCT_FILE_NAMES[i]));
+				productWriters[i].beginArray();
+			}
+			deadLinksWriter.beginArray();
+			for(int i = 0; i < aNumberOfFranchises; i++)
+			{
+				franchises.add(writeFranchise(i, productWriters[i % productWriters.length], deadLinksWriter, gson));
+			}
+			for(JsonWriter writer : productWriters)
+			{
+				writer.endArray();
+			}
+			deadLinksWriter.endArray();
+		}
+		finally
+		{
+			for(JsonWriter writer : productWriters)
+			{
+				if(writer != null)
+				{
+					writer.close();
+				}
+			}
+			deadLinksWriter.close();
+		}
+
+		JsonWriter categoryWriter = open(new File(pDirectory, CATEGORY_FILE_NAME));
+		try
+		{
+			gson.toJson(franchises.toArray(new CategoryStub[franchises.size()]), CategoryStub[].class, categoryWriter);
+		}
+		finally
+		{
+			categoryWriter.close();
+		}
+	}
+
+	/**
+	 * Writes a data set to a directory. The first argument is the directory, which is created
+	 * if needed, and the others are settings of the form name=value: seed, franchises, depth,
+	 * fanout, products (per category of the last level), specifications, sparsity, types (four
+	 * weights separated by commas, see setValueTypeMix) and strings (the string cardinality).
+	 * For example, "data franchises=40 depth=3 fanout=5 products=1000" writes 5 million products.
+	 * @param pArguments The directory and the settings.
+	 * @throws IOException If the files cannot be written.
+	 */
+	public static void main(String[] pArguments) throws IOException
+	{
+		if(pArguments.length == 0)
+		{
+			throw new IllegalArgumentException(USAGE);
+		}
+		long seed = 1;
+		List<String> settings = new ArrayList<String>();
+		for(int i = 1; i < pArguments.length; i++)
+		{
+			if(pArguments[i].startsWith("seed="))
+			{
+				seed = Long.parseLong(pArguments[i].substring("seed=".length()));
+			}
+			else
+			{
+				settings.add(pArguments[i]);
+			}
+		}
+		SyntheticDataGenerator generator = new SyntheticDataGenerator(seed);
+		for(String setting : settings)
+		{
+			generator.configure(setting);
+		}
+
+		File directory = new File(pArguments[0]);
+		if(!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IOException("Cannot create the directory " + directory);
+		}
+		long start = System.currentTimeMillis();
+		generator.generate(directory);
+		LOG.info("Wrote " + generator.getNumberOfProducts() + " products in " + generator.getNumberOfCategories() + " categories to "
+				+ directory + " in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/*
+	 * Applies a name=value setting of the command line.
+	 */
+	private void configure(String pSetting)
+	{
+		int separator = pSetting.indexOf('=');
+		if(separator < 0)
+		{
+			throw new IllegalArgumentException("Not a setting: " + pSetting + "\n" + USAGE);
+		}
+		String name = pSetting.substring(0, separator);
+		String value = pSetting.substring(separator + 1);
+		if(name.equals("franchises"))
+		{
+			setNumberOfFranchises(Integer.parseInt(value));
+		}
+		else if(name.equals("depth"))
+		{
+			setCategoryDepth(Integer.parseInt(value));
+		}
+		else if(name.equals("fanout"))
+		{
+			setCategoryFanout(Integer.parseInt(value));
+		}
+		else if(name.equals("products"))
+		{
+			setProductsPerCategory(Integer.parseInt(value));
+		}
+		else if(name.equals("specifications"))
+		{
+			setSpecificationsPerCategory(Integer.parseInt(value));
+		}
+		else if(name.equals("sparsity"))
+		{
+			setSparsity(Double.parseDouble(value));
+		}
+		else if(name.equals("types"))
+		{
+			String[] weights = value.split(",");
+			if(weights.length != NUMBER_OF_VALUE_TYPES)
+			{
+				throw new IllegalArgumentException("Expected " + NUMBER_OF_VALUE_TYPES + " weights: " + value);
+			}
+			setValueTypeMix(Integer.parseInt(weights[INTEGER_VALUES]), Integer.parseInt(weights[DECIMAL_VALUES]),
+					Integer.parseInt(weights[BOOLEAN_VALUES]), Integer.parseInt(weights[NUMBER_OF_VALUE_TYPES - 1]));
+		}
+		else if(name.equals("strings"))
+		{
+			setStringCardinality(Integer.parseInt(value));
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unknown setting: " + name + "\n" + USAGE);
+		}
+	}
+
+	private static JsonWriter open(File pFile) throws IOException
+	{
+		return new JsonWriter(new BufferedWriter(new OutputStreamWriter(new FileOutputStream(pFile), "UTF-8")));
+	}
+
+	/*
+	 * Writes the products of a franchise, and returns the franchise.
+	 */
+	private CategoryStub writeFranchise(int pIndex, JsonWriter pProductWriter, JsonWriter pDeadLinksWriter, Gson pGson) throws IOException
+	{
+		String franchiseId = "f" + pIndex;
+		CategoryStub franchise = category(franchiseId, CATEGORY_WORDS[pIndex % CATEGORY_WORDS.length], "franchise", franchiseId);
+		aNumberOfCategories++;
+
+		CategoryStub[] children = new CategoryStub[aCategoryFanout];
+		int productsCount = 0;
+		for(int i = 0; i < children.length; i++)
+		{
+			String name = QUALIFIER_WORDS[i % QUALIFIER_WORDS.length] + " " + CATEGORY_WORDS[(pIndex + i) % CATEGORY_WORDS.length];
+			children[i] = category(franchiseId + "-" + i, name, levelType(0), franchiseId);
+			productsCount += writeCategory(children[i], 0, pProductWriter, pDeadLinksWriter, pGson);
+		}
+		franchise.downLevel = downLevel(levelType(0), children);
+		franchise.productsCount = productsCount;
+		return franchise;
+	}
+
+	/*
+	 * Writes the products of a category at a level below the franchise, starting
+	 * from 0, and returns their number.
+	 */
+	private int writeCategory(CategoryStub pCategory, int pLevel, JsonWriter pProductWriter, JsonWriter pDeadLinksWriter, Gson pGson)
+			throws IOException
+	{
+		aNumberOfCategories++;
+		if(pLevel == aCategoryDepth - 1)
+		{
+			writeProducts(pCategory, pProductWriter, pDeadLinksWriter, pGson);
+			pCategory.productsCount = aProductsPerCategory;
+			return aProductsPerCategory;
+		}
+
+		CategoryStub[] children = new CategoryStub[aCategoryFanout];
+		int productsCount = 0;
+		for(int i = 0; i < children.length; i++)
+		{
+			String name = QUALIFIER_WORDS[(pLevel + i + 1) % QUALIFIER_WORDS.length] + " " + pCategory.name;
+			children[i] = category(pCategory.id + "-" + i, name, levelType(pLevel + 1), pCategory.franchise);
+			productsCount += writeCategory(children[i], pLevel + 1, pProductWriter, pDeadLinksWriter, pGson);
+		}
+		pCategory.downLevel = downLevel(levelType(pLevel + 1), children);
+		pCategory.productsCount = productsCount;
+		return productsCount;
+	}
+
+	private void writeProducts(CategoryStub pCategory, JsonWriter pProductWriter, JsonWriter pDeadLinksWriter, Gson pGson) throws IOException
+	{
+		int sharedSpecifications = aSpecificationsPerCategory / 2;
+		List<String> specificationIds = new ArrayList<String>();
+		for(int i = 0; i < aSpecificationsPerCategory; i++)
+		{
+			if(i < sharedSpecifications)
+			{
+				specificationIds.add(pCategory.franchise + "-s" + i);
+			}
+			else
+			{
+				specificationIds.add(pCategory.id + "-s" + i);
+			}
+		}
+		for(int i = 0; i < aProductsPerCategory; i++)
+		{
+			ProductStub product = product(pCategory, specificationIds);
+			pGson.toJson(product, ProductStub.class, pProductWriter);
+			pGson.toJson(deadLink(product.id), LinkResponseStub.class, pDeadLinksWriter);
+		}
+	}
+
+	/*
+	 * The type of the categories of a level below the franchise, starting from 0.
+	 */
+	private String levelType(int pLevel)
+	{
+		String[] types = LEVEL_TYPES[Math.min(aCategoryDepth, LEVEL_TYPES.length) - 1];
+		if(pLevel < types.length)
+		{
+			return types[pLevel];
+		}
+		return SUBCATEGORY;
+	}
+
+	private static DownLevelStub downLevel(String pType, CategoryStub[] pChildren)
+	{
+		DownLevelStub downLevel = new DownLevelStub();
+		if(pType.equals("subfranchise"))
+		{
+			downLevel.subfranchise = pChildren;
+		}
+		else if(pType.equals("supercategory"))
+		{
+			downLevel.supercategory = pChildren;
+		}
+		else if(pType.equals(SUBCATEGORY))
+		{
+			downLevel.subcategory = pChildren;
+		}
+		else
+		{
+			downLevel.category = pChildren;
+		}
+		return downLevel;
+	}
+
+	private static CategoryStub category(String pId, String pName, String pType, String pFranchiseId)
+	{
+		CategoryStub category = new CategoryStub();
+		category.id = pId;
+		category.name = pName;
+		category.singularName = pName;
+		category.pluralName = pName;
+		category.type = pType;
+		category.franchise = pFranchiseId;
+		return category;
+	}
+
+	private ProductStub product(CategoryStub pCategory, List<String> pSpecificationIds)
+	{
+		ProductStub product = new ProductStub();
+		product.id = Long.toString(aNumberOfProducts);
+		aNumberOfProducts++;
+		product.brand = new BrandStub();
+		product.brand.displayName = BRANDS[aRandom.nextInt(BRANDS.length)];
+		product.displayName = pCategory.singularName + " " + product.id;
+		product.name = product.displayName;
+		product.modelOverviewPageUrl = URL_PREFIX + product.id;
+		product.imageThumbnail = URL_PREFIX + product.id + ".jpg";
+		product.franchise = pCategory.franchise;
+		product.theCategory = pCategory.name;
+		product.category = new CategoryStub();
+		product.category.id = pCategory.id;
+		product.category.name = pCategory.name;
+		product.isTested = aRandom.nextDouble() < TESTED_RATIO;
+		if(product.isTested)
+		{
+			product.overallScore = (double) (MIN_OVERALL_SCORE + aRandom.nextInt(OVERALL_SCORE_RANGE));
+			product.ratings = new RatingStub[NUMBER_OF_RATINGS];
+			for(int i = 0; i < NUMBER_OF_RATINGS; i++)
+			{
+				product.ratings[i] = new RatingStub();
+				attribute(product.ratings[i], pCategory.id + "-r" + i, "Rating " + i, 1 + aRandom.nextInt(MAX_RATING));
+			}
+		}
+
+		List<SpecStub> specs = new ArrayList<SpecStub>();
+		for(String id : pSpecificationIds)
+		{
+			if(aSparsity > 0 && aRandom.nextDouble() < aSparsity)
+			{
+				continue;
+			}
+			SpecStub spec = new SpecStub();
+			attribute(spec, id, "Specification " + id, specificationValue(id));
+			specs.add(spec);
+		}
+		product.specs = specs.toArray(new SpecStub[specs.size()]);
+
+		product.price = new PriceStub();
+		product.price.attributeId = PRICE_ID;
+		product.price.displayName = "Price";
+		product.price.description = "The price of the product";
+		product.price.value = (double) (1 + aRandom.nextInt(MAX_PRICE));
+		return product;
+	}
+
+	private static void attribute(AttributeStub pAttribute, String pId, String pName, Object pValue)
+	{
+		pAttribute.attributeId = pId;
+		pAttribute.displayName = pName;
+		pAttribute.description = "The " + pName.toLowerCase() + " of the product";
+		pAttribute.value = pValue;
+	}
+
+	/*
+	 * The type of the values of a specification only depends on its id.
+	 */
+	private int valueType(String pId)
+	{
+		int total = 0;
+		for(int weight : aValueTypeWeights)
+		{
+			total += weight;
+		}
+		int position = (pId.hashCode() & Integer.MAX_VALUE) % total;
+		int type = 0;
+		while(position >= aValueTypeWeights[type])
+		{
+			position -= aValueTypeWeights[type];
+			type++;
+		}
+		return type;
+	}
+
+	private Object specificationValue(String pId)
+	{
+		if(aRandom.nextDouble() < NOT_AVAILABLE_RATIO)
+		{
+			return NOT_AVAILABLE;
+		}
+		switch(valueType(pId))
+		{
+		case INTEGER_VALUES:
+			return Integer.toString(aRandom.nextInt(MAX_INTEGER_VALUE));
+		case DECIMAL_VALUES:
+			return aRandom.nextInt(MAX_INTEGER_VALUE) / DECIMAL_SCALE;
+		case BOOLEAN_VALUES:
+			if(aRandom.nextBoolean())
+			{
+				return YES;
+			}
+			return NO;
+		default:
+			return stringValue(aRandom.nextInt(aStringCardinality));
+		}
+	}
+
+	/*
+	 * The strings of the fixed set, followed by numbered variants of them.
+	 */
+	private static String stringValue(int pIndex)
+	{
+		String value = STRING_VALUES[pIndex % STRING_VALUES.length];
+		if(pIndex >= STRING_VALUES.length)
+		{
+			value += " " + (pIndex / STRING_VALUES.length + 1);
+		}
+		return value;
+	}
+
+	private LinkResponseStub deadLink(String pProductId)
+	{
+		LinkResponseStub link = new LinkResponseStub();
+		link.product_id = pProductId;
+		link.state = LINK_OK;
+		if(aRandom.nextDouble() < DEAD_LINK_RATIO)
+		{
+			link.state = LINK_NOT_FOUND;
+		}
+		return link;
+	}
+}
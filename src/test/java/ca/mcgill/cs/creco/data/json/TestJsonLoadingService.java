@@ -0,0 +1,161 @@
+package ca.mcgill.cs.creco.data.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.mcgill.cs.creco.data.CategoryNode;
+import ca.mcgill.cs.creco.data.IDataCollector;
+import ca.mcgill.cs.creco.data.Product;
+
+public class TestJsonLoadingService
+{
+	private static final int NUMBER_OF_PRODUCTS = 1000;
+	private static final long TIMEOUT_MS = 60000;
+
+	private File aDirectory;
+	private List<Product> aProducts = new ArrayList<Product>();
+
+	private IDataCollector aCollector = new IDataCollector()
+	{
+		@Override
+		public void addCategory(CategoryNode pCategory)
+		{}
+
+		@Override
+		public void addProduct(Product pProduct)
+		{
+			aProducts.add(pProduct);
+		}
+	};
+
+	@Before
+	public void setup() throws IOException
+	{
+		aDirectory = File.createTempFile("creco", "json");
+		aDirectory.delete();
+		aDirectory.mkdir();
+		writeProducts("small.json", "s", 1);
+		writeProducts("large.json", "l", NUMBER_OF_PRODUCTS);
+		write("broken.json", "[{\"id\":\"b0\",\"category\":{\"id\":\"c\"}},{\"id\":");
+	}
+
+	@After
+	public void tearDown()
+	{
+		for(File file : aDirectory.listFiles())
+		{
+			file.delete();
+		}
+		aDirectory.delete();
+	}
+
+	private void writeProducts(String pFileName, String pPrefix, int pNumberOfProducts) throws IOException
+	{
+		StringBuilder json = new StringBuilder("[");
+		for(int i = 0; i < pNumberOfProducts; i++)
+		{
+			if(i > 0)
+			{
+				json.append(',');
+			}
+			json.append("{\"id\":\"" + pPrefix + i + "\",\"displayName\":\"Product " + i + "\",\"summary\":\"Not used\",");
+			json.append("\"isTested\":true,\"overallScore\":" + i + ",\"category\":{\"id\":\"c\",\"downLevel\":{}},");
+			json.append("\"brand\":{\"displayName\":\"Brand\",\"id\":\"1\"},");
+			json.append("\"specs\":[{\"attributeId\":\"a\",\"displayName\":\"Wi-Fi\",\"value\":\"Yes\",\"sortOrder\":2}],");
+			json.append("\"price\":{\"attributeId\":\"p\",\"displayName\":\"Price\",\"value\":" + i + ".5}}");
+		}
+		write(pFileName, json.append("]").toString());
+	}
+
+	private void write(String pFileName, String pContent) throws IOException
+	{
+		Writer writer = new OutputStreamWriter(new FileOutputStream(new File(aDirectory, pFileName)), "UTF-8");
+		writer.write(pContent);
+		writer.close();
+	}
+
+	private JsonLoadingService service(String... pFileNames)
+	{
+		return new JsonLoadingService(aDirectory.getPath() + File.separator, "category.json", pFileNames, "deadlinks.json");
+	}
+
+	@Test
+	public void testLoadProducts() throws IOException
+	{
+		service("large.json", "small.json").loadProducts(aCollector);
+		assertEquals(NUMBER_OF_PRODUCTS + 1, aProducts.size());
+
+		// The files in the order they were given
+		for(int i = 0; i < NUMBER_OF_PRODUCTS; i++)
+		{
+			assertEquals("l" + i, aProducts.get(i).getId());
+		}
+		assertEquals("s0", aProducts.get(NUMBER_OF_PRODUCTS).getId());
+
+		Product product = aProducts.get(2);
+		assertEquals("Brand Product 2", product.getName());
+		assertEquals("Brand", product.getBrandName());
+		assertEquals("c", product.getCategoryId());
+		assertEquals(2, product.getOverallScore(), 0);
+		assertEquals(2.5, product.getPrice().getTypedValue().getNumeric(), 0);
+		assertSame(aProducts.get(1).getAttribute("a"), product.getAttribute("a"));
+	}
+
+	@Test(timeout = TIMEOUT_MS)
+	public void testLoadProductsOnOneThread() throws IOException
+	{
+		// Enough products to fill the queue of a worker
+		int numberOfProducts = JsonLoadingService.BATCHES_PER_QUEUE * JsonLoadingService.PRODUCTS_PER_BATCH * 2;
+		writeProducts("first.json", "f", numberOfProducts);
+		writeProducts("second.json", "s", numberOfProducts);
+		String parallelism = System.getProperty(JsonLoadingService.PARALLELISM_PROPERTY);
+		System.setProperty(JsonLoadingService.PARALLELISM_PROPERTY, "1");
+		try
+		{
+			service("first.json", "second.json").loadProducts(aCollector);
+		}
+		finally
+		{
+			if(parallelism == null)
+			{
+				System.clearProperty(JsonLoadingService.PARALLELISM_PROPERTY);
+			}
+			else
+			{
+				System.setProperty(JsonLoadingService.PARALLELISM_PROPERTY, parallelism);
+			}
+		}
+		assertEquals(2 * numberOfProducts, aProducts.size());
+		assertEquals("f0", aProducts.get(0).getId());
+		assertEquals("s0", aProducts.get(numberOfProducts).getId());
+		assertEquals("s" + (numberOfProducts - 1), aProducts.get(aProducts.size() - 1).getId());
+	}
+
+	@Test
+	public void testBrokenFile()
+	{
+		try
+		{
+			service("large.json", "broken.json", "small.json").loadProducts(aCollector);
+			fail();
+		}
+		catch(IOException e)
+		{
+			assertTrue(aProducts.size() <= NUMBER_OF_PRODUCTS + 1);
+		}
+	}
+}
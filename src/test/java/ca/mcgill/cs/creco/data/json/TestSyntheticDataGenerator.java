@@ -0,0 +1,177 @@
+package ca.mcgill.cs.creco.data.json;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.mcgill.cs.creco.data.Attribute;
+import ca.mcgill.cs.creco.data.CategoryNode;
+import ca.mcgill.cs.creco.data.IDataCollector;
+import ca.mcgill.cs.creco.data.Product;
+import ca.mcgill.cs.creco.data.TypedValue;
+
+public class TestSyntheticDataGenerator
+{
+	private File aDirectory;
+	private List<CategoryNode> aCategories = new ArrayList<CategoryNode>();
+	private List<Product> aProducts = new ArrayList<Product>();
+
+	private IDataCollector aCollector = new IDataCollector()
+	{
+		@Override
+		public void addCategory(CategoryNode pCategory)
+		{
+			aCategories.add(pCategory);
+		}
+
+		@Override
+		public void addProduct(Product pProduct)
+		{
+			aProducts.add(pProduct);
+		}
+	};
+
+	@Before
+	public void setup() throws IOException
+	{
+		aDirectory = File.createTempFile("creco", "synthetic");
+		aDirectory.delete();
+		aDirectory.mkdir();
+	}
+
+	@After
+	public void tearDown()
+	{
+		for(File file : aDirectory.listFiles())
+		{
+			file.delete();
+		}
+		aDirectory.delete();
+	}
+
+	private void load() throws IOException
+	{
+		JsonLoadingService loadingService = new JsonLoadingService(aDirectory.getPath() + File.separator, SyntheticDataGenerator.CATEGORY_FILE_NAME,
+				SyntheticDataGenerator.getProductFileNames(), SyntheticDataGenerator.DEAD_LINKS_FILE_NAME);
+		loadingService.loadCategories(aCollector);
+		loadingService.loadProducts(aCollector);
+	}
+
+	private byte[] read(String pFileName) throws IOException
+	{
+		File file = new File(aDirectory, pFileName);
+		byte[] content = new byte[(int) file.length()];
+		InputStream in = new FileInputStream(file);
+		try
+		{
+			int offset = 0;
+			while(offset < content.length)
+			{
+				offset += in.read(content, offset, content.length - offset);
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+		return content;
+	}
+
+	@Test
+	public void testLoad() throws IOException
+	{
+		SyntheticDataGenerator generator = new SyntheticDataGenerator(1);
+		generator.setNumberOfFranchises(3);
+		generator.setCategoryFanout(4);
+		generator.setProductsPerCategory(5);
+		generator.setSpecificationsPerCategory(6);
+		generator.generate(aDirectory);
+		load();
+
+		assertEquals(3, aCategories.size());
+		assertEquals(3 * 4 * 5, aProducts.size());
+		for(Product product : aProducts)
+		{
+			assertTrue(product.getCategoryId().startsWith("f"));
+			int specifications = 0;
+			for(Attribute attribute : product.getAttributes())
+			{
+				if(attribute.isSpecification())
+				{
+					specifications++;
+				}
+			}
+			assertEquals(6, specifications);
+			assertTrue(product.getPrice() != null);
+		}
+	}
+
+	@Test
+	public void testShape() throws IOException
+	{
+		SyntheticDataGenerator generator = new SyntheticDataGenerator(1);
+		generator.setNumberOfFranchises(2);
+		generator.setCategoryDepth(3);
+		generator.setCategoryFanout(3);
+		generator.setProductsPerCategory(4);
+		generator.setSpecificationsPerCategory(10);
+		generator.setSparsity(0.5);
+		generator.setValueTypeMix(0, 0, 0, 1);
+		generator.setStringCardinality(20);
+		generator.generate(aDirectory);
+		load();
+
+		assertEquals(2 * 27 * 4, generator.getNumberOfProducts());
+		assertEquals(2 * (1 + 3 + 9 + 27), generator.getNumberOfCategories());
+		assertEquals(2, aCategories.size());
+		assertEquals(2 * 27 * 4, aProducts.size());
+
+		int specifications = 0;
+		Set<String> values = new HashSet<String>();
+		for(Product product : aProducts)
+		{
+			assertEquals(3, product.getCategoryId().split("-").length - 1);
+			for(Attribute attribute : product.getAttributes())
+			{
+				if(attribute.isSpecification())
+				{
+					specifications++;
+					TypedValue value = attribute.getTypedValue();
+					assertTrue(value.isString() || value.isNA());
+					if(value.isString())
+					{
+						values.add(attribute.getId() + value.getString());
+					}
+				}
+			}
+		}
+		assertTrue(specifications > aProducts.size() * 10 / 4);
+		assertTrue(specifications < aProducts.size() * 10 * 3 / 4);
+		assertTrue(values.size() <= 20 * (5 * 2 + 5 * 2 * 27));
+		assertTrue(values.size() > 5 * 2 + 5 * 2 * 27);
+	}
+
+	@Test
+	public void testReproducible() throws IOException
+	{
+		new SyntheticDataGenerator(2).generate(aDirectory);
+		byte[] products = read("appliances.json");
+		byte[] categories = read(SyntheticDataGenerator.CATEGORY_FILE_NAME);
+		new SyntheticDataGenerator(2).generate(aDirectory);
+		assertTrue(Arrays.equals(products, read("appliances.json")));
+		assertTrue(Arrays.equals(categories, read(SyntheticDataGenerator.CATEGORY_FILE_NAME)));
+	}
+}
@@ -16,6 +16,8 @@
 package ca.mcgill.cs.creco.logic;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -114,4 +116,61 @@ public class TestProductRanker {
 		assertEquals(scoredProducts.get(0).getaProduct().getName(), "Safety 1st 49292");
 	}
 	
+	@Test
+	public void testTopKMatchesFullRanking()
+	{
+		final int offset = 10;
+		final int k = 20;
+		Category category = aDataStore.getCategory(TOASTER_CATEGORY_ID); 
+		List<UserScoredAttribute> userScoredAttributes = new ArrayList<UserScoredAttribute>();
+		for(ScoredAttribute sa : aAttributeExtractor.getAttributesForCategory(category.getId()))
+		{
+			userScoredAttributes.add(new UserScoredAttribute(sa , 1));
+		}
+		
+		List<RankExplanation> allProducts = aProductRanker.rankProducts(userScoredAttributes, category);
+		List<RankExplanation> page = aProductRanker.rankProducts(userScoredAttributes, category, k, offset);
+		
+		assertEquals(k, page.size());
+		for(int i = 0; i < k; i++)
+		{
+			assertEquals(allProducts.get(offset + i).getaProduct(), page.get(i).getaProduct());
+		}
+		assertEquals(0, aProductRanker.rankProducts(userScoredAttributes, category, k, TOASTER_CATEGORY_NUM_PRODUCTS).size());
+	}
+	
+	@Test
+	public void testIncrementalRanking()
+	{
+		Category category = aDataStore.getCategory(HUMIDIFIER_CATEGORY_ID);
+		ScoredAttribute outputAttribute = aAttributeExtractor.getScoredAttributeInCategory(HUMIDIFIER_CATEGORY_ID, HUMIDIFIER_OUTPUT_ID);
+		ScoredAttribute weightAttribute = aAttributeExtractor.getScoredAttributeInCategory(HUMIDIFIER_CATEGORY_ID, HUMIDIFIER_FULL_TANK_WEIGHT_ID);
+		RankingState state = new RankingState();
+		
+		double[] outputScores = { 1, 5, -3, 2, 2 };
+		for(int i = 0; i < outputScores.length; i++)
+		{
+			List<UserScoredAttribute> userScoredAttributes = new ArrayList<UserScoredAttribute>();
+			userScoredAttributes.add(new UserScoredAttribute(weightAttribute, 1));
+			userScoredAttributes.add(new UserScoredAttribute(outputAttribute, outputScores[i]));
+			aProductRanker.rankProducts(userScoredAttributes, category, 10, 0, state);
+			assertEquals(i == 0, state.isRescored());
+			
+			double[] expected = ProductRanker.scoreProducts(userScoredAttributes, category.getColumns());
+			double[] actual = state.score(userScoredAttributes, category.getColumns());
+			for(int ordinal = 0; ordinal < expected.length; ordinal++)
+			{
+				assertEquals(expected[ordinal], actual[ordinal], 1e-9 * Math.max(1, Math.abs(expected[ordinal])));
+			}
+		}
+		
+		// A different set of attributes is rescored
+		List<UserScoredAttribute> userScoredAttributes = new ArrayList<UserScoredAttribute>();
+		userScoredAttributes.add(new UserScoredAttribute(weightAttribute, 1));
+		aProductRanker.rankProducts(userScoredAttributes, category, 10, 0, state);
+		assertTrue(state.isRescored());
+		userScoredAttributes.set(0, new UserScoredAttribute(weightAttribute, 2));
+		aProductRanker.rankProducts(userScoredAttributes, category, 10, 0, state);
+		assertFalse(state.isRescored());
+	}
 }
@@ -0,0 +1,78 @@
+package ca.mcgill.cs.creco.logic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import ca.mcgill.cs.creco.data.Category;
+import ca.mcgill.cs.creco.data.Product;
+
+public class TestResponseCache
+{
+	private static Category category(String pId)
+	{
+		return new Category(pId, "Category " + pId, "Root", new ArrayList<Product>());
+	}
+
+	@Test
+	public void testHitsAndMisses()
+	{
+		ResponseCache cache = new ResponseCache(100);
+		Category category = category("c1");
+		String key = ResponseCache.key("c1", new ArrayList<UserScoredAttribute>(), 0, 20);
+		assertNull(cache.get(key, category));
+		cache.put(key, category, "response");
+		assertEquals("response", cache.get(key, category));
+		assertEquals("response", cache.get(key, category));
+
+		// A new version of the category does not use the response of the previous one
+		assertNull(cache.get(key, category("c1")));
+		assertEquals(2, cache.getHits());
+		assertEquals(2, cache.getMisses());
+	}
+
+	@Test
+	public void testEviction()
+	{
+		ResponseCache cache = new ResponseCache(30);
+		Category category = category("c1");
+		cache.put("popular", category, "0123456789");
+		assertEquals("0123456789", cache.get("popular", category));
+		cache.put("a", category, "0123456789");
+		cache.put("b", category, "0123456789");
+		cache.put("c", category, "0123456789");
+
+		// The oldest response that was requested once is evicted first
+		assertEquals("0123456789", cache.get("popular", category));
+		assertNull(cache.get("a", category));
+		assertEquals(1, cache.getEvictions());
+		assertEquals(30, cache.getSize());
+
+		// Responses larger than the cache are not cached
+		cache.put("large", category, "0123456789012345678901234567890");
+		assertNull(cache.get("large", category));
+		assertEquals(3, cache.getNumberOfResponses());
+	}
+
+	@Test
+	public void testInvalidate()
+	{
+		ResponseCache cache = new ResponseCache(100);
+		Category category1 = category("c1");
+		Category category2 = category("c2");
+		cache.put("k1", category1, "response1");
+		cache.get("k1", category1);
+		cache.put("k2", category2, "response2");
+		cache.invalidate(Arrays.asList("c1"));
+		cache.invalidate(Collections.<String>emptySet());
+		assertNull(cache.get("k1", category1));
+		assertEquals("response2", cache.get("k2", category2));
+		assertEquals(1, cache.getInvalidations());
+		assertEquals("response2".length(), cache.getSize());
+	}
+}
@@ -29,6 +29,9 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import java.lang.reflect.*;
 
+import ca.mcgill.cs.creco.data.Attribute;
+import ca.mcgill.cs.creco.data.Category;
+import ca.mcgill.cs.creco.data.CategoryColumns;
 import ca.mcgill.cs.creco.data.IDataStore;
 import ca.mcgill.cs.creco.data.TypedValue;
 import ca.mcgill.cs.creco.logic.AttributeExtractor.SORT_METHOD;
@@ -71,6 +74,28 @@ public class TestScoredAttribute {
 
 	}
 	
+	@Test
+	public void testSortedViews()
+	{
+		List<ScoredAttribute> correlation = aAttributeExtractor.getAttributesForCategory(HUMIDIFIER_CATEGORY_ID, SORT_METHOD.CORRELATION);
+		List<ScoredAttribute> entropy = aAttributeExtractor.getAttributesForCategory(HUMIDIFIER_CATEGORY_ID, SORT_METHOD.ENTROPY);
+		
+		// Getting another sort does not change the lists returned before
+		for(int i = 0; i< correlation.size()-1 ; i++)
+		{
+			assertTrue(Math.abs(correlation.get(i).getCorrelation()) >= Math.abs(correlation.get(i+1).getCorrelation()));
+			assertTrue(entropy.get(i).getEntropy() >= entropy.get(i+1).getEntropy());
+		}
+		assertSame(correlation, aAttributeExtractor.getAttributesForCategory(HUMIDIFIER_CATEGORY_ID));
+		
+		for(ScoredAttribute scoredA : entropy)
+		{
+			assertSame(scoredA, aAttributeExtractor.findScoredAttribute(HUMIDIFIER_CATEGORY_ID, scoredA.getAttributeID()));
+		}
+		assertNull(aAttributeExtractor.findScoredAttribute(HUMIDIFIER_CATEGORY_ID, "no such attribute"));
+		assertNull(aAttributeExtractor.findScoredAttribute("no such category", entropy.get(0).getAttributeID()));
+	}
+	
 	@Test
 	public void testRanking() throws NoSuchMethodException, SecurityException 
 	{
@@ -163,4 +188,79 @@ public class TestScoredAttribute {
 
 	}
 
+	@Test
+	public void testProductRanks()
+	{
+		Category category = aDataStore.getCategory(HUMIDIFIER_CATEGORY_ID);
+		CategoryColumns columns = category.getColumns();
+		for(ScoredAttribute scoredA : aAttributeExtractor.getAttributesForCategory(HUMIDIFIER_CATEGORY_ID))
+		{
+			for(int ordinal = 0; ordinal < columns.size(); ordinal++)
+			{
+				Attribute attribute = columns.getProduct(ordinal).getAttribute(scoredA.getAttributeID());
+				int rank = scoredA.getProductRank(ordinal);
+				if(attribute == null)
+				{
+					assertEquals(ScoredAttribute.RANK_NOT_AVAILABLE, rank);
+					continue;
+				}
+				try
+				{
+					assertEquals(scoredA.getValueRank(attribute.getTypedValue()).intValue(), rank);
+				}
+				catch(IllegalArgumentException e)
+				{
+					assertEquals(ScoredAttribute.RANK_UNRANKED, rank);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testProductScores()
+	{
+		Category category = aDataStore.getCategory(HUMIDIFIER_CATEGORY_ID);
+		CategoryColumns columns = category.getColumns();
+		for(ScoredAttribute scoredA : aAttributeExtractor.getAttributesForCategory(HUMIDIFIER_CATEGORY_ID))
+		{
+			double[] scores = scoredA.getProductScores();
+			double[] penalties = scoredA.getProductPenalties();
+			assertSame(columns, scoredA.getColumns());
+			assertEquals(columns.size(), scores.length);
+			for(int ordinal = 0; ordinal < columns.size(); ordinal++)
+			{
+				Attribute attribute = columns.getProduct(ordinal).getAttribute(scoredA.getAttributeID());
+				if(attribute == null)
+				{
+					assertEquals(0, scores[ordinal], 0);
+					assertEquals(ScoredAttribute.MISSING_ATTRIBUTE_PENALTY, penalties[ordinal], 0);
+					continue;
+				}
+				if(penalties != null)
+				{
+					assertEquals(0, penalties[ordinal], 0);
+				}
+				TypedValue value = attribute.getTypedValue();
+				double expected = 0;
+				if(value.isNumeric() && scoredA.isNumeric())
+				{
+					expected = value.getNumeric();
+				}
+				else if((value.isString() || value.isBoolean()) && scoredA.getLabelMeanScores().containsKey(label(value)))
+				{
+					expected = scoredA.getLabelMeanScores().get(label(value));
+				}
+				assertEquals(expected, scores[ordinal], 0);
+			}
+		}
+	}
+	
+	private static String label(TypedValue pValue)
+	{
+		if(pValue.isBoolean())
+		{
+			return String.valueOf(pValue.getBoolean());
+		}
+		return pValue.getString();
+	}
 }
@@ -0,0 +1,90 @@
+package ca.mcgill.cs.creco.logic.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestLatencyHistogram
+{
+	@Test
+	public void testBuckets()
+	{
+		// Every value falls in a bucket that ends at or after it, and buckets follow each other
+		long previousEnd = -1;
+		for(int bucket = 0; bucket < 2000 && previousEnd < Long.MAX_VALUE; bucket++)
+		{
+			long end = LatencyHistogram.highestValue(bucket);
+			assertEquals(bucket, LatencyHistogram.bucket(previousEnd + 1));
+			assertEquals(bucket, LatencyHistogram.bucket(end));
+			assertTrue(end - previousEnd <= Math.max(1, end / 32));
+			previousEnd = end;
+		}
+		assertEquals(Long.MAX_VALUE, previousEnd);
+	}
+
+	@Test
+	public void testPercentiles()
+	{
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getValueAtPercentile(50));
+		for(long value = 1; value <= 100000; value++)
+		{
+			histogram.record(value * 1000);
+		}
+		assertEquals(100000, histogram.getCount());
+		assertEquals(50000500.0, histogram.getMean(), 0.001);
+		assertEquals(100000000, histogram.getMax());
+		assertEquals(50000000, histogram.getValueAtPercentile(50), 50000000 / 32);
+		assertEquals(99000000, histogram.getValueAtPercentile(99), 99000000 / 32);
+		assertEquals(99900000, histogram.getValueAtPercentile(99.9), 99900000 / 32);
+		assertEquals(100000000, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void testConcurrentRecording() throws InterruptedException
+	{
+		final LatencyHistogram histogram = new LatencyHistogram();
+		List<Thread> threads = new ArrayList<Thread>();
+		for(int i = 0; i < 4; i++)
+		{
+			final int thread = i;
+			threads.add(new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for(int value = 0; value < 10000; value++)
+					{
+						histogram.record(thread * 10000 + value);
+					}
+				}
+			});
+		}
+		for(Thread thread : threads)
+		{
+			thread.start();
+		}
+		for(Thread thread : threads)
+		{
+			thread.join();
+		}
+		assertEquals(40000, histogram.getCount());
+		assertEquals(39999, histogram.getMax());
+	}
+
+	@Test
+	public void testMetricsJson()
+	{
+		Metrics metrics = new Metrics();
+		metrics.timer("ranking.score").record(2000);
+		metrics.distribution("ranking.categorySize").record(40);
+		assertTrue(metrics.timer("ranking.score") == metrics.timer("ranking.score"));
+		assertEquals("{\"timers\":{\"ranking.score\":{\"count\":1,\"mean\":2.0,\"p50\":2.0,\"p99\":2.0,\"p999\":2.0,\"max\":2.0}},"
+				+ "\"distributions\":{\"ranking.categorySize\":{\"count\":1,\"mean\":40.0,\"p50\":40.0,\"p99\":40.0,\"p999\":40.0,\"max\":40.0}}}",
+				metrics.toJson());
+	}
+}
@@ -16,10 +16,16 @@
 package ca.mcgill.cs.creco.logic.search;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.junit.Test;
@@ -30,6 +36,7 @@ import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import ca.mcgill.cs.creco.data.Category;
 import ca.mcgill.cs.creco.data.IDataStore;
+import ca.mcgill.cs.creco.data.Product;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(locations = {"classpath:/META-INF/test-context.xml"})
@@ -75,5 +82,109 @@ public class TestCategorySearch {
 		
 		assertEquals(categories.size(), categoriesNoDuplicates.size());
 	}
+	
+	@Test
+	public void testPersistentIndex() throws IOException
+	{
+		File directory = File.createTempFile("creco", "index");
+		directory.delete();
+		directory.mkdir();
+		String indexDirectory = System.getProperty(CategorySearch.INDEX_DIRECTORY_PROPERTY);
+		System.setProperty(CategorySearch.INDEX_DIRECTORY_PROPERTY, directory.getAbsolutePath());
+		try
+		{
+			CategorySearch search = new CategorySearch(aDataStore);
+			assertEquals(aDataStore.getCategories().size(), search.getNumberOfIndexedCategories());
+			search.close();
+			
+			// Nothing changed, so the index is reused as is
+			search = new CategorySearch(aDataStore);
+			assertEquals(0, search.getNumberOfIndexedCategories());
+			assertEquals(0, search.getNumberOfRemovedCategories());
+			assertEquals(aCategorySearch.queryCategories("Smart phone"), search.queryCategories("Smart phone"));
+			search.close();
+			
+			// One category lost a product and another one was removed
+			List<Category> categories = new ArrayList<Category>();
+			for(Category category : aDataStore.getCategories())
+			{
+				if(category.getNumberOfProducts() > 1 && categories.size() < 2)
+				{
+					categories.add(category);
+				}
+			}
+			Category changed = categories.get(0);
+			List<Product> products = new ArrayList<Product>(changed.getProducts());
+			products.remove(0);
+			Category changedCopy = new Category(changed.getId(), changed.getName(), changed.getFranchise(), products);
+			search = new CategorySearch(modifiedStore(changedCopy, categories.get(1)));
+			assertEquals(1, search.getNumberOfIndexedCategories());
+			assertEquals(1, search.getNumberOfRemovedCategories());
+			assertTrue(search.queryCategories(changed.getName()).contains(changedCopy));
+			
+			// Back to the original store, the two categories are indexed again
+			search.refresh(aDataStore);
+			assertEquals(2, search.getNumberOfIndexedCategories());
+			assertEquals(0, search.getNumberOfRemovedCategories());
+			assertTrue(search.queryCategories(changed.getName()).contains(changed));
+			search.close();
+		}
+		finally
+		{
+			if(indexDirectory == null)
+			{
+				System.clearProperty(CategorySearch.INDEX_DIRECTORY_PROPERTY);
+			}
+			else
+			{
+				System.setProperty(CategorySearch.INDEX_DIRECTORY_PROPERTY, indexDirectory);
+			}
+			for(File file : directory.listFiles())
+			{
+				file.delete();
+			}
+			directory.delete();
+		}
+	}
+	
+	/*
+	 * The data store, with one of its categories replaced and another one removed.
+	 */
+	private IDataStore modifiedStore(Category pChangedCategory, Category pRemovedCategory)
+	{
+		final Map<String, Category> categories = new LinkedHashMap<String, Category>();
+		for(Category category : aDataStore.getCategories())
+		{
+			categories.put(category.getId(), category);
+		}
+		categories.put(pChangedCategory.getId(), pChangedCategory);
+		categories.remove(pRemovedCategory.getId());
+		return new IDataStore()
+		{
+			@Override
+			public Category getCategory(String pId)
+			{
+				return categories.get(pId);
+			}
+
+			@Override
+			public Product getProduct(String pId)
+			{
+				return aDataStore.getProduct(pId);
+			}
+
+			@Override
+			public Collection<Category> getCategories()
+			{
+				return categories.values();
+			}
+
+			@Override
+			public Collection<Product> getProducts()
+			{
+				return aDataStore.getProducts();
+			}
+		};
+	}
 		
 }
@@ -0,0 +1,196 @@
+package ca.mcgill.cs.creco.logic.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.mcgill.cs.creco.data.Attribute;
+import ca.mcgill.cs.creco.data.Category;
+import ca.mcgill.cs.creco.data.IDataStore;
+import ca.mcgill.cs.creco.data.Product;
+
+public class TestCompletionIndex
+{
+	CompletionIndex aIndex;
+	List<Product> aProducts;
+	List<Category> aCategories;
+
+	@Before
+	public void setup()
+	{
+		List<Product> products = new ArrayList<Product>();
+		products.add(product("1", "Samsung", "Galaxy S4"));
+		products.add(product("2", "Samsung", "Galaxy Note 3"));
+		products.add(product("3", "Apple", "iPhone 5s (Refurbished)"));
+		products.add(product("4", "General Electric", "Washer GTW680"));
+		products.add(product("5", "Galanz", "Microwave"));
+		for(int i = 0; i < 2 * CompletionIndex.MAX_NUM_RESULTS; i++)
+		{
+			products.add(product("m" + i, null, "Model" + (char) ('a' + i)));
+		}
+
+		List<Category> categories = new ArrayList<Category>();
+		categories.add(new Category("phones", "Smart phone", "Electronics", products.subList(0, 3)));
+		categories.add(new Category("washers", "Washing machine", "Appliances", products.subList(3, 4)));
+		categories.add(new Category("microwaves", "Microwave", "Appliances", products.subList(4, 5)));
+		categories.add(new Category("empty", "Galaxy chargers", "Electronics", new ArrayList<Product>()));
+
+		aProducts = products;
+		aCategories = categories;
+		aIndex = new CompletionIndex(store(categories, products));
+	}
+
+	private static IDataStore store(final List<Category> pCategories, final List<Product> pProducts)
+	{
+		final Map<String, Category> categoryIndex = new HashMap<String, Category>();
+		for(Category category : pCategories)
+		{
+			categoryIndex.put(category.getId(), category);
+		}
+		final Map<String, Product> productIndex = new HashMap<String, Product>();
+		for(Product product : pProducts)
+		{
+			productIndex.put(product.getId(), product);
+		}
+		return new IDataStore()
+		{
+			@Override
+			public Category getCategory(String pId)
+			{
+				return categoryIndex.get(pId);
+			}
+
+			@Override
+			public Product getProduct(String pId)
+			{
+				return productIndex.get(pId);
+			}
+
+			@Override
+			public Collection<Category> getCategories()
+			{
+				return pCategories;
+			}
+
+			@Override
+			public Collection<Product> getProducts()
+			{
+				return pProducts;
+			}
+		};
+	}
+
+	private static Product product(String pId, String pBrandName, String pDisplayName)
+	{
+		return new Product(pId, pDisplayName, true, "categoryId", pBrandName, "", new ArrayList<Attribute>(), "", null);
+	}
+
+	private List<String> names(String pInput)
+	{
+		List<String> names = new ArrayList<String>();
+		for(Completion completion : aIndex.getCompletions(pInput))
+		{
+			names.add(completion.getName());
+		}
+		return names;
+	}
+
+	private static List<String> describe(List<Completion> pCompletions)
+	{
+		List<String> descriptions = new ArrayList<String>();
+		for(Completion completion : pCompletions)
+		{
+			descriptions.add(completion.getName() + " " + completion.getType() + " " + completion.getWeight());
+		}
+		return descriptions;
+	}
+
+	@Test
+	public void testRankedByWeight()
+	{
+		List<Completion> completions = aIndex.getCompletions("Gal");
+		assertEquals(2, completions.size());
+		assertEquals("galaxy", completions.get(0).getName());
+		assertEquals("Product", completions.get(0).getType());
+		assertEquals(2, completions.get(0).getWeight());
+		assertEquals("galanz", completions.get(1).getName());
+		assertEquals("Brand", completions.get(1).getType());
+	}
+
+	@Test
+	public void testWordPrefix()
+	{
+		assertEquals("smart phone", names("pho").get(0));
+		assertEquals("Category", aIndex.getCompletions("pho").get(0).getType());
+		assertEquals("washing machine", names("MACH").get(0));
+		assertEquals("general electric", names("electr").get(0));
+		assertTrue(names("washing").contains("washing machine"));
+		assertTrue(names("zzz").isEmpty());
+	}
+
+	@Test
+	public void testFilteredWords()
+	{
+		assertTrue(names("gtw").isEmpty());
+		assertTrue(names("(ref").isEmpty());
+		assertTrue(names("refurb").isEmpty());
+		assertEquals("5s", names("5s").get(0));
+	}
+
+	@Test
+	public void testMergedTypes()
+	{
+		List<Completion> completions = aIndex.getCompletions("sams");
+		assertEquals(1, completions.size());
+		assertEquals("samsung", completions.get(0).getName());
+		assertEquals("Brand", completions.get(0).getType());
+		assertEquals(2, completions.get(0).getWeight());
+
+		completions = aIndex.getCompletions("micro");
+		assertEquals(1, completions.size());
+		assertEquals("Category|Product", completions.get(0).getType());
+		assertEquals(2, completions.get(0).getWeight());
+	}
+
+	@Test
+	public void testIncrementalIndex()
+	{
+		List<Product> products = new ArrayList<Product>(aProducts);
+		products.remove(1);
+		products.add(product("6", "Apple", "iPhone 6"));
+		List<Category> categories = new ArrayList<Category>(aCategories);
+		categories.set(0, new Category("phones", "Smart phone", "Electronics", 
+				Arrays.asList(products.get(0), products.get(1), products.get(products.size() - 1))));
+		categories.remove(2);
+		IDataStore dataStore = store(categories, products);
+
+		aIndex = new CompletionIndex(dataStore, aIndex);
+		CompletionIndex fullIndex = new CompletionIndex(dataStore);
+		for(String input : new String[] {"gal", "sams", "apple", "ip", "micro", "pho", "wash", "mod", "note"})
+		{
+			assertEquals(describe(fullIndex.getCompletions(input)), describe(aIndex.getCompletions(input)));
+		}
+		assertTrue(names("note").isEmpty());
+		assertEquals(1, aIndex.getCompletions("sams").get(0).getWeight());
+		assertEquals("Product", aIndex.getCompletions("micro").get(0).getType());
+		assertEquals(3, aIndex.getCompletions("smart").get(0).getWeight());
+	}
+
+	@Test
+	public void testBounded()
+	{
+		List<String> names = names("mod");
+		assertEquals(CompletionIndex.MAX_NUM_RESULTS, names.size());
+		assertEquals("modela", names.get(0));
+		assertEquals("modelj", names.get(CompletionIndex.MAX_NUM_RESULTS - 1));
+	}
+}
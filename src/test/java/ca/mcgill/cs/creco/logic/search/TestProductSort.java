@@ -19,6 +19,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 import org.junit.Test;
@@ -27,6 +30,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import ca.mcgill.cs.creco.data.Attribute;
+import ca.mcgill.cs.creco.data.Category;
 import ca.mcgill.cs.creco.data.IDataStore;
 import ca.mcgill.cs.creco.data.Product;
 
@@ -68,4 +73,59 @@ public class TestProductSort {
 		
 	}
 	
+	@Test
+	public void testPaging() throws IOException
+	{
+		List<Product> products = new ArrayList<Product>();
+		for(String id : Arrays.asList("b", "a", "c", "d", "e"))
+		{
+			products.add(new Product(id, "Product " + id, true, "c1", "Brand", "", new ArrayList<Attribute>(), "", 1.0));
+		}
+		products.add(new Product("best", "Product best", true, "c1", "Brand", "", new ArrayList<Attribute>(), "", 2.0));
+		products.add(new Product("unscored", "Product unscored", true, "c1", "Brand", "", new ArrayList<Attribute>(), "", null));
+		final Collection<Category> categories = Arrays.asList(new Category("c1", "Category", "Root", products));
+		ProductSort productSort = new ProductSort(new IDataStore()
+		{
+			@Override
+			public Category getCategory(String pId)
+			{
+				return null;
+			}
+
+			@Override
+			public Product getProduct(String pId)
+			{
+				return null;
+			}
+
+			@Override
+			public Collection<Category> getCategories()
+			{
+				return categories;
+			}
+
+			@Override
+			public Collection<Product> getProducts()
+			{
+				return null;
+			}
+		});
+		
+		// Products with the same score are all listed, by id
+		assertEquals(Arrays.asList("best", "a", "b", "c", "d", "e"), ids(productSort.returnTopProducts("c1")));
+		assertEquals(Arrays.asList("b", "c"), ids(productSort.returnTopProducts("c1", 2, 2)));
+		assertEquals(Arrays.asList("e"), ids(productSort.returnTopProducts("c1", 5, Integer.MAX_VALUE)));
+		assertEquals(0, productSort.returnTopProducts("c1", 10, 2).size());
+		assertEquals(null, productSort.returnTopProducts("c2", 0, 2));
+	}
+	
+	private static List<String> ids(List<Product> pProducts)
+	{
+		List<String> ids = new ArrayList<String>();
+		for(Product product : pProducts)
+		{
+			ids.add(product.getId());
+		}
+		return ids;
+	}
 }